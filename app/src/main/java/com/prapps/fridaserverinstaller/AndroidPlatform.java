@@ -0,0 +1,79 @@
+package com.prapps.fridaserverinstaller;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Environment;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * {@link Platform} backed by the app's storage, the device ABIs, logcat and {@code su}.
+ */
+public class AndroidPlatform implements Platform, Platform.Logger {
+    private final Context context;
+
+    public AndroidPlatform(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return context.getFilesDir();
+    }
+
+    @Override
+    public File getCacheDir() {
+        return context.getCacheDir();
+    }
+
+    @Override
+    public File getDownloadsDir() {
+        return Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+    }
+
+    @Override
+    public File getServerWorkingDir() {
+        return new File("/data/local/tmp");
+    }
+
+    @Override
+    public String[] getSupportedAbis() {
+        return Build.SUPPORTED_ABIS;
+    }
+
+    @Override
+    public Logger getLogger() {
+        return this;
+    }
+
+    @Override
+    public RootShell getRootShell() {
+        return RootShell.getInstance();
+    }
+
+    @Override
+    public void d(String tag, String message) {
+        Log.d(tag, message);
+    }
+
+    @Override
+    public void w(String tag, String message) {
+        Log.w(tag, message);
+    }
+
+    @Override
+    public void w(String tag, String message, Throwable error) {
+        Log.w(tag, message, error);
+    }
+
+    @Override
+    public void e(String tag, String message) {
+        Log.e(tag, message);
+    }
+
+    @Override
+    public void e(String tag, String message, Throwable error) {
+        Log.e(tag, message, error);
+    }
+}
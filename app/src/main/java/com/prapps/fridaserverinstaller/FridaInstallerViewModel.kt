@@ -2,9 +2,15 @@ package com.prapps.fridaserverinstaller
 
 import android.content.Context
 import androidx.lifecycle.ViewModel
+import androidx.lifecycle.viewModelScope
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.launch
+import java.nio.channels.FileChannel
 
 enum class InstallStatus {
     IDLE, INSTALLING, SUCCESS, ERROR, SERVER_STARTING, SERVER_RUNNING, SERVER_STOPPED
@@ -12,30 +18,85 @@ enum class InstallStatus {
 
 data class InstallUiState(
     val status: InstallStatus = InstallStatus.IDLE,
-    val messages: List<String> = emptyList(),
+    val messages: LogStore.Snapshot = LogStore.Snapshot.EMPTY,
     val currentMessage: String = "",
     val isServerInstalled: Boolean = false,
     val isServerRunning: Boolean = false,
+    val serverStatus: ServerSupervisor.Status = ServerSupervisor.Status.STOPPED,
+    val serverHealth: HealthProber.Snapshot = HealthProber.Snapshot.UNKNOWN,
     val downloadProgress: Int = 0,
     val downloadedBytes: Long = 0,
     val totalBytes: Long = 0,
+    val progressPhase: ProgressReporter.Phase = ProgressReporter.Phase.DOWNLOAD,
+    val bytesPerSecond: Long = 0,
+    val etaMs: Long = -1,
     val serverInfo: String? = null,
     val currentServerType: String = "Unknown",
     val showRedownloadDialog: Boolean = false,
     val showInstallTypeDialog: Boolean = false,
     val showVersionSelectionDialog: Boolean = false,
-    val availableReleases: List<FridaInstaller.FridaRelease> = emptyList(),
-    val isLoadingReleases: Boolean = false
+    val availableReleases: List<FridaRelease> = emptyList(),
+    val cachedReleaseTags: Set<String> = emptySet(),
+    val isLoadingReleases: Boolean = false,
+    val hasMoreReleases: Boolean = false,
+    val isLoadingMoreReleases: Boolean = false,
+    val showLogHistory: Boolean = false,
+    val logHistory: List<ServerLogArchive.Entry> = emptyList(),
+    val logHistoryHasOlder: Boolean = false,
+    val isLoadingLogHistory: Boolean = false,
+    val logHistoryQuery: String = "",
+    val isPrefetchEnabled: Boolean = false
 )
 
 class FridaInstallerViewModel(private val context: Context) : ViewModel() {
     private val _uiState = MutableStateFlow(InstallUiState())
     val uiState: StateFlow<InstallUiState> = _uiState.asStateFlow()
     
-    private val fridaInstaller = FridaInstaller(context)
+    private val fridaInstaller = SharedInstaller.get(context)
+    private val logStore = LogStore(LogStore.DEFAULT_CAPACITY)
+    
+    // Cancelling these (or clearing the ViewModel) cancels the installer operation behind them
+    private var installJob: Job? = null
+    private var serverJob: Job? = null
+    private var releasesJob: Job? = null
+    private var logHistoryJob: Job? = null
+    private var cachedReleasesJob: Job? = null
     
     init {
         checkExistingInstallation()
+        _uiState.value = _uiState.value.copy(isPrefetchEnabled = PrefetchJobService.isScheduled(context))
+        viewModelScope.launch {
+            fridaInstaller.serverStatusFlow().collect { onServerStatus(it) }
+        }
+        viewModelScope.launch {
+            fridaInstaller.serverHealthFlow().collect {
+                _uiState.value = _uiState.value.copy(serverHealth = it)
+            }
+        }
+    }
+    
+    private fun onServerStatus(status: ServerSupervisor.Status) {
+        val current = _uiState.value
+        _uiState.value = when (status.state) {
+            ServerSupervisor.State.BACKING_OFF -> current.copy(
+                serverStatus = status,
+                status = InstallStatus.SERVER_STARTING,
+                isServerRunning = false
+            )
+            ServerSupervisor.State.CRASH_LOOP -> current.copy(
+                serverStatus = status,
+                status = InstallStatus.ERROR,
+                isServerRunning = false,
+                currentMessage = "frida-server keeps crashing (${ServerSupervisor.describeExitCode(status.lastExitCode)})"
+            )
+            // A restart is only known to be up once it is running again; the first start reports through its flow
+            ServerSupervisor.State.RUNNING -> if (status.restartCount > 0) {
+                current.copy(serverStatus = status, status = InstallStatus.SERVER_RUNNING, isServerRunning = true)
+            } else {
+                current.copy(serverStatus = status)
+            }
+            ServerSupervisor.State.STOPPED -> current.copy(serverStatus = status)
+        }
     }
     
     private fun checkExistingInstallation() {
@@ -67,66 +128,82 @@ class FridaInstallerViewModel(private val context: Context) : ViewModel() {
     fun startServer() {
         _uiState.value = _uiState.value.copy(status = InstallStatus.SERVER_STARTING)
         
-        fridaInstaller.startFridaServer(object : FridaInstaller.InstallCallback {
-            override fun onProgress(message: String) {
-                val currentMessages = _uiState.value.messages.toMutableList()
-                currentMessages.add(message)
-                _uiState.value = _uiState.value.copy(messages = currentMessages)
-            }
-            
-            override fun onError(error: String) {
-                val currentMessages = _uiState.value.messages.toMutableList()
-                currentMessages.add("ERROR: $error")
+        serverJob?.cancel()
+        serverJob = viewModelScope.launch {
+            try {
+                fridaInstaller.startServerFlow().collect { event ->
+                    when (event) {
+                        is InstallEvent.Progress -> _uiState.value = _uiState.value.copy(messages = appendLog(event.message))
+                        is InstallEvent.Success -> _uiState.value = _uiState.value.copy(
+                            status = InstallStatus.SERVER_RUNNING,
+                            messages = appendLog(event.message),
+                            isServerRunning = true
+                        )
+                        is InstallEvent.Transfer -> Unit // Not used for server start
+                    }
+                }
+            } catch (e: InstallException) {
                 _uiState.value = _uiState.value.copy(
                     status = InstallStatus.ERROR,
-                    messages = currentMessages
-                )
-            }
-            
-            override fun onSuccess(message: String) {
-                val currentMessages = _uiState.value.messages.toMutableList()
-                currentMessages.add(message)
-                _uiState.value = _uiState.value.copy(
-                    status = InstallStatus.SERVER_RUNNING,
-                    messages = currentMessages,
-                    isServerRunning = true
+                    messages = appendLog("ERROR: ${e.message}")
                 )
             }
-            
-            override fun onDownloadProgress(progress: Int, bytesDownloaded: Long, totalBytes: Long) {
-                // Not used for server start
-            }
-        })
+        }
     }
     
     fun stopServer() {
-        fridaInstaller.stopFridaServer()
-        val currentMessages = _uiState.value.messages.toMutableList()
-        currentMessages.add("🛑 Frida server stopped")
-        _uiState.value = _uiState.value.copy(
-            status = InstallStatus.SERVER_STOPPED,
-            messages = currentMessages,
-            isServerRunning = false,
-            currentMessage = "🛑 Frida server stopped"
-        )
+        // Stops following output; a server that already started keeps running until stopped below
+        serverJob?.cancel()
+        serverJob = null
+        viewModelScope.launch {
+            val result = fridaInstaller.stopServer()
+            val message = when (result.outcome) {
+                ServerTerminator.Outcome.KILLED -> "🛑 Frida server killed after ignoring SIGTERM (${result.elapsedMs} ms)"
+                ServerTerminator.Outcome.STILL_RUNNING -> "⚠️ Frida server did not exit after SIGKILL"
+                else -> "🛑 Frida server stopped (${result.elapsedMs} ms)"
+            }
+            _uiState.value = _uiState.value.copy(
+                status = InstallStatus.SERVER_STOPPED,
+                messages = appendLog(message),
+                isServerRunning = false,
+                currentMessage = message
+            )
+        }
     }
     
     fun forceRedownload() {
         _uiState.value = _uiState.value.copy(
             showRedownloadDialog = false,
             showVersionSelectionDialog = true,
-            isLoadingReleases = true
+            isLoadingReleases = _uiState.value.availableReleases.isEmpty()
         )
         loadAvailableReleases()
     }
     
     fun installFromManualFile(filePath: String) {
+        runManualInstallation(fridaInstaller.installFromManualFileFlow(filePath))
+    }
+    
+    /**
+     * Single-pass install from an opened document; the installer closes [source] when done.
+     * A non-blank [expectedSha256] must match the picked file or the binary decoded from it.
+     */
+    fun installFromManualChannel(name: String, source: FileChannel, expectedSha256: String? = null) {
+        runManualInstallation(fridaInstaller.installFromManualChannelFlow(name, source, expectedSha256))
+    }
+    
+    private fun runManualInstallation(flow: Flow<InstallEvent>) {
         _uiState.value = _uiState.value.copy(
             status = InstallStatus.INSTALLING,
-            messages = emptyList()
+            messages = clearLog(),
+            downloadProgress = 0,
+            downloadedBytes = 0,
+            totalBytes = 0,
+            bytesPerSecond = 0,
+            etaMs = -1
         )
         
-        fridaInstaller.installFromManualFile(filePath, createInstallCallback())
+        runInstallation(flow)
     }
     
     fun dismissRedownloadDialog() {
@@ -141,59 +218,171 @@ class FridaInstallerViewModel(private val context: Context) : ViewModel() {
         _uiState.value = _uiState.value.copy(
             showInstallTypeDialog = false,
             showVersionSelectionDialog = true,
-            isLoadingReleases = true
+            isLoadingReleases = _uiState.value.availableReleases.isEmpty()
         )
         loadAvailableReleases()
     }
     
     fun loadAvailableReleases() {
-        fridaInstaller.getAllReleases(object : FridaInstaller.ReleasesCallback {
-            override fun onReleasesLoaded(releases: List<FridaInstaller.FridaRelease>) {
-                _uiState.value = _uiState.value.copy(
-                    availableReleases = releases,
-                    isLoadingReleases = false
-                )
+        releasesJob?.cancel()
+        releasesJob = viewModelScope.launch {
+            try {
+                fridaInstaller.releasesFirstPageFlow().collect { onReleasesPage(it) }
+            } catch (e: InstallException) {
+                onReleasesError(e.message ?: "Unknown error")
             }
-            
-            override fun onError(error: String) {
-                _uiState.value = _uiState.value.copy(
-                    isLoadingReleases = false,
-                    showVersionSelectionDialog = false
+        }
+    }
+    
+    fun loadMoreReleases() {
+        val state = _uiState.value
+        if (!state.hasMoreReleases || state.isLoadingMoreReleases) {
+            return
+        }
+        _uiState.value = state.copy(isLoadingMoreReleases = true)
+        releasesJob = viewModelScope.launch {
+            try {
+                val page = fridaInstaller.loadNextReleasesPageAsync()
+                if (page != null) {
+                    onReleasesPage(page)
+                } else {
+                    _uiState.value = _uiState.value.copy(isLoadingMoreReleases = false)
+                }
+            } catch (e: InstallException) {
+                onReleasesError(e.message ?: "Unknown error")
+            }
+        }
+    }
+    
+    private fun onReleasesPage(page: ReleasesPage) {
+        val current = _uiState.value
+        _uiState.value = current.copy(
+            availableReleases = if (page.page == 1) page.releases else current.availableReleases + page.releases,
+            isLoadingReleases = false,
+            isLoadingMoreReleases = false,
+            hasMoreReleases = page.hasMore
+        )
+        refreshCachedReleases()
+    }
+    
+    private fun refreshCachedReleases() {
+        cachedReleasesJob?.cancel()
+        cachedReleasesJob = viewModelScope.launch {
+            val cached = fridaInstaller.cachedReleaseTags(_uiState.value.availableReleases)
+            _uiState.value = _uiState.value.copy(cachedReleaseTags = cached)
+        }
+    }
+    
+    private fun onReleasesError(error: String) {
+        _uiState.value = _uiState.value.copy(
+            isLoadingReleases = false,
+            isLoadingMoreReleases = false,
+            showVersionSelectionDialog = false
+        )
+        _uiState.value = _uiState.value.copy(
+            status = InstallStatus.ERROR,
+            messages = appendLog("ERROR: $error")
+        )
+    }
+    
+    /**
+     * Timing traces of recent installs as JSON, for sharing when an install was slow.
+     */
+    fun exportInstallTraces(): String = fridaInstaller.exportInstallTracesJson()
+    
+    /**
+     * Schedules or cancels the background prefetch of new releases.
+     */
+    fun setPrefetchEnabled(enabled: Boolean) {
+        if (enabled) {
+            PrefetchJobService.schedule(context)
+        } else {
+            PrefetchJobService.cancel(context)
+        }
+        _uiState.value = _uiState.value.copy(isPrefetchEnabled = enabled)
+    }
+    
+    fun openLogHistory() {
+        _uiState.value = _uiState.value.copy(
+            showLogHistory = true,
+            logHistory = emptyList(),
+            logHistoryQuery = "",
+            isLoadingLogHistory = true
+        )
+        loadLogHistory(-1, null, append = false)
+    }
+    
+    fun loadOlderLogHistory() {
+        val state = _uiState.value
+        if (!state.logHistoryHasOlder || state.isLoadingLogHistory || state.logHistory.isEmpty()) {
+            return
+        }
+        _uiState.value = state.copy(isLoadingLogHistory = true)
+        loadLogHistory(state.logHistory.first().lineNumber, null, append = true)
+    }
+    
+    fun searchLogHistory(keyword: String) {
+        _uiState.value = _uiState.value.copy(
+            logHistoryQuery = keyword,
+            isLoadingLogHistory = true
+        )
+        loadLogHistory(-1, keyword.trim(), append = false)
+    }
+    
+    fun dismissLogHistory() {
+        logHistoryJob?.cancel()
+        _uiState.value = _uiState.value.copy(showLogHistory = false, logHistory = emptyList())
+    }
+    
+    private fun loadLogHistory(beforeLine: Long, keyword: String?, append: Boolean) {
+        logHistoryJob?.cancel()
+        logHistoryJob = viewModelScope.launch {
+            try {
+                val (entries, hasOlder) = fridaInstaller.loadServerLogHistoryAsync(beforeLine, LOG_HISTORY_PAGE_SIZE, keyword)
+                val current = _uiState.value
+                _uiState.value = current.copy(
+                    // Older pages go in front, keeping the list oldest first
+                    logHistory = if (append) entries + current.logHistory else entries,
+                    logHistoryHasOlder = hasOlder,
+                    isLoadingLogHistory = false
                 )
-                val currentMessages = _uiState.value.messages.toMutableList()
-                currentMessages.add("ERROR: $error")
+            } catch (e: InstallException) {
                 _uiState.value = _uiState.value.copy(
-                    status = InstallStatus.ERROR,
-                    messages = currentMessages
+                    isLoadingLogHistory = false,
+                    messages = appendLog("ERROR: ${e.message}")
                 )
             }
-        })
+        }
     }
     
     fun dismissVersionSelectionDialog() {
         _uiState.value = _uiState.value.copy(showVersionSelectionDialog = false)
     }
     
-    fun installFromSelectedVersion(release: FridaInstaller.FridaRelease) {
+    fun installFromSelectedVersion(release: FridaRelease) {
         _uiState.value = _uiState.value.copy(
             status = InstallStatus.INSTALLING,
-            messages = emptyList(),
+            messages = clearLog(),
             downloadProgress = 0,
             downloadedBytes = 0,
             totalBytes = 0,
+            bytesPerSecond = 0,
+            etaMs = -1,
             showVersionSelectionDialog = false
             // Keep existing currentServerType and other state
         )
         performInstallationFromRelease(release, false)
     }
     
-    fun forceRedownloadFromVersion(release: FridaInstaller.FridaRelease) {
+    fun forceRedownloadFromVersion(release: FridaRelease) {
         _uiState.value = _uiState.value.copy(
             status = InstallStatus.INSTALLING,
-            messages = emptyList(),
+            messages = clearLog(),
             downloadProgress = 0,
             downloadedBytes = 0,
             totalBytes = 0,
+            bytesPerSecond = 0,
+            etaMs = -1,
             showRedownloadDialog = false,
             showVersionSelectionDialog = false
             // Keep existing currentServerType and other state
@@ -202,60 +391,96 @@ class FridaInstallerViewModel(private val context: Context) : ViewModel() {
     }
     
     private fun performInstallation(forceRedownload: Boolean) {
-        fridaInstaller.installFridaServer(createInstallCallback(), forceRedownload)
+        runInstallation(fridaInstaller.installLatestFlow(forceRedownload))
     }
     
-    private fun performInstallationFromRelease(release: FridaInstaller.FridaRelease, forceRedownload: Boolean) {
-        fridaInstaller.installFridaServerFromRelease(release, createInstallCallback(), forceRedownload)
+    private fun performInstallationFromRelease(release: FridaRelease, forceRedownload: Boolean) {
+        runInstallation(fridaInstaller.installFromReleaseFlow(release, forceRedownload))
     }
     
-    private fun createInstallCallback() = object : FridaInstaller.InstallCallback {
-        override fun onProgress(message: String) {
-            val currentMessages = _uiState.value.messages.toMutableList()
-            currentMessages.add(message)
-            _uiState.value = _uiState.value.copy(
-                messages = currentMessages,
-                currentMessage = message
-            )
-        }
-        
-        override fun onError(error: String) {
-            val currentMessages = _uiState.value.messages.toMutableList()
-            currentMessages.add("ERROR: $error")
-            _uiState.value = _uiState.value.copy(
-                status = InstallStatus.ERROR,
-                messages = currentMessages,
-                currentMessage = error
-            )
+    /**
+     * Stops the running installation. Its download, extraction and root commands are aborted.
+     */
+    fun cancelInstallation() {
+        installJob?.cancel(CancellationException("Installation cancelled"))
+        installJob = null
+        _uiState.value = _uiState.value.copy(
+            status = InstallStatus.ERROR,
+            messages = appendLog("🛑 Installation cancelled"),
+            currentMessage = "Installation cancelled"
+        )
+    }
+    
+    private fun runInstallation(events: Flow<InstallEvent>) {
+        installJob?.cancel()
+        installJob = viewModelScope.launch {
+            try {
+                events.collect { onInstallEvent(it) }
+            } catch (e: InstallException) {
+                _uiState.value = _uiState.value.copy(
+                    status = InstallStatus.ERROR,
+                    messages = appendLog("ERROR: ${e.message}"),
+                    currentMessage = e.message ?: ""
+                )
+            }
         }
-        
-        override fun onSuccess(message: String) {
-            val currentMessages = _uiState.value.messages.toMutableList()
-            currentMessages.add(message)
-            val serverInfo = fridaInstaller.installedServerInfo
-            val currentServerType = fridaInstaller.currentServerType
-            _uiState.value = _uiState.value.copy(
-                status = InstallStatus.SUCCESS,
-                messages = currentMessages,
-                currentMessage = message,
-                isServerInstalled = true,
-                serverInfo = serverInfo,
-                currentServerType = currentServerType
+    }
+    
+    private fun onInstallEvent(event: InstallEvent) {
+        when (event) {
+            is InstallEvent.Progress -> _uiState.value = _uiState.value.copy(
+                messages = appendLog(event.message),
+                currentMessage = event.message
             )
-        }
-        
-        override fun onDownloadProgress(progress: Int, bytesDownloaded: Long, totalBytes: Long) {
-            _uiState.value = _uiState.value.copy(
-                downloadProgress = progress,
-                downloadedBytes = bytesDownloaded,
-                totalBytes = totalBytes
+            is InstallEvent.Success -> {
+                val messages = appendLog(event.message)
+                val serverInfo = fridaInstaller.installedServerInfo
+                val currentServerType = fridaInstaller.currentServerType
+                _uiState.value = _uiState.value.copy(
+                    status = InstallStatus.SUCCESS,
+                    messages = messages,
+                    currentMessage = event.message,
+                    isServerInstalled = true,
+                    serverInfo = serverInfo,
+                    currentServerType = currentServerType
+                )
+                refreshCachedReleases()
+            }
+            is InstallEvent.Transfer -> _uiState.value = _uiState.value.copy(
+                downloadProgress = event.progress.percent,
+                downloadedBytes = event.progress.bytes,
+                totalBytes = event.progress.totalBytes,
+                progressPhase = event.progress.phase,
+                bytesPerSecond = event.progress.bytesPerSecond,
+                etaMs = event.progress.etaMs
             )
         }
     }
     
+    /**
+     * Appends to the bounded log and returns an O(1) snapshot for the UI state.
+     */
+    private fun appendLog(line: String): LogStore.Snapshot {
+        logStore.append(line)
+        return logStore.snapshot()
+    }
+    
+    private fun clearLog(): LogStore.Snapshot {
+        logStore.clear()
+        return logStore.snapshot()
+    }
+    
+    /**
+     * Copies up to [maxLines] log lines starting at [fromSequence], e.g. for export or paging.
+     */
+    fun logWindow(fromSequence: Long, maxLines: Int): List<LogStore.Line> {
+        return logStore.window(fromSequence, maxLines)
+    }
+    
     fun resetInstallation() {
         // Reset to initial state but preserve server information
-        val newState = InstallUiState()
+        clearLog()
+        val newState = InstallUiState(isPrefetchEnabled = _uiState.value.isPrefetchEnabled)
         _uiState.value = newState
         
         // Update server info but keep status as IDLE to show install button
@@ -278,4 +503,8 @@ class FridaInstallerViewModel(private val context: Context) : ViewModel() {
     fun refreshInstallationStatus() {
         checkExistingInstallation()
     }
+    
+    companion object {
+        private const val LOG_HISTORY_PAGE_SIZE = 200
+    }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.prapps.fridaserverinstaller
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ProducerScope
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.suspendCancellableCoroutine
+import java.nio.channels.FileChannel
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Coroutine API over [FridaInstaller].
+ *
+ * Each flow starts one [InstallerOperation] on the shared installer pool and adapts its
+ * [FridaInstaller.InstallCallback] into events. Cancelling the collector (for example when
+ * the ViewModel is cleared) cancels the operation, which aborts its HTTP calls, decode loops
+ * and root shell command.
+ */
+sealed class InstallEvent {
+    data class Progress(val message: String) : InstallEvent()
+    data class Transfer(val progress: ProgressReporter.Progress) : InstallEvent()
+    data class Success(val message: String) : InstallEvent()
+}
+
+class InstallException(message: String) : Exception(message)
+
+data class ReleasesPage(
+    val page: Int,
+    val releases: List<FridaRelease>,
+    val hasMore: Boolean
+)
+
+/**
+ * Dispatcher for calls that mostly wait, so they don't occupy the bounded installer pool.
+ */
+private val blockingDispatcher: CoroutineDispatcher = InstallerOperation.blockingExecutor().asCoroutineDispatcher()
+
+/**
+ * @param completeOnSuccess false for operations whose callback keeps reporting after
+ *   success, such as server output after a start
+ */
+private fun installerFlow(
+    completeOnSuccess: Boolean = true,
+    start: (FridaInstaller.InstallCallback) -> InstallerOperation
+): Flow<InstallEvent> = callbackFlow {
+    val operation = start(object : FridaInstaller.InstallCallback {
+        override fun onProgress(message: String) {
+            trySend(InstallEvent.Progress(message))
+        }
+
+        override fun onError(error: String) {
+            close(InstallException(error))
+        }
+
+        override fun onSuccess(message: String) {
+            trySend(InstallEvent.Success(message))
+            if (completeOnSuccess) {
+                close()
+            }
+        }
+
+        override fun onTransferProgress(progress: ProgressReporter.Progress) {
+            trySend(InstallEvent.Transfer(progress))
+        }
+    })
+    if (completeOnSuccess) {
+        // Also completes the flow if the operation was cancelled before it started
+        operation.whenFinished { channel.close() }
+    }
+    awaitClose { operation.cancel() }
+}.buffer(Channel.UNLIMITED) // Progress is already rate-limited, so this stays small
+
+fun FridaInstaller.installLatestFlow(forceRedownload: Boolean): Flow<InstallEvent> =
+    installerFlow { installFridaServer(it, forceRedownload) }
+
+fun FridaInstaller.installFromReleaseFlow(
+    release: FridaRelease,
+    forceRedownload: Boolean
+): Flow<InstallEvent> = installerFlow { installFridaServerFromRelease(release, it, forceRedownload) }
+
+fun FridaInstaller.installFromManualFileFlow(filePath: String): Flow<InstallEvent> =
+    installerFlow { installFromManualFile(filePath, it) }
+
+fun FridaInstaller.installFromManualChannelFlow(
+    name: String,
+    source: FileChannel,
+    expectedSha256: String? = null
+): Flow<InstallEvent> = installerFlow { installFromManualChannel(name, source, expectedSha256, it) }
+
+/**
+ * Starts the server and keeps emitting its output after the [InstallEvent.Success] until the
+ * collector stops. Cancelling before the start completes kills the half-started server.
+ */
+fun FridaInstaller.startServerFlow(): Flow<InstallEvent> =
+    installerFlow(completeOnSuccess = false) { startFridaServer(it) }
+
+/**
+ * Emits the first page of releases: straight from the cache when available, followed by a
+ * revalidated copy if the cached one was stale and has changed.
+ */
+fun FridaInstaller.releasesFirstPageFlow(): Flow<ReleasesPage> = callbackFlow {
+    val operation = getReleasesFirstPage(releasesCallback())
+    operation.whenFinished { channel.close() }
+    awaitClose { operation.cancel() }
+}
+
+/**
+ * Loads the next page of releases, or returns null if there is none or one is already loading.
+ */
+suspend fun FridaInstaller.loadNextReleasesPageAsync(): ReleasesPage? = suspendCancellableCoroutine { continuation ->
+    val operation = loadNextReleasesPage(object : FridaInstaller.ReleasesCallback {
+        override fun onReleasesPageLoaded(page: Int, releases: List<FridaRelease>, hasMore: Boolean) {
+            continuation.resume(ReleasesPage(page, releases, hasMore))
+        }
+
+        override fun onError(error: String) {
+            continuation.resumeWithException(InstallException(error))
+        }
+    })
+    if (operation == null) {
+        continuation.resume(null)
+        return@suspendCancellableCoroutine
+    }
+    operation.whenFinished {
+        if (continuation.isActive) {
+            continuation.resume(null)
+        }
+    }
+    continuation.invokeOnCancellation { operation.cancel() }
+}
+
+suspend fun FridaInstaller.loadServerLogHistoryAsync(
+    beforeLine: Long,
+    maxLines: Int,
+    keyword: String?
+): Pair<List<ServerLogArchive.Entry>, Boolean> = suspendCancellableCoroutine { continuation ->
+    val operation = loadServerLogHistory(beforeLine, maxLines, keyword, object : FridaInstaller.LogHistoryCallback {
+        override fun onLogHistoryLoaded(entries: List<ServerLogArchive.Entry>, hasOlder: Boolean) {
+            continuation.resume(entries to hasOlder)
+        }
+
+        override fun onError(error: String) {
+            continuation.resumeWithException(InstallException(error))
+        }
+    })
+    // Cancelled before it started: no callback fires
+    operation.whenFinished {
+        if (continuation.isActive) {
+            continuation.resume(emptyList<ServerLogArchive.Entry>() to false)
+        }
+    }
+    continuation.invokeOnCancellation { operation.cancel() }
+}
+
+/**
+ * Emits the supervisor's current status and then every change: crashes, restarts and the
+ * circuit opening. Only the latest status is kept for a slow collector.
+ */
+fun FridaInstaller.serverStatusFlow(): Flow<ServerSupervisor.Status> = callbackFlow {
+    val listener = ServerSupervisor.StatusListener { trySend(it) }
+    addServerStatusListener(listener)
+    send(serverStatus)
+    awaitClose { removeServerStatusListener(listener) }
+}.conflate()
+
+/**
+ * Emits the endpoint health of the running server after every probe, starting with the
+ * current snapshot.
+ */
+fun FridaInstaller.serverHealthFlow(): Flow<HealthProber.Snapshot> = callbackFlow {
+    val listener = HealthProber.Listener { trySend(it) }
+    addServerHealthListener(listener)
+    send(serverHealth)
+    awaitClose { removeServerHealthListener(listener) }
+}.conflate()
+
+/**
+ * Stops the server off the installer pool, since it waits on the process and the root shell.
+ */
+suspend fun FridaInstaller.stopServer(): ServerTerminator.Result =
+    runInterruptible(blockingDispatcher) { stopFridaServer() }
+
+/**
+ * Tags of the [releases] already in the artifact store, looked up off the installer pool: each
+ * lookup stats the stored binary and waits on the store's lock, which a running install holds.
+ */
+suspend fun FridaInstaller.cachedReleaseTags(releases: List<FridaRelease>): Set<String> =
+    runInterruptible(blockingDispatcher) {
+        releases.filter { isReleaseCached(it) }.mapTo(HashSet()) { it.tagName }
+    }
+
+private fun ProducerScope<ReleasesPage>.releasesCallback() =
+    object : FridaInstaller.ReleasesCallback {
+        override fun onReleasesPageLoaded(page: Int, releases: List<FridaRelease>, hasMore: Boolean) {
+            trySend(ReleasesPage(page, releases, hasMore))
+        }
+
+        override fun onError(error: String) {
+            close(InstallException(error))
+        }
+    }
@@ -1,10 +1,13 @@
 package com.prapps.fridaserverinstaller
 
+import android.content.Intent
 import android.os.Bundle
 import androidx.activity.ComponentActivity
 import androidx.activity.compose.setContent
 import androidx.activity.enableEdgeToEdge
 import android.net.Uri
+import android.os.ParcelFileDescriptor
+import android.provider.OpenableColumns
 import androidx.activity.compose.rememberLauncherForActivityResult
 import androidx.activity.result.contract.ActivityResultContracts
 import androidx.compose.foundation.layout.*
@@ -33,6 +36,8 @@ import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.lifecycle.viewmodel.compose.viewModel
 import com.prapps.fridaserverinstaller.ui.theme.FridaServerInstallerTheme
+import kotlinx.coroutines.delay
+import java.nio.channels.FileChannel
 
 class MainActivity : ComponentActivity() {
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -58,14 +63,21 @@ fun FridaInstallerScreen(
     viewModel: FridaInstallerViewModel = viewModel { FridaInstallerViewModel(context) }
 ) {
     val uiState by viewModel.uiState.collectAsState()
+    var expectedSha256 by remember { mutableStateOf("") }
     
     val filePickerLauncher = rememberLauncherForActivityResult(
         contract = ActivityResultContracts.GetContent()
     ) { uri: Uri? ->
         uri?.let { 
-            val path = getRealPathFromUri(context, it)
-            if (path != null) {
-                viewModel.installFromManualFile(path)
+            val document = openDocumentChannel(context, it)
+            if (document != null) {
+                viewModel.installFromManualChannel(document.first, document.second, expectedSha256)
+                expectedSha256 = ""
+            } else {
+                val path = getRealPathFromUri(context, it)
+                if (path != null) {
+                    viewModel.installFromManualFile(path)
+                }
             }
         }
     }
@@ -78,7 +90,9 @@ fun FridaInstallerScreen(
                 viewModel.dismissRedownloadDialog()
                 filePickerLauncher.launch("*/*")
             },
-            serverInfo = uiState.serverInfo
+            serverInfo = uiState.serverInfo,
+            expectedSha256 = expectedSha256,
+            onExpectedSha256Change = { expectedSha256 = it }
         )
     }
     
@@ -89,7 +103,9 @@ fun FridaInstallerScreen(
                 viewModel.dismissInstallTypeDialog()
                 filePickerLauncher.launch("*/*")
             },
-            onDismiss = { viewModel.dismissInstallTypeDialog() }
+            onDismiss = { viewModel.dismissInstallTypeDialog() },
+            expectedSha256 = expectedSha256,
+            onExpectedSha256Change = { expectedSha256 = it }
         )
     }
     
@@ -97,6 +113,9 @@ fun FridaInstallerScreen(
         VersionSelectionDialog(
             isLoading = uiState.isLoadingReleases,
             releases = uiState.availableReleases,
+            hasMore = uiState.hasMoreReleases,
+            onLoadMore = { viewModel.loadMoreReleases() },
+            isCached = { it.tagName in uiState.cachedReleaseTags },
             onVersionSelected = { release ->
                 if (uiState.isServerInstalled) {
                     viewModel.forceRedownloadFromVersion(release)
@@ -108,6 +127,18 @@ fun FridaInstallerScreen(
         )
     }
     
+    if (uiState.showLogHistory) {
+        LogHistoryDialog(
+            entries = uiState.logHistory,
+            hasOlder = uiState.logHistoryHasOlder,
+            isLoading = uiState.isLoadingLogHistory,
+            query = uiState.logHistoryQuery,
+            onLoadOlder = { viewModel.loadOlderLogHistory() },
+            onSearch = { viewModel.searchLogHistory(it) },
+            onDismiss = { viewModel.dismissLogHistory() }
+        )
+    }
+    
     Column(
         modifier = modifier
             .fillMaxSize()
@@ -194,7 +225,7 @@ fun FridaInstallerScreen(
                             modifier = Modifier.fillMaxWidth()
                         )
                         Text(
-                            text = "Download: ${uiState.downloadProgress}% (${formatBytes(uiState.downloadedBytes)}/${formatBytes(uiState.totalBytes)})",
+                            text = formatTransferProgress(uiState),
                             fontSize = 12.sp,
                             color = Color.Gray
                         )
@@ -207,6 +238,10 @@ fun FridaInstallerScreen(
                         fontWeight = FontWeight.Medium,
                         textAlign = TextAlign.Center
                     )
+                    
+                    OutlinedButton(onClick = { viewModel.cancelInstallation() }) {
+                        Text("Cancel")
+                    }
                 }
             }
             InstallStatus.SUCCESS -> {
@@ -244,7 +279,11 @@ fun FridaInstallerScreen(
                 CircularProgressIndicator()
                 Spacer(modifier = Modifier.height(8.dp))
                 Text(
-                    text = "Starting Server...",
+                    text = if (uiState.serverStatus.state == ServerSupervisor.State.BACKING_OFF) {
+                        "Restarting Server..."
+                    } else {
+                        "Starting Server..."
+                    },
                     fontWeight = FontWeight.Medium
                 )
             }
@@ -261,6 +300,8 @@ fun FridaInstallerScreen(
                     fontWeight = FontWeight.Bold,
                     fontSize = 18.sp
                 )
+                ServerUptime(uiState.serverStatus)
+                ServerHealth(uiState.serverHealth)
                 Row(
                     modifier = Modifier.fillMaxWidth(),
                     horizontalArrangement = Arrangement.spacedBy(8.dp)
@@ -355,7 +396,31 @@ fun FridaInstallerScreen(
                 }
         }
 
-        if (uiState.messages.isNotEmpty()) {
+        Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+            TextButton(onClick = { viewModel.openLogHistory() }) {
+                Text("📜 Server log history")
+            }
+            TextButton(onClick = { shareInstallTraces(context, viewModel.exportInstallTraces()) }) {
+                Text("⏱️ Export install traces")
+            }
+        }
+
+        Row(
+            modifier = Modifier.fillMaxWidth(),
+            verticalAlignment = Alignment.CenterVertically
+        ) {
+            Text(
+                text = "Prefetch new releases on Wi-Fi while charging and idle",
+                modifier = Modifier.weight(1f),
+                fontSize = 14.sp
+            )
+            Switch(
+                checked = uiState.isPrefetchEnabled,
+                onCheckedChange = { viewModel.setPrefetchEnabled(it) }
+            )
+        }
+        
+        if (!uiState.messages.isEmpty()) {
             Card(
                 modifier = Modifier.fillMaxWidth(),
                 colors = CardDefaults.cardColors(containerColor = Color.Black)
@@ -376,7 +441,12 @@ fun FridaInstallerScreen(
                             max = 500.dp
                         ) // Dynamic height that grows with content
                     ) {
-                        items(uiState.messages) { message ->
+                        items(
+                            count = uiState.messages.size(),
+                            key = { index -> uiState.messages.firstSequence + index }
+                        ) { index ->
+                            // Null when the line was pushed out of the buffer after this snapshot
+                            val message = uiState.messages.get(index)?.text ?: ""
                             Text(
                                 text = message,
                                 fontSize = 9.sp,
@@ -408,13 +478,18 @@ fun FridaInstallerScreen(
 fun InstallTypeDialog(
     onDownload: () -> Unit,
     onSelectFile: () -> Unit,
-    onDismiss: () -> Unit
+    onDismiss: () -> Unit,
+    expectedSha256: String,
+    onExpectedSha256Change: (String) -> Unit
 ) {
     AlertDialog(
         onDismissRequest = onDismiss,
         title = { Text("Choose Installation Method") },
         text = { 
-            Text("How would you like to install the Frida server?\n\n• Download: Automatically download latest version from GitHub\n• Select File: Choose your own Frida server binary")
+            Column(verticalArrangement = Arrangement.spacedBy(8.dp)) {
+                Text("How would you like to install the Frida server?\n\n• Download: Automatically download latest version from GitHub\n• Select File: Choose your own Frida server binary")
+                ExpectedSha256Field(expectedSha256, onExpectedSha256Change)
+            }
         },
         confirmButton = {
             Row(
@@ -441,13 +516,18 @@ fun RedownloadDialog(
     onConfirm: () -> Unit,
     onDismiss: () -> Unit,
     onSelectFile: () -> Unit,
-    serverInfo: String?
+    serverInfo: String?,
+    expectedSha256: String,
+    onExpectedSha256Change: (String) -> Unit
 ) {
     AlertDialog(
         onDismissRequest = onDismiss,
         title = { Text("Server Already Installed") },
         text = { 
-            Text("Frida server is already installed${if (serverInfo != null) ": $serverInfo" else ""}.\n\nChoose how to reinstall:\n• Download: Get latest from GitHub\n• Select File: Use your own binary")
+            Column(verticalArrangement = Arrangement.spacedBy(8.dp)) {
+                Text("Frida server is already installed${if (serverInfo != null) ": $serverInfo" else ""}.\n\nChoose how to reinstall:\n• Download: Get latest from GitHub\n• Select File: Use your own binary")
+                ExpectedSha256Field(expectedSha256, onExpectedSha256Change)
+            }
         },
         confirmButton = {
             Row(
@@ -469,11 +549,113 @@ fun RedownloadDialog(
     )
 }
 
+/**
+ * Optional digest the picked file must match, checked while it is installed.
+ */
+@Composable
+fun ExpectedSha256Field(value: String, onValueChange: (String) -> Unit) {
+    OutlinedTextField(
+        value = value,
+        onValueChange = onValueChange,
+        modifier = Modifier.fillMaxWidth(),
+        singleLine = true,
+        label = { Text("Expected SHA-256 for Select File (optional)") },
+        textStyle = LocalTextStyle.current.copy(fontFamily = FontFamily.Monospace, fontSize = 11.sp)
+    )
+}
+
+@Composable
+fun LogHistoryDialog(
+    entries: List<ServerLogArchive.Entry>,
+    hasOlder: Boolean,
+    isLoading: Boolean,
+    query: String,
+    onLoadOlder: () -> Unit,
+    onSearch: (String) -> Unit,
+    onDismiss: () -> Unit
+) {
+    var searchText by remember { mutableStateOf(query) }
+    
+    AlertDialog(
+        onDismissRequest = onDismiss,
+        title = { Text("Server Log History") },
+        text = {
+            Column(
+                modifier = Modifier
+                    .fillMaxWidth()
+                    .height(450.dp),
+                verticalArrangement = Arrangement.spacedBy(8.dp)
+            ) {
+                OutlinedTextField(
+                    value = searchText,
+                    onValueChange = { searchText = it },
+                    modifier = Modifier.fillMaxWidth(),
+                    singleLine = true,
+                    label = { Text("Search keyword") },
+                    trailingIcon = {
+                        TextButton(onClick = { onSearch(searchText) }) {
+                            Text("Find")
+                        }
+                    }
+                )
+                if (isLoading && entries.isEmpty()) {
+                    CircularProgressIndicator(modifier = Modifier.align(Alignment.CenterHorizontally))
+                } else if (entries.isEmpty()) {
+                    Text(
+                        text = if (query.isEmpty()) "No server output recorded yet" else "No lines match \"$query\"",
+                        fontSize = 12.sp,
+                        color = Color.Gray
+                    )
+                }
+                LazyColumn(
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .weight(1f)
+                ) {
+                    if (hasOlder) {
+                        item {
+                            TextButton(
+                                onClick = onLoadOlder,
+                                enabled = !isLoading,
+                                modifier = Modifier.fillMaxWidth()
+                            ) {
+                                Text(if (isLoading) "Loading..." else "Load older lines")
+                            }
+                        }
+                    }
+                    items(entries, key = { it.lineNumber }) { entry ->
+                        Text(
+                            text = "${formatLogTime(entry.timestamp)} ${entry.text}",
+                            fontSize = 9.sp,
+                            fontFamily = FontFamily.Monospace,
+                            lineHeight = 10.sp,
+                            color = if (entry.text.startsWith("[STDERR]")) Color.Red else Color.Unspecified
+                        )
+                    }
+                }
+            }
+        },
+        confirmButton = {},
+        dismissButton = {
+            TextButton(onClick = onDismiss) {
+                Text("Close")
+            }
+        }
+    )
+}
+
+fun formatLogTime(timestamp: Long): String {
+    return java.text.SimpleDateFormat("MM-dd HH:mm:ss", java.util.Locale.US).format(java.util.Date(timestamp))
+}
+
 @Composable
 fun VersionSelectionDialog(
     isLoading: Boolean,
-    releases: List<FridaInstaller.FridaRelease>,
-    onVersionSelected: (FridaInstaller.FridaRelease) -> Unit,
+    releases: List<FridaRelease>,
+    hasMore: Boolean,
+    onLoadMore: () -> Unit,
+    isCached: (FridaRelease) -> Boolean,
+    onVersionSelected: (FridaRelease) -> Unit,
     onDismiss: () -> Unit
 ) {
     AlertDialog(
@@ -534,6 +716,27 @@ fun VersionSelectionDialog(
                                         fontSize = 10.sp,
                                         color = Color.Gray
                                     )
+                                    if (isCached(release)) {
+                                        Text(
+                                            text = "⚡ Stored locally - switches instantly",
+                                            fontSize = 10.sp,
+                                            color = Color(0xFF2E7D32)
+                                        )
+                                    }
+                                }
+                            }
+                        }
+                        if (hasMore) {
+                            item {
+                                // Composed only once scrolled into view, which pulls in the next page
+                                LaunchedEffect(releases.size) { onLoadMore() }
+                                Box(
+                                    modifier = Modifier
+                                        .fillMaxWidth()
+                                        .padding(8.dp),
+                                    contentAlignment = Alignment.Center
+                                ) {
+                                    CircularProgressIndicator(modifier = Modifier.size(24.dp))
                                 }
                             }
                         }
@@ -550,6 +753,63 @@ fun VersionSelectionDialog(
     )
 }
 
+@Composable
+fun ServerUptime(status: ServerSupervisor.Status) {
+    var now by remember { mutableStateOf(System.currentTimeMillis()) }
+    LaunchedEffect(status.startedAtMs) {
+        while (true) {
+            now = System.currentTimeMillis()
+            delay(1000)
+        }
+    }
+    val text = StringBuilder("Uptime: ${formatUptime(status.getUptimeMs(now))}")
+    if (status.restartCount > 0) {
+        text.append(" • Restarts: ${status.restartCount}")
+        text.append(" • Last crash: ${ServerSupervisor.describeExitCode(status.lastExitCode)}")
+    }
+    Text(
+        text = text.toString(),
+        fontSize = 12.sp,
+        color = Color.Gray
+    )
+}
+
+@Composable
+fun ServerHealth(health: HealthProber.Snapshot) {
+    if (health.health == HealthProber.Health.UNKNOWN) {
+        return
+    }
+    val color = when (health.health) {
+        HealthProber.Health.HEALTHY -> Color.Green
+        HealthProber.Health.DEGRADED -> Color(0xFFFFA000)
+        else -> Color.Red
+    }
+    Text(
+        text = "Health: ${health.health} (${health.probes - health.failures}/${health.probes} probes ok)",
+        fontSize = 12.sp,
+        color = color
+    )
+    if (health.probes > health.failures) {
+        val connect = health.connectPercentilesNanos
+        val handshake = health.handshakePercentilesNanos
+        Text(
+            text = "Connect p50/p95/p99: ${formatLatency(connect[0])} / ${formatLatency(connect[1])} / ${formatLatency(connect[2])}\n" +
+                    "Handshake p50/p95/p99: ${formatLatency(handshake[0])} / ${formatLatency(handshake[1])} / ${formatLatency(handshake[2])}",
+            fontSize = 12.sp,
+            color = Color.Gray,
+            textAlign = TextAlign.Center
+        )
+    }
+    health.lastError?.let {
+        Text(text = "Last probe failed: $it", fontSize = 12.sp, color = color)
+    }
+}
+
+fun formatLatency(nanos: Long): String {
+    val micros = nanos / 1000
+    return if (micros < 1000) "${micros}µs" else String.format("%.1fms", micros / 1000.0)
+}
+
 fun formatBytes(bytes: Long): String {
     if (bytes < 1024) return "${bytes}B"
     val kb = bytes / 1024.0
@@ -558,6 +818,37 @@ fun formatBytes(bytes: Long): String {
     return String.format("%.1fMB", mb)
 }
 
+fun formatTransferProgress(uiState: InstallUiState): String {
+    val label = when (uiState.progressPhase) {
+        ProgressReporter.Phase.DOWNLOAD -> "Download"
+        ProgressReporter.Phase.EXTRACT -> "Extract"
+        ProgressReporter.Phase.COPY -> "Copy"
+    }
+    val text = StringBuilder("$label: ${uiState.downloadProgress}% " +
+            "(${formatBytes(uiState.downloadedBytes)}/${formatBytes(uiState.totalBytes)})")
+    if (uiState.bytesPerSecond > 0) {
+        text.append(" • ${formatBytes(uiState.bytesPerSecond)}/s")
+    }
+    if (uiState.etaMs >= 0) {
+        text.append(" • ${formatEta(uiState.etaMs)} left")
+    }
+    return text.toString()
+}
+
+fun formatEta(etaMs: Long): String {
+    val seconds = (etaMs + 999) / 1000
+    return if (seconds < 60) "${seconds}s" else "${seconds / 60}m ${seconds % 60}s"
+}
+
+fun formatUptime(uptimeMs: Long): String {
+    val seconds = uptimeMs / 1000
+    return when {
+        seconds < 60 -> "${seconds}s"
+        seconds < 3600 -> "${seconds / 60}m ${seconds % 60}s"
+        else -> "${seconds / 3600}h ${seconds % 3600 / 60}m"
+    }
+}
+
 fun formatPublishDate(publishedAt: String): String {
     return try {
         // Parse ISO 8601 format: 2023-12-15T10:30:00Z
@@ -568,6 +859,36 @@ fun formatPublishDate(publishedAt: String): String {
     }
 }
 
+fun shareInstallTraces(context: ComponentActivity, json: String) {
+    val intent = Intent(Intent.ACTION_SEND).apply {
+        type = "application/json"
+        putExtra(Intent.EXTRA_SUBJECT, "Frida server install traces")
+        putExtra(Intent.EXTRA_TEXT, json)
+    }
+    context.startActivity(Intent.createChooser(intent, "Export install traces"))
+}
+
+/**
+ * Opens the picked document for a single-pass install. Returns null when the provider does
+ * not hand out a regular file (e.g. a pipe), which needs the copying fallback below.
+ */
+fun openDocumentChannel(context: ComponentActivity, uri: Uri): Pair<String, FileChannel>? {
+    return try {
+        val descriptor = context.contentResolver.openFileDescriptor(uri, "r") ?: return null
+        if (descriptor.statSize < 0) {
+            descriptor.close()
+            return null
+        }
+        val name = context.contentResolver.query(uri, arrayOf(OpenableColumns.DISPLAY_NAME), null, null, null)
+            ?.use { cursor -> if (cursor.moveToFirst()) cursor.getString(0) else null }
+            ?: uri.lastPathSegment
+            ?: "selected file"
+        name to ParcelFileDescriptor.AutoCloseInputStream(descriptor).channel
+    } catch (e: Exception) {
+        null
+    }
+}
+
 fun getRealPathFromUri(context: ComponentActivity, uri: Uri): String? {
     return try {
         val inputStream = context.contentResolver.openInputStream(uri)
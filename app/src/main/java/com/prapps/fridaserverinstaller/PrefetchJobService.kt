@@ -0,0 +1,87 @@
+package com.prapps.fridaserverinstaller
+
+import android.app.job.JobInfo
+import android.app.job.JobParameters
+import android.app.job.JobScheduler
+import android.app.job.JobService
+import android.content.ComponentName
+import android.content.Context
+import android.util.Log
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Periodic background job that prefetches the latest Frida release for the device's
+ * architecture into the artifact store, so installing it later skips the download and decode.
+ * Only runs on an unmetered network while the device is charging and idle.
+ */
+class PrefetchJobService : JobService() {
+    private var operation: InstallerOperation? = null
+    // Settled by whichever comes first: the prefetch reporting jobFinished, or the scheduler
+    // stopping the job, after which it must not be reported finished
+    private var settled: AtomicBoolean? = null
+
+    override fun onStartJob(params: JobParameters): Boolean {
+        val settled = AtomicBoolean(false)
+        this.settled = settled
+        val installer = SharedInstaller.get(this)
+        operation = installer.prefetchLatest(object : FridaInstaller.InstallCallback {
+            override fun onProgress(message: String) {
+                Log.d(TAG, message)
+            }
+
+            override fun onError(error: String) {
+                Log.w(TAG, error)
+                if (settled.compareAndSet(false, true)) {
+                    // Idle jobs get no backoff; this runs it again in the next idle maintenance window
+                    jobFinished(params, true)
+                }
+            }
+
+            override fun onSuccess(message: String) {
+                Log.i(TAG, message)
+                if (settled.compareAndSet(false, true)) {
+                    jobFinished(params, false)
+                }
+            }
+
+            override fun onTransferProgress(progress: ProgressReporter.Progress) = Unit
+        })
+        return true
+    }
+
+    override fun onStopJob(params: JobParameters): Boolean {
+        // Constraints no longer hold; abort and let the scheduler run the job again later
+        settled?.set(true)
+        settled = null
+        operation?.cancel("Prefetch constraints no longer met")
+        operation = null
+        return true
+    }
+
+    companion object {
+        private const val TAG = "PrefetchJobService"
+        private const val JOB_ID = 1001
+        private val INTERVAL_MS = TimeUnit.DAYS.toMillis(1)
+
+        fun schedule(context: Context) {
+            val job = JobInfo.Builder(JOB_ID, ComponentName(context, PrefetchJobService::class.java))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(INTERVAL_MS)
+                .setPersisted(true)
+                .build()
+            jobScheduler(context).schedule(job)
+        }
+
+        fun cancel(context: Context) {
+            jobScheduler(context).cancel(JOB_ID)
+        }
+
+        fun isScheduled(context: Context): Boolean = jobScheduler(context).getPendingJob(JOB_ID) != null
+
+        private fun jobScheduler(context: Context): JobScheduler =
+            context.getSystemService(JobScheduler::class.java)
+    }
+}
@@ -0,0 +1,18 @@
+package com.prapps.fridaserverinstaller
+
+import android.content.Context
+
+/**
+ * The process-wide [FridaInstaller]. The UI and [PrefetchJobService] both go through it, so
+ * installs and prefetches share one artifact store and serialize on the installer's lock
+ * instead of racing on the same staging and store files.
+ */
+object SharedInstaller {
+    @Volatile
+    private var instance: FridaInstaller? = null
+
+    fun get(context: Context): FridaInstaller =
+        instance ?: synchronized(this) {
+            instance ?: FridaInstaller(AndroidPlatform(context.applicationContext)).also { instance = it }
+        }
+}
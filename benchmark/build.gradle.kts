@@ -0,0 +1,32 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":core"))
+    // Generates the .xz inputs
+    implementation("org.tukaani:xz:1.9")
+    // Baseline for the streaming release parser
+    implementation("com.google.code.gson:gson:2.10.1")
+    // Clients for the download benchmarks, which serve from a local JDK HttpServer
+    implementation("com.squareup.okhttp3:okhttp:4.12.0")
+}
+
+// ./gradlew :benchmark:jmh [-Pjmh.includes=Copy]
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    (findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
@@ -0,0 +1,65 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Switching between two stored server versions. {@code activateStored} repoints the active
+ * link in the artifact store; {@code copyIntoPlace} is the copy of the whole binary that a
+ * switch cost without the store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArtifactStoreBenchmark {
+    private static final int SIZE = 8 * 1024 * 1024;
+
+    private File dir;
+    private ArtifactStore store;
+    private ArtifactStore.Artifact[] versions;
+    private File active;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir("store-bench");
+        active = new File(dir, "frida-server");
+        store = new ArtifactStore(new File(dir, "store"), active, new File(dir, "downloads"));
+        byte[] data = BenchmarkData.randomBytes(SIZE);
+        File first = BenchmarkData.write(dir, "first", data);
+        data[0] ^= 1;
+        File second = BenchmarkData.write(dir, "second", data);
+        versions = new ArtifactStore.Artifact[]{
+                store.importBinary(first, "16.7.19", "arm64"),
+                store.importBinary(second, "17.2.0", "arm64")
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public ArtifactStore.Artifact activateStored() throws IOException {
+        ArtifactStore.Artifact artifact = versions[next++ & 1];
+        store.activate(artifact);
+        return artifact;
+    }
+
+    @Benchmark
+    public long copyIntoPlace() throws IOException {
+        File copy = new File(dir, "copied-server");
+        return BinaryFiles.copy(versions[next++ & 1].binary, copy, BinaryFiles.DEFAULT_COPY_BUFFER_SIZE, null);
+    }
+}
@@ -0,0 +1,138 @@
+package com.prapps.fridaserverinstaller;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Deterministic inputs for the benchmarks, generated locally so runs need no network.
+ */
+final class BenchmarkData {
+    static final String[] ARCHES = {"arm", "arm64", "x86", "x86_64"};
+    private static final byte[] ELF_MAGIC = {0x7F, 'E', 'L', 'F'};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Semi-compressible data, roughly like an executable: random words from a small vocabulary,
+     * starting with an ELF header.
+     */
+    static byte[] serverBinary(int size) {
+        Random random = new Random(99);
+        byte[][] words = new byte[256][];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = new byte[4 + random.nextInt(20)];
+            random.nextBytes(words[i]);
+        }
+        byte[] data = new byte[size];
+        int offset = 0;
+        while (offset < size) {
+            byte[] word = words[random.nextInt(words.length)];
+            int n = Math.min(word.length, size - offset);
+            System.arraycopy(word, 0, data, offset, n);
+            offset += n;
+        }
+        System.arraycopy(ELF_MAGIC, 0, data, 0, Math.min(ELF_MAGIC.length, size));
+        return data;
+    }
+
+    /** Incompressible data, for archives that must stay large once compressed. */
+    static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(7).nextBytes(data);
+        return data;
+    }
+
+    static File write(File dir, String name, byte[] data) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    /**
+     * Compresses {@code data} with xz, ending a block every {@code blockSize} bytes.
+     */
+    static File compress(File dir, String name, byte[] data, int blockSize) throws IOException {
+        File file = new File(dir, name);
+        try (XZOutputStream xz = new XZOutputStream(new FileOutputStream(file), new LZMA2Options(1))) {
+            int offset = 0;
+            while (offset < data.length) {
+                int n = Math.min(blockSize, data.length - offset);
+                xz.write(data, offset, n);
+                offset += n;
+                if (offset < data.length) {
+                    xz.endBlock();
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * A GitHub releases page: {@code releases} entries shaped like Frida's, each with the
+     * Android server assets among many unrelated ones.
+     */
+    static byte[] releasesJson(int releases) {
+        StringBuilder json = new StringBuilder("[");
+        String[] platforms = {"android", "linux", "macos", "windows", "ios"};
+        String[] artifacts = {"frida-server", "frida-gadget", "frida-inject", "frida-core-devkit", "frida-gum-devkit"};
+        for (int r = 0; r < releases; r++) {
+            String tag = "16." + (releases - r) + ".0";
+            if (r > 0) {
+                json.append(',');
+            }
+            json.append("{\"url\":\"https://api.github.com/repos/frida/frida/releases/").append(r)
+                    .append("\",\"id\":").append(100000 + r)
+                    .append(",\"tag_name\":\"").append(tag)
+                    .append("\",\"name\":\"Frida ").append(tag)
+                    .append("\",\"draft\":false,\"prerelease\":").append(r % 7 == 0)
+                    .append(",\"published_at\":\"2024-01-01T00:00:00Z\"")
+                    .append(",\"author\":{\"login\":\"oleavr\",\"id\":1,\"type\":\"User\"}")
+                    .append(",\"body\":\"Release notes for ").append(tag).append(" with some text to skip.\"")
+                    .append(",\"assets\":[");
+            int asset = 0;
+            for (String artifact : artifacts) {
+                for (String platform : platforms) {
+                    for (String arch : ARCHES) {
+                        String name = artifact + "-" + tag + "-" + platform + "-" + arch + ".xz";
+                        if (asset++ > 0) {
+                            json.append(',');
+                        }
+                        json.append("{\"id\":").append(asset)
+                                .append(",\"name\":\"").append(name)
+                                .append("\",\"content_type\":\"application/x-xz\",\"state\":\"uploaded\"")
+                                .append(",\"size\":").append(20_000_000 + asset)
+                                .append(",\"download_count\":").append(asset * 31)
+                                .append(",\"digest\":\"sha256:").append(String.format("%064x", asset))
+                                .append("\",\"browser_download_url\":\"https://github.com/frida/frida/releases/download/")
+                                .append(tag).append('/').append(name).append("\"}");
+                    }
+                }
+            }
+            json.append("]}");
+        }
+        json.append(']');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static File tempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
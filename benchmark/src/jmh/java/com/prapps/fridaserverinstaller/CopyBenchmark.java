@@ -0,0 +1,49 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The manual-install copy of a server binary into app storage at each buffer size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CopyBenchmark {
+    private static final int SIZE = 32 * 1024 * 1024;
+
+    @Param({"4096", "8192", "65536", "262144"})
+    public int bufferSize;
+
+    private File dir;
+    private File source;
+    private File dest;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir("copy-bench");
+        source = BenchmarkData.write(dir, "frida-server-16.5.9-android-arm64", BenchmarkData.serverBinary(SIZE));
+        dest = new File(dir, "frida-server");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long copy() throws IOException {
+        return BinaryFiles.copy(source, dest, bufferSize, null);
+    }
+}
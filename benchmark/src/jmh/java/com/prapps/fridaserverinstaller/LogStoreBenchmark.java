@@ -0,0 +1,47 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A chatty server session: every output line is appended and a snapshot taken for the UI.
+ * {@code copyOnAppend} is the immutable list the UI state copied per line before
+ * {@link LogStore}; {@code ringBuffer} is the bounded store and its O(1) snapshots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LogStoreBenchmark {
+    private static final int LINES = 20_000;
+
+    @Benchmark
+    public int copyOnAppend() {
+        List<String> messages = Collections.emptyList();
+        for (int i = 0; i < LINES; i++) {
+            List<String> current = new ArrayList<>(messages);
+            current.add("[STDOUT] line " + i);
+            messages = current;
+        }
+        return messages.size();
+    }
+
+    @Benchmark
+    public int ringBuffer() {
+        LogStore store = new LogStore();
+        LogStore.Snapshot snapshot = LogStore.Snapshot.EMPTY;
+        for (int i = 0; i < LINES; i++) {
+            store.append("[STDOUT] line " + i);
+            snapshot = store.snapshot();
+        }
+        return snapshot.size();
+    }
+}
@@ -0,0 +1,81 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual install of a picked file. {@code multiCopy} is the path through a cache copy of the
+ * document, a second copy in app storage and, for archives, a separate extraction;
+ * {@code singlePass} sniffs the opened file and decodes or transfers it straight into the
+ * staged binary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ManualInstallBenchmark {
+    private static final int SIZE = 64 * 1024 * 1024;
+    /** Buffer of Kotlin's InputStream.copyTo, used for the cache copy of the document. */
+    private static final int CACHE_COPY_BUFFER_SIZE = 8192;
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
+
+    @Param({"xz", "elf"})
+    public String format;
+
+    private File dir;
+    private File picked;
+    private File cacheCopy;
+    private File tempArchive;
+    private File staged;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir("manual-bench");
+        byte[] data = BenchmarkData.serverBinary(SIZE);
+        picked = "xz".equals(format)
+                ? BenchmarkData.compress(dir, "picked", data, Integer.MAX_VALUE)
+                : BenchmarkData.write(dir, "picked", data);
+        cacheCopy = new File(dir, "temp_frida_server");
+        tempArchive = new File(dir, "temp-server.xz");
+        staged = new File(dir, "frida-server.staging");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long multiCopy() throws IOException {
+        BinaryFiles.copy(picked, cacheCopy, CACHE_COPY_BUFFER_SIZE, null);
+        if ("xz".equals(format)) {
+            BinaryFiles.copy(cacheCopy, tempArchive, BinaryFiles.DEFAULT_COPY_BUFFER_SIZE, null);
+            long decoded = ParallelXzDecoder.decodeSequential(tempArchive, staged, SIZE, DECODE_BUFFER_SIZE, null);
+            tempArchive.delete();
+            return decoded;
+        }
+        return BinaryFiles.copy(cacheCopy, staged, BinaryFiles.DEFAULT_COPY_BUFFER_SIZE, null);
+    }
+
+    @Benchmark
+    public long singlePass() throws IOException {
+        try (FileChannel source = new FileInputStream(picked).getChannel()) {
+            if (BinaryFiles.sniffFormat(source) == BinaryFiles.Format.XZ) {
+                return ParallelXzDecoder.decodeChannel(source, staged, DECODE_BUFFER_SIZE, null);
+            }
+            return BinaryFiles.transfer(source, staged, null);
+        }
+    }
+}
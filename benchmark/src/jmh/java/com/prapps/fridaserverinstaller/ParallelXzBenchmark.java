@@ -0,0 +1,51 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block-parallel decode of a multi-block .xz archive at each thread count, for choosing
+ * {@link ParallelXzDecoder#defaultThreads()} against the cores a device has.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelXzBenchmark {
+    private static final int SIZE = 32 * 1024 * 1024;
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private File dir;
+    private File archive;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir("parallel-xz-bench");
+        archive = BenchmarkData.compress(dir, "multi.xz", BenchmarkData.serverBinary(SIZE), BLOCK_SIZE);
+        output = new File(dir, "frida-server");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long decode() throws IOException {
+        return ParallelXzDecoder.decode(archive, output, threads);
+    }
+}
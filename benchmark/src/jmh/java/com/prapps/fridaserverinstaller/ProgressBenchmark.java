@@ -0,0 +1,56 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of progress reporting over a whole transfer, without the I/O: one report per buffer
+ * read, as the download, decode and copy loops make them. {@code noListener} is the loop
+ * alone, {@code rawListener} forwards every report, and {@code progressReporter} coalesces
+ * them into UI updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProgressBenchmark {
+    private static final long TOTAL = 64L * 1024 * 1024;
+
+    @Param({"4096", "8192", "65536", "262144"})
+    public int bufferSize;
+
+    @Benchmark
+    public long noListener() {
+        return transfer(null);
+    }
+
+    @Benchmark
+    public long rawListener(Blackhole blackhole) {
+        return transfer((bytes, totalBytes) -> blackhole.consume(bytes));
+    }
+
+    @Benchmark
+    public long progressReporter(Blackhole blackhole) {
+        ProgressReporter reporter = new ProgressReporter(ProgressReporter.Phase.DOWNLOAD, blackhole::consume);
+        transfer(reporter);
+        return reporter.getEmittedCount();
+    }
+
+    private long transfer(ResumableDownloader.ProgressListener listener) {
+        long done = 0;
+        while (done < TOTAL) {
+            done = Math.min(TOTAL, done + bufferSize);
+            if (listener != null) {
+                listener.onProgress(done, TOTAL);
+            }
+        }
+        return done;
+    }
+}
@@ -0,0 +1,59 @@
+package com.prapps.fridaserverinstaller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming parse of a full GitHub releases page, read through a decoder and buffer the way
+ * a response body is, at each reader buffer size. {@code treeParse} is the Gson tree the
+ * streaming parser replaced; run with {@code -prof gc} to compare what each allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReleaseParseBenchmark {
+    /** GitHub's largest page size. */
+    private static final int RELEASES_PER_PAGE = 100;
+
+    @Param({"4096", "8192", "65536", "262144"})
+    public int bufferSize;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        json = BenchmarkData.releasesJson(RELEASES_PER_PAGE);
+    }
+
+    @Benchmark
+    public List<FridaRelease> parseReleases() throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), bufferSize)) {
+            return ReleaseParser.parseReleases(reader);
+        }
+    }
+
+    @Benchmark
+    public JsonArray treeParse() throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), bufferSize)) {
+            return JsonParser.parseReader(reader).getAsJsonArray();
+        }
+    }
+}
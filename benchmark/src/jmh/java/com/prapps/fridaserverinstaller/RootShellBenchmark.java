@@ -0,0 +1,57 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One short command through the persistent {@link RootShell} versus forking a shell per
+ * call, the pattern the installer used before it. Plain {@code sh} stands in for {@code su}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RootShellBenchmark {
+    private RootShell shell;
+
+    @Setup
+    public void setUp() {
+        shell = new RootShell("sh");
+    }
+
+    @TearDown
+    public void tearDown() {
+        shell.close();
+    }
+
+    @Benchmark
+    public RootShell.Result persistentShell() throws IOException, InterruptedException {
+        return shell.run("echo x");
+    }
+
+    @Benchmark
+    public String forkPerCall() throws IOException, InterruptedException {
+        Process process = Runtime.getRuntime().exec("sh");
+        try (OutputStream in = process.getOutputStream();
+             BufferedReader out = new BufferedReader(
+                     new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            in.write("echo x\nexit\n".getBytes(StandardCharsets.UTF_8));
+            in.flush();
+            String line = out.readLine();
+            process.waitFor();
+            return line;
+        }
+    }
+}
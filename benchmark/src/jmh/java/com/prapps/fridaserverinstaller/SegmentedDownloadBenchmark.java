@@ -0,0 +1,100 @@
+package com.prapps.fridaserverinstaller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Segmented download against a local server that caps every connection's rate, like a link
+ * where one TCP stream cannot fill the pipe. {@code segments=1} is the single-stream baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SegmentedDownloadBenchmark {
+    private static final int SIZE = 1024 * 1024;
+    private static final int CHUNK = 64 * 1024;
+    /** Pause after each chunk, capping a connection at about 2.5 MB/s. */
+    private static final long CHUNK_DELAY_MS = 25;
+
+    @Param({"1", "4"})
+    public int segments;
+
+    private File dir;
+    private byte[] payload;
+    private HttpServer server;
+    private String url;
+    private SegmentedDownloader downloader;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir("segmented-bench");
+        payload = BenchmarkData.randomBytes(SIZE);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/asset.xz", this::serve);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/asset.xz";
+        OkHttpClient client = new OkHttpClient();
+        downloader = new SegmentedDownloader(client, new ResumableDownloader(client));
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        return downloader.download(url, new File(dir, "asset.xz"), segments, null).length();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("ETag", "\"v1\"");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(SIZE));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        int start = 0;
+        int end = SIZE - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            start = Integer.parseInt(bounds[0]);
+            end = bounds[1].isEmpty() ? SIZE - 1 : Integer.parseInt(bounds[1]);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+        }
+        exchange.sendResponseHeaders(range != null ? 206 : 200, end - start + 1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int offset = start; offset <= end; offset += CHUNK) {
+                out.write(payload, offset, Math.min(CHUNK, end - offset + 1));
+                out.flush();
+                Thread.sleep(CHUNK_DELAY_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
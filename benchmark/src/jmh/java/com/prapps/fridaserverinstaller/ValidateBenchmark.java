@@ -0,0 +1,56 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size, name and magic-byte checks on a selected file. Only a 16-byte header is read, so
+ * buffer size does not apply; the cost is dominated by file metadata and open calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValidateBenchmark {
+    private static final int SIZE = 4 * 1024 * 1024;
+
+    private File dir;
+    private File binary;
+    private File archive;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir("validate-bench");
+        byte[] data = BenchmarkData.serverBinary(SIZE);
+        binary = BenchmarkData.write(dir, "frida-server-android-arm64", data);
+        archive = BenchmarkData.compress(dir, "frida-server-16.5.9-android-arm64.xz",
+                BenchmarkData.randomBytes(SIZE), Integer.MAX_VALUE);
+        if (BinaryFiles.validateFridaBinary(binary) != null || BinaryFiles.validateFridaBinary(archive) != null) {
+            throw new IllegalStateException("Benchmark inputs do not pass validation");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public String validateElf() {
+        return BinaryFiles.validateFridaBinary(binary);
+    }
+
+    @Benchmark
+    public String validateXz() {
+        return BinaryFiles.validateFridaBinary(archive);
+    }
+}
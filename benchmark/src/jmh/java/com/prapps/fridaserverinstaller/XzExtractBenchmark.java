@@ -0,0 +1,59 @@
+package com.prapps.fridaserverinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decompression of a server-sized .xz archive: the sequential loop at each buffer size, and
+ * the block-parallel decoder used by {@code extractXzFile} on a multi-block archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class XzExtractBenchmark {
+    private static final int SIZE = 16 * 1024 * 1024;
+
+    @Param({"4096", "8192", "65536", "262144"})
+    public int bufferSize;
+
+    private File dir;
+    private File singleBlock;
+    private File multiBlock;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir("xz-bench");
+        byte[] data = BenchmarkData.serverBinary(SIZE);
+        singleBlock = BenchmarkData.compress(dir, "single.xz", data, Integer.MAX_VALUE);
+        multiBlock = BenchmarkData.compress(dir, "multi.xz", data, 1024 * 1024);
+        output = new File(dir, "frida-server");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long sequential() throws IOException {
+        return ParallelXzDecoder.decodeSequential(singleBlock, output, SIZE, bufferSize, null);
+    }
+
+    /** Buffer size is fixed inside the parallel decoder; this is the baseline to compare against. */
+    @Benchmark
+    public long parallel() throws IOException {
+        return ParallelXzDecoder.decode(multiBlock, output, ParallelXzDecoder.defaultThreads());
+    }
+}
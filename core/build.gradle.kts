@@ -0,0 +1,29 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.kotlin.jvm)
+}
+
+// The installer engine, free of Android APIs so it can run and be tested on a plain JVM.
+// The app supplies an Android Platform; JvmPlatform runs it elsewhere.
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+kotlin {
+    compilerOptions {
+        jvmTarget.set(org.jetbrains.kotlin.gradle.dsl.JvmTarget.JVM_11)
+    }
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation("com.squareup.okhttp3:okhttp:4.12.0")
+    implementation("com.google.code.gson:gson:2.10.1")
+    implementation("org.tukaani:xz:1.9")
+    testImplementation(libs.junit)
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.12.0")
+}
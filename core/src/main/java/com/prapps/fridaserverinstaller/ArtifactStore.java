@@ -0,0 +1,478 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Content-addressed store of extracted frida-server binaries.
+ *
+ * Each binary lives in {@code store/<sha256>/frida-server}. The index is keyed by version and
+ * architecture: every (version, arch) pointing at that content has its own
+ * {@code entry-<key>.properties} next to it describing size, last use and the digests taken when
+ * it was produced, plus the size and mtime it was last verified at. Identical bytes installed
+ * under two names, such as a release and a manual install of the same file, are stored once and
+ * found under both. The path the server is launched
+ * from ({@code files/frida/frida-server}) is a symlink into the store, so switching versions is
+ * a single atomic rename of that link. Entries other than the active one are evicted in LRU
+ * order once the store, together with archives left in the Downloads folder, exceeds the quota.
+ * Instances only coordinate through their own monitor, so a process keeps one store per
+ * directory.
+ */
+public class ArtifactStore {
+    public static final long DEFAULT_QUOTA_BYTES = 256L * 1024 * 1024;
+    private static final String BINARY_NAME = "frida-server";
+    private static final String ENTRY_PREFIX = "entry";
+    private static final String ENTRY_SUFFIX = ".properties";
+
+    private final File storeDir;
+    private final File activeLink;
+    private final File downloadsDir;
+    /** Keyed by {@link #keyOf(String, String)}, least recently used first after loading. */
+    private final Map<String, Artifact> artifacts = new LinkedHashMap<>();
+    private long quotaBytes = DEFAULT_QUOTA_BYTES;
+
+    public enum Verification {
+        /** Size and mtime match the last verification, so the digest was not recomputed. */
+        UNCHANGED,
+        /** The binary was read again and still matches its digest. */
+        VERIFIED,
+        /** The binary no longer matches its digest. */
+        CORRUPT
+    }
+
+    public static class Artifact {
+        public final String version;
+        public final String arch;
+        public final String sha256;
+        /** Digest of the archive the binary was decoded from, or null if not known. */
+        public final String archiveSha256;
+        public final long size;
+        public final File binary;
+        long lastUsed;
+        long verifiedSize;
+        long verifiedMtime;
+
+        Artifact(String version, String arch, String sha256, String archiveSha256, long size, File binary,
+                 long lastUsed) {
+            this.version = version;
+            this.arch = arch;
+            this.sha256 = sha256;
+            this.archiveSha256 = archiveSha256;
+            this.size = size;
+            this.binary = binary;
+            this.lastUsed = lastUsed;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        String key() {
+            return keyOf(version, arch);
+        }
+    }
+
+    /**
+     * @param downloadsDir folder with downloaded archives that count toward the quota, or null
+     */
+    public ArtifactStore(File storeDir, File activeLink, File downloadsDir) {
+        this.storeDir = storeDir;
+        this.activeLink = activeLink;
+        this.downloadsDir = downloadsDir;
+        if (!storeDir.exists()) {
+            storeDir.mkdirs();
+        }
+        loadIndex();
+    }
+
+    public synchronized void setQuotaBytes(long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+    }
+
+    public synchronized long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    public synchronized Artifact find(String version, String arch) {
+        Artifact artifact = artifacts.get(keyOf(version, arch));
+        return artifact != null && artifact.binary.exists() ? artifact : null;
+    }
+
+    public synchronized List<Artifact> list() {
+        return new ArrayList<>(artifacts.values());
+    }
+
+    /**
+     * Moves {@code binary} into the store under its SHA-256 and indexes it as {@code version} for
+     * {@code arch}. If identical content is already stored, it is shared and {@code binary} is
+     * deleted; other versions pointing at it are unaffected.
+     */
+    public synchronized Artifact importBinary(File binary, String version, String arch) throws IOException {
+        return importBinary(binary, version, arch, null, null);
+    }
+
+    /**
+     * Like {@link #importBinary(File, String, String)} with digests already taken while the
+     * binary was written. A null {@code sha256} is computed by reading the binary.
+     */
+    public synchronized Artifact importBinary(File binary, String version, String arch, String sha256,
+                                              String archiveSha256) throws IOException {
+        if (sha256 == null) {
+            sha256 = Sha256.of(binary);
+        }
+        File entryDir = new File(storeDir, sha256);
+        File storedBinary = new File(entryDir, BINARY_NAME);
+
+        // Stored bytes that changed since their last verification are replaced by the fresh copy,
+        // which is how a forced re-download repairs a damaged binary
+        Artifact existing = anyWithContent(sha256);
+        boolean moved = !storedBinary.exists() || existing == null
+                || storedBinary.length() != existing.verifiedSize || storedBinary.lastModified() != existing.verifiedMtime;
+        if (moved) {
+            if (!entryDir.exists() && !entryDir.mkdirs()) {
+                throw new IOException("Failed to create store entry " + entryDir);
+            }
+            Files.move(binary.toPath(), storedBinary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            binary.delete();
+        }
+
+        if (archiveSha256 == null && existing != null) {
+            archiveSha256 = existing.archiveSha256;
+        }
+        Artifact artifact = new Artifact(version, arch, sha256, archiveSha256, storedBinary.length(), storedBinary,
+                System.currentTimeMillis());
+        // Either the digest describes the bytes just moved in, or the reused bytes still match
+        // their last verification
+        artifact.verifiedSize = storedBinary.length();
+        artifact.verifiedMtime = storedBinary.lastModified();
+        if (moved) {
+            for (Artifact sharing : withContent(sha256)) {
+                sharing.verifiedSize = artifact.verifiedSize;
+                sharing.verifiedMtime = artifact.verifiedMtime;
+                writeEntry(sharing);
+            }
+        }
+        writeEntry(artifact);
+        Artifact replaced = artifacts.put(artifact.key(), artifact);
+        if (replaced != null && !replaced.sha256.equals(sha256)) {
+            // The same version and arch now has different bytes
+            releaseContent(replaced);
+        }
+        return artifact;
+    }
+
+    /**
+     * Points the active path at {@code artifact} by atomically replacing the symlink.
+     */
+    public synchronized void activate(Artifact artifact) throws IOException {
+        activate(artifact, true);
+    }
+
+    /**
+     * Like {@link #activate(Artifact)}, but can leave eviction for later so the previously active
+     * artifact survives until a switch to the new one is known to have worked.
+     */
+    public synchronized void activate(Artifact artifact, boolean enforceQuota) throws IOException {
+        Path link = activeLink.toPath();
+        Path tempLink = new File(activeLink.getParentFile(), activeLink.getName() + ".link").toPath();
+        Files.deleteIfExists(tempLink);
+        Files.createSymbolicLink(tempLink, artifact.binary.toPath());
+        Files.move(tempLink, link, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        artifact.lastUsed = System.currentTimeMillis();
+        writeEntry(artifact);
+        if (enforceQuota) {
+            enforceQuota();
+        }
+    }
+
+    /**
+     * Checks {@code artifact} against its digest. The binary is only read again when its size
+     * or mtime differ from the last verification.
+     */
+    public synchronized Verification verify(Artifact artifact) throws IOException {
+        long size = artifact.binary.length();
+        long mtime = artifact.binary.lastModified();
+        if (size == artifact.verifiedSize && mtime == artifact.verifiedMtime) {
+            return Verification.UNCHANGED;
+        }
+        if (!artifact.sha256.equals(Sha256.of(artifact.binary))) {
+            return Verification.CORRUPT;
+        }
+        artifact.verifiedSize = size;
+        artifact.verifiedMtime = mtime;
+        // Every version sharing the binary was verified by the same read
+        for (Artifact sharing : withContent(artifact.sha256)) {
+            sharing.verifiedSize = size;
+            sharing.verifiedMtime = mtime;
+            writeEntry(sharing);
+        }
+        return Verification.VERIFIED;
+    }
+
+    /**
+     * Deletes a stored binary, e.g. one that failed verification, along with every version
+     * pointing at it.
+     */
+    public synchronized void remove(Artifact artifact) {
+        for (Artifact sharing : withContent(artifact.sha256)) {
+            artifacts.remove(sharing.key());
+        }
+        deleteContent(artifact.binary.getParentFile());
+    }
+
+    /**
+     * Removes the active pointer. Stored binaries are kept for later switches.
+     */
+    public synchronized void deactivate() throws IOException {
+        Files.deleteIfExists(activeLink.toPath());
+    }
+
+    /**
+     * The entry the active path points at. When several versions share that binary, the one
+     * activated last is returned.
+     */
+    public synchronized Artifact getActive() {
+        String sha256 = activeSha256();
+        Artifact active = null;
+        if (sha256 != null) {
+            for (Artifact artifact : withContent(sha256)) {
+                if (active == null || artifact.lastUsed >= active.lastUsed) {
+                    active = artifact;
+                }
+            }
+        }
+        return active;
+    }
+
+    private String activeSha256() {
+        Path link = activeLink.toPath();
+        if (!Files.isSymbolicLink(link)) {
+            return null;
+        }
+        try {
+            Path target = Files.readSymbolicLink(link);
+            return target.getParent() != null ? target.getParent().getFileName().toString() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Total bytes counted against the quota: stored binaries, each counted once however many
+     * versions point at it, plus finished archives in Downloads.
+     */
+    public synchronized long getUsedBytes() {
+        long used = 0;
+        Set<String> counted = new HashSet<>();
+        for (Artifact artifact : artifacts.values()) {
+            if (counted.add(artifact.sha256)) {
+                used += artifact.size;
+            }
+        }
+        for (File archive : downloadedArchives()) {
+            used += archive.length();
+        }
+        return used;
+    }
+
+    /**
+     * Evicts least recently used entries (never the active one) and downloaded archives until
+     * usage is within the quota.
+     */
+    public synchronized void enforceQuota() {
+        long used = getUsedBytes();
+        if (used <= quotaBytes) {
+            return;
+        }
+
+        String activeSha256 = activeSha256();
+        List<EvictionCandidate> candidates = new ArrayList<>();
+        for (Artifact artifact : artifacts.values()) {
+            if (!artifact.sha256.equals(activeSha256)) {
+                candidates.add(new EvictionCandidate(artifact.lastUsed, artifact, null));
+            }
+        }
+        for (File archive : downloadedArchives()) {
+            candidates.add(new EvictionCandidate(archive.lastModified(), null, archive));
+        }
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.lastUsed));
+
+        for (EvictionCandidate candidate : candidates) {
+            if (used <= quotaBytes) {
+                break;
+            }
+            if (candidate.artifact != null) {
+                artifacts.remove(candidate.artifact.key());
+                // Only the last version pointing at a binary frees its bytes
+                if (releaseContent(candidate.artifact)) {
+                    used -= candidate.artifact.size;
+                }
+            } else {
+                long length = candidate.archive.length();
+                if (candidate.archive.delete()) {
+                    used -= length;
+                }
+            }
+        }
+    }
+
+    private static class EvictionCandidate {
+        final long lastUsed;
+        final Artifact artifact;
+        final File archive;
+
+        EvictionCandidate(long lastUsed, Artifact artifact, File archive) {
+            this.lastUsed = lastUsed;
+            this.artifact = artifact;
+            this.archive = archive;
+        }
+    }
+
+    /**
+     * Finished {@code .xz} downloads. Resume journals, and archives being downloaded again
+     * over them, belong to a live download and are left alone.
+     */
+    private List<File> downloadedArchives() {
+        List<File> archives = new ArrayList<>();
+        File[] files = downloadsDir != null ? downloadsDir.listFiles() : null;
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(".xz") && !hasLiveJournal(file)) {
+                    archives.add(file);
+                }
+            }
+        }
+        return archives;
+    }
+
+    private static boolean hasLiveJournal(File archive) {
+        File partFile = ResumableDownloader.partFileFor(archive);
+        return partFile.exists() || new File(partFile.getPath() + ".meta").exists();
+    }
+
+    private static String keyOf(String version, String arch) {
+        return version + "/" + arch;
+    }
+
+    private static File entryFileFor(Artifact artifact) {
+        String key = artifact.key();
+        String name = Sha256.of(key.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        return new File(artifact.binary.getParentFile(), ENTRY_PREFIX + "-" + name + ENTRY_SUFFIX);
+    }
+
+    private List<Artifact> withContent(String sha256) {
+        List<Artifact> sharing = new ArrayList<>();
+        for (Artifact artifact : artifacts.values()) {
+            if (artifact.sha256.equals(sha256)) {
+                sharing.add(artifact);
+            }
+        }
+        return sharing;
+    }
+
+    private Artifact anyWithContent(String sha256) {
+        List<Artifact> sharing = withContent(sha256);
+        return sharing.isEmpty() ? null : sharing.get(0);
+    }
+
+    /**
+     * Drops the entry file of an artifact no longer in the index, and its binary too unless
+     * another version still points at it or it is active. Returns true if the binary was deleted.
+     */
+    private boolean releaseContent(Artifact artifact) {
+        entryFileFor(artifact).delete();
+        if (anyWithContent(artifact.sha256) != null || artifact.sha256.equals(activeSha256())) {
+            return false;
+        }
+        deleteContent(artifact.binary.getParentFile());
+        return true;
+    }
+
+    private static void deleteContent(File entryDir) {
+        File[] files = entryDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        entryDir.delete();
+    }
+
+    private void loadIndex() {
+        File[] entryDirs = storeDir.listFiles(File::isDirectory);
+        if (entryDirs == null) {
+            return;
+        }
+        List<Artifact> loaded = new ArrayList<>();
+        for (File entryDir : entryDirs) {
+            File binary = new File(entryDir, BINARY_NAME);
+            File[] entryFiles = entryDir.listFiles(
+                    (dir, name) -> name.startsWith(ENTRY_PREFIX + "-") && name.endsWith(ENTRY_SUFFIX));
+            if (!binary.exists() || entryFiles == null) {
+                continue;
+            }
+            for (File entryFile : entryFiles) {
+                Properties entry = new Properties();
+                try (FileInputStream in = new FileInputStream(entryFile)) {
+                    entry.load(in);
+                    Artifact artifact = new Artifact(entry.getProperty("version", "Unknown"),
+                            entry.getProperty("arch", "Unknown"), entryDir.getName(),
+                            entry.getProperty("archiveSha256"), binary.length(), binary,
+                            Long.parseLong(entry.getProperty("lastUsed", "0")));
+                    // Entries written before verification was recorded get checked on first use
+                    artifact.verifiedSize = Long.parseLong(entry.getProperty("verifiedSize", "-1"));
+                    artifact.verifiedMtime = Long.parseLong(entry.getProperty("verifiedMtime", "-1"));
+                    loaded.add(artifact);
+                } catch (IOException | NumberFormatException e) {
+                    // Unreadable entry; leave it for eviction by a later import
+                }
+            }
+        }
+        loaded.sort(Comparator.comparingLong(Artifact::getLastUsed));
+        List<Artifact> replaced = new ArrayList<>();
+        for (Artifact artifact : loaded) {
+            Artifact previous = artifacts.put(artifact.key(), artifact);
+            if (previous != null) {
+                replaced.add(previous);
+            }
+        }
+        for (Artifact artifact : replaced) {
+            if (!artifact.sha256.equals(artifacts.get(artifact.key()).sha256)) {
+                releaseContent(artifact);
+            }
+        }
+    }
+
+    private void writeEntry(Artifact artifact) throws IOException {
+        Properties entry = new Properties();
+        entry.setProperty("version", artifact.version);
+        entry.setProperty("arch", artifact.arch);
+        entry.setProperty("size", Long.toString(artifact.size));
+        entry.setProperty("lastUsed", Long.toString(artifact.lastUsed));
+        entry.setProperty("sha256", artifact.sha256);
+        if (artifact.archiveSha256 != null) {
+            entry.setProperty("archiveSha256", artifact.archiveSha256);
+        }
+        entry.setProperty("verifiedSize", Long.toString(artifact.verifiedSize));
+        entry.setProperty("verifiedMtime", Long.toString(artifact.verifiedMtime));
+        try (FileOutputStream out = new FileOutputStream(entryFileFor(artifact))) {
+            entry.store(out, "frida-server artifact");
+        }
+    }
+}
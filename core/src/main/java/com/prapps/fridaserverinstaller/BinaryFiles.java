@@ -0,0 +1,210 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Plain file helpers used by the installer: buffered copies and sanity checks on a
+ * user-supplied frida-server file.
+ */
+public final class BinaryFiles {
+    public static final int DEFAULT_COPY_BUFFER_SIZE = 4096;
+    /** Bytes per transferTo call, so cancellation and progress are checked between chunks. */
+    private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final byte[] XZ_MAGIC = {(byte) 0xFD, '7', 'z', 'X', 'Z', 0x00};
+    private static final byte[] ELF_MAGIC = {0x7F, 'E', 'L', 'F'};
+
+    public enum Format {
+        XZ, ELF, UNKNOWN
+    }
+
+    private BinaryFiles() {
+    }
+
+    /**
+     * Copies {@code source} to {@code dest} through a {@code bufferSize} buffer, reporting bytes
+     * copied out of the source length after every write. Returns the number of bytes copied.
+     */
+    public static long copy(File source, File dest, int bufferSize,
+                            ResumableDownloader.ProgressListener listener) throws IOException {
+        long totalBytes = source.length();
+        long copied = 0;
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(dest)) {
+
+            byte[] buffer = new byte[bufferSize];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                InstallerOperation.checkCancelled();
+                out.write(buffer, 0, bytesRead);
+                copied += bytesRead;
+                if (listener != null) {
+                    listener.onProgress(copied, totalBytes);
+                }
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Tells an XZ archive from a raw ELF binary by the magic bytes at the channel's current
+     * position, without moving it.
+     */
+    public static Format sniffFormat(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(XZ_MAGIC.length);
+        long position = channel.position();
+        while (header.hasRemaining()) {
+            int read = channel.read(header, position + header.position());
+            if (read == -1) {
+                break;
+            }
+        }
+        if (startsWith(header, XZ_MAGIC)) {
+            return Format.XZ;
+        }
+        if (startsWith(header, ELF_MAGIC)) {
+            return Format.ELF;
+        }
+        return Format.UNKNOWN;
+    }
+
+    private static boolean startsWith(ByteBuffer header, byte[] magic) {
+        if (header.position() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header.get(i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the rest of {@code source} to {@code dest} with {@link FileChannel#transferTo}, so
+     * the kernel moves the data without passing it through a Java buffer. Reports bytes
+     * transferred out of the remaining size after every chunk and returns the total.
+     */
+    public static long transfer(FileChannel source, File dest,
+                                ResumableDownloader.ProgressListener listener) throws IOException {
+        return transfer(source, dest, null, listener);
+    }
+
+    /**
+     * Like {@link #transfer(FileChannel, File, ResumableDownloader.ProgressListener)}, feeding
+     * {@code digest} as well. The bytes then have to be seen by the CPU, so each chunk is
+     * mapped, digested and written from the same mapping instead of using transferTo.
+     */
+    public static long transfer(FileChannel source, File dest, Sha256 digest,
+                                ResumableDownloader.ProgressListener listener) throws IOException {
+        long start = source.position();
+        long total = source.size() - start;
+        long transferred = 0;
+        try (FileOutputStream out = new FileOutputStream(dest)) {
+            FileChannel target = out.getChannel();
+            while (transferred < total) {
+                InstallerOperation.checkCancelled();
+                long chunk = Math.min(TRANSFER_CHUNK_SIZE, total - transferred);
+                long n;
+                if (digest != null) {
+                    MappedByteBuffer mapped = source.map(FileChannel.MapMode.READ_ONLY, start + transferred, chunk);
+                    digest.update(mapped);
+                    n = chunk;
+                    while (mapped.hasRemaining()) {
+                        target.write(mapped);
+                    }
+                } else {
+                    n = source.transferTo(start + transferred, chunk, target);
+                }
+                if (n <= 0) {
+                    throw new IOException("Source ended after " + transferred + " of " + total + " bytes");
+                }
+                transferred += n;
+                if (listener != null) {
+                    listener.onProgress(transferred, total);
+                }
+            }
+        }
+        source.position(start + transferred);
+        return transferred;
+    }
+
+    /**
+     * Checks that {@code file} looks like a frida-server binary or archive by its size, name
+     * and magic bytes. Returns why it does not, or null if it passes.
+     */
+    public static String validateFridaBinary(File file) {
+        String fileName = file.getName().toLowerCase(Locale.ROOT);
+
+        // Check 1: File size - Frida server should be reasonable size (1MB - 50MB)
+        long fileSize = file.length();
+        if (fileSize < 1024 * 1024) { // Less than 1MB
+            return "File too small (" + formatFileSize(fileSize) + ") - likely not a Frida server binary";
+        }
+        if (fileSize > 50 * 1024 * 1024) { // More than 50MB
+            return "File too large (" + formatFileSize(fileSize) + ") - likely not a Frida server binary";
+        }
+
+        // Check 2: Filename validation
+        boolean hasValidName = fileName.contains("frida") && fileName.contains("server");
+        if (!hasValidName) {
+            return "Filename does not contain 'frida' and 'server' - expected pattern like 'frida-server-x.x.x-android-arch'";
+        }
+
+        // Check 3: File extension validation
+        boolean isCompressed = fileName.endsWith(".xz") || fileName.endsWith(".gz") || fileName.endsWith(".zip");
+        boolean isBinary = !fileName.contains(".") || fileName.endsWith(".bin");
+        if (!isCompressed && !isBinary) {
+            return "Unsupported file format - expected .xz, .gz, .zip, or raw binary";
+        }
+
+        // Check 4: Architecture pattern validation (if present in filename)
+        if (fileName.contains("android")) {
+            boolean hasValidArch = fileName.contains("arm64") || fileName.contains("arm") ||
+                                   fileName.contains("x86") || fileName.contains("aarch64") ||
+                                   fileName.contains("x86_64");
+            if (!hasValidArch) {
+                return "No valid Android architecture found in filename (expected: arm64, arm, x86, x86_64)";
+            }
+        }
+
+        // Check 5: Magic bytes validation for known formats
+        try (FileInputStream fis = new FileInputStream(file)) {
+            byte[] header = new byte[16];
+            int bytesRead = fis.read(header);
+
+            if (bytesRead >= 6) {
+                // Check for XZ magic bytes
+                if (fileName.endsWith(".xz")) {
+                    if (!(header[0] == (byte)0xFD && header[1] == '7' && header[2] == 'z' &&
+                          header[3] == 'X' && header[4] == 'Z' && header[5] == 0x00)) {
+                        return "Invalid XZ file - corrupted or not a valid .xz compressed file";
+                    }
+                }
+
+                // Check for ELF magic bytes (raw binary)
+                if (isBinary) {
+                    if (!(header[0] == 0x7F && header[1] == 'E' && header[2] == 'L' && header[3] == 'F')) {
+                        return "Not a valid ELF binary - Frida server should be an ELF executable";
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return "Cannot read file header - file may be corrupted or inaccessible";
+        }
+
+        return null; // Validation passed
+    }
+
+    public static String formatFileSize(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        if (bytes < 1024 * 1024) return String.format("%.1fKB", bytes / 1024.0);
+        return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+    }
+}
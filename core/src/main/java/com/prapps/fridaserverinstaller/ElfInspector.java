@@ -0,0 +1,176 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what an ELF executable is built for from its headers alone.
+ *
+ * Only the ELF header, the program header table and the {@code PT_INTERP} segment are mapped,
+ * so inspecting a server binary costs a few pages however large it is.
+ */
+public final class ElfInspector {
+    private static final int EI_NIDENT = 16;
+    private static final int ELFCLASS32 = 1;
+    private static final int ELFCLASS64 = 2;
+    private static final int ELFDATA2LSB = 1;
+    private static final int ELFDATA2MSB = 2;
+    private static final int ET_EXEC = 2;
+    private static final int ET_DYN = 3;
+    private static final int PT_INTERP = 3;
+    private static final int EM_386 = 3;
+    private static final int EM_ARM = 40;
+    private static final int EM_X86_64 = 62;
+    private static final int EM_AARCH64 = 183;
+    /** Longer interpreter paths are not believable and not worth mapping. */
+    private static final int MAX_INTERPRETER_LENGTH = 4096;
+
+    public static final class Info {
+        /** 32 or 64. */
+        public final int bits;
+        public final int machine;
+        /** Architecture in the installer's naming (arm64, arm, x86, x86_64), or null if unknown. */
+        public final String arch;
+        /** Dynamic linker requested by the binary, or null if it is statically linked. */
+        public final String interpreter;
+
+        Info(int bits, int machine, String arch, String interpreter) {
+            this.bits = bits;
+            this.machine = machine;
+            this.arch = arch;
+            this.interpreter = interpreter;
+        }
+    }
+
+    private ElfInspector() {
+    }
+
+    /**
+     * Parses the headers of {@code file}. Throws if it is not an ELF executable or its headers
+     * are inconsistent.
+     */
+    public static Info inspect(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            if (size < EI_NIDENT) {
+                throw new IOException("Not an ELF executable: file is only " + size + " bytes");
+            }
+            MappedByteBuffer ident = channel.map(FileChannel.MapMode.READ_ONLY, 0, EI_NIDENT);
+            if (ident.get(0) != 0x7F || ident.get(1) != 'E' || ident.get(2) != 'L' || ident.get(3) != 'F') {
+                throw new IOException("Not an ELF executable");
+            }
+            int elfClass = ident.get(4);
+            int data = ident.get(5);
+            if (elfClass != ELFCLASS32 && elfClass != ELFCLASS64) {
+                throw new IOException("Unsupported ELF class " + elfClass);
+            }
+            if (data != ELFDATA2LSB && data != ELFDATA2MSB) {
+                throw new IOException("Unsupported ELF data encoding " + data);
+            }
+            boolean is64 = elfClass == ELFCLASS64;
+            ByteOrder order = data == ELFDATA2LSB ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+            int headerSize = is64 ? 64 : 52;
+            MappedByteBuffer header = map(channel, 0, headerSize, size, "ELF header");
+            header.order(order);
+            int type = header.getShort(16) & 0xFFFF;
+            int machine = header.getShort(18) & 0xFFFF;
+            if (type != ET_EXEC && type != ET_DYN) {
+                throw new IOException("ELF file is not an executable (type " + type + ")");
+            }
+            String arch = archOf(machine);
+            if (arch != null && (arch.equals("arm64") || arch.equals("x86_64")) != is64) {
+                throw new IOException("ELF class does not match machine " + arch);
+            }
+
+            long phoff = is64 ? header.getLong(32) : header.getInt(28) & 0xFFFFFFFFL;
+            int phentsize = header.getShort(is64 ? 54 : 42) & 0xFFFF;
+            int phnum = header.getShort(is64 ? 56 : 44) & 0xFFFF;
+            return new Info(is64 ? 64 : 32, machine, arch,
+                    readInterpreter(channel, size, order, is64, phoff, phentsize, phnum));
+        }
+    }
+
+    private static String readInterpreter(FileChannel channel, long size, ByteOrder order, boolean is64,
+                                          long phoff, int phentsize, int phnum) throws IOException {
+        if (phnum == 0) {
+            return null;
+        }
+        if (phentsize < (is64 ? 56 : 32)) {
+            throw new IOException("Program header entries too small (" + phentsize + " bytes)");
+        }
+        MappedByteBuffer table = map(channel, phoff, (long) phentsize * phnum, size, "program headers");
+        table.order(order);
+        for (int i = 0; i < phnum; i++) {
+            int entry = i * phentsize;
+            if (table.getInt(entry) != PT_INTERP) {
+                continue;
+            }
+            long offset = is64 ? table.getLong(entry + 8) : table.getInt(entry + 4) & 0xFFFFFFFFL;
+            long length = is64 ? table.getLong(entry + 32) : table.getInt(entry + 16) & 0xFFFFFFFFL;
+            if (length <= 0 || length > MAX_INTERPRETER_LENGTH) {
+                throw new IOException("Implausible interpreter length " + length);
+            }
+            MappedByteBuffer segment = map(channel, offset, length, size, "interpreter");
+            byte[] bytes = new byte[(int) length];
+            segment.get(bytes);
+            int end = 0;
+            while (end < bytes.length && bytes[end] != 0) {
+                end++;
+            }
+            return new String(bytes, 0, end, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long length, long size, String what)
+            throws IOException {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IOException("ELF " + what + " extend past the end of the file");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    /**
+     * Installer architecture name for an ELF {@code e_machine}, or null for other machines.
+     */
+    public static String archOf(int machine) {
+        switch (machine) {
+            case EM_AARCH64:
+                return "arm64";
+            case EM_ARM:
+                return "arm";
+            case EM_386:
+                return "x86";
+            case EM_X86_64:
+                return "x86_64";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Installer architecture name for an Android ABI such as {@code arm64-v8a}.
+     */
+    public static String archOfAbi(String abi) {
+        switch (abi) {
+            case "arm64-v8a":
+                return "arm64";
+            case "armeabi-v7a":
+            case "armeabi":
+                return "arm";
+            case "x86":
+                return "x86";
+            case "x86_64":
+                return "x86_64";
+            default:
+                return abi;
+        }
+    }
+}
@@ -0,0 +1,1777 @@
+package com.prapps.fridaserverinstaller;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.tukaani.xz.XZInputStream;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class FridaInstaller {
+    private static final String TAG = "FridaInstaller";
+    public static final String DEFAULT_LISTEN_HOST = "0.0.0.0";
+    public static final int DEFAULT_LISTEN_PORT = 27042;
+    /** Printed by the launch command ahead of exec, so the first stdout line carries the server PID. */
+    private static final String PID_MARKER = "__FSI_PID__ ";
+    public static final String GITHUB_RELEASES_URL = "https://api.github.com/repos/frida/frida/releases";
+    private static final int RELEASES_PAGE_SIZE = 20;
+    
+    /**
+     * Stages of an installer operation that each get their own deadline. If a stage is still
+     * running when its deadline passes, the whole operation is cancelled.
+     */
+    public enum InstallStage {
+        ROOT_CHECK("Root check", 30_000),
+        RELEASE_LOOKUP("Release lookup", 60_000),
+        DOWNLOAD("Download", 30 * 60_000),
+        EXTRACT("Extraction", 5 * 60_000),
+        ACTIVATE("Activation", 60_000),
+        SERVER_START("Server start", 30_000);
+        
+        final String label;
+        final long defaultTimeoutMs;
+        
+        InstallStage(String label, long defaultTimeoutMs) {
+            this.label = label;
+            this.defaultTimeoutMs = defaultTimeoutMs;
+        }
+    }
+    
+    private final Platform platform;
+    private final Platform.Logger log;
+    private final OkHttpClient httpClient;
+    private final RootShell rootShell;
+    private final ResumableDownloader resumableDownloader;
+    private final SegmentedDownloader segmentedDownloader;
+    private final ReleaseMetadataCache releaseCache;
+    private final ArtifactStore artifactStore;
+    private final ServerLogArchive serverLog;
+    private final ServerSupervisor supervisor = new ServerSupervisor();
+    private volatile InstallCallback serverCallback;
+    private volatile String listenHost = DEFAULT_LISTEN_HOST;
+    private volatile int listenPort = DEFAULT_LISTEN_PORT;
+    private volatile long readinessTimeoutMs = ReadinessProbe.DEFAULT_TIMEOUT_MS;
+    private volatile int serverPid;
+    private volatile long stopGraceMs = ServerTerminator.DEFAULT_GRACE_MS;
+    private volatile boolean killUnmanagedServers;
+    private volatile boolean stagedUpgrade = true;
+    private final HealthProber healthProber = new HealthProber();
+    private final InstallTracer installTracer = new InstallTracer();
+    // Installs and prefetches share the staging, journal and store files, so only one runs at a time
+    private final ReentrantLock installLock = new ReentrantLock();
+    private volatile InstallerOperation prefetchOperation;
+    private volatile long healthProbeIntervalMs = HealthProber.DEFAULT_INTERVAL_MS;
+    private String currentServerType = "Unknown";
+    private boolean streamingInstall = true;
+    private boolean keepDownloadedArchive = true;
+    private int downloadSegments = 1;
+    private volatile String releasesUrl = GITHUB_RELEASES_URL;
+    private volatile String nextReleasesUrl;
+    private volatile int nextReleasesPage;
+    private final AtomicBoolean loadingReleasesPage = new AtomicBoolean(false);
+    private final Map<InstallStage, Long> stageTimeouts = new EnumMap<>(InstallStage.class);
+    
+    public interface InstallCallback {
+        void onProgress(String message);
+        void onError(String error);
+        void onSuccess(String message);
+        /**
+         * Byte progress of the current download, extraction or copy, already rate-limited by
+         * {@link ProgressReporter}.
+         */
+        void onTransferProgress(ProgressReporter.Progress progress);
+    }
+    
+    public interface LogHistoryCallback {
+        /**
+         * @param entries archived lines, oldest first
+         * @param hasOlder whether paging further back can return more lines
+         */
+        void onLogHistoryLoaded(List<ServerLogArchive.Entry> entries, boolean hasOlder);
+        void onError(String error);
+    }
+    
+    public interface ReleasesCallback {
+        /**
+         * Called once per page of releases. Page 1 replaces whatever is shown and later pages
+         * append to it. Page 1 comes from the cache straight away when available, and is
+         * delivered again if a background revalidation finds that it changed.
+         */
+        void onReleasesPageLoaded(int page, List<FridaRelease> releases, boolean hasMore);
+        void onError(String error);
+    }
+
+    /**
+     * A binary written to the staging path, with the digests taken while it was produced.
+     * Either digest is null when the path that wrote it could not take it inline.
+     */
+    private static final class StagedBinary {
+        final File file;
+        final String sha256;
+        final String archiveSha256;
+
+        StagedBinary(File file, String sha256, String archiveSha256) {
+            this.file = file;
+            this.sha256 = sha256;
+            this.archiveSha256 = archiveSha256;
+        }
+    }
+
+    public FridaInstaller(Platform platform) {
+        this.platform = platform;
+        this.log = platform.getLogger();
+        this.httpClient = new OkHttpClient.Builder()
+                .addInterceptor(InstallerOperation.callInterceptor())
+                .build();
+        this.rootShell = platform.getRootShell();
+        this.resumableDownloader = new ResumableDownloader(httpClient);
+        this.segmentedDownloader = new SegmentedDownloader(httpClient, resumableDownloader);
+        this.releaseCache = new ReleaseMetadataCache(httpClient, new File(platform.getCacheDir(), "release-metadata"));
+        this.artifactStore = new ArtifactStore(new File(getFridaInternalDir(), "store"),
+                new File(getFridaInternalDir(), "frida-server"), getFridaDownloadDir());
+        this.serverLog = openServerLog();
+        for (InstallStage stage : InstallStage.values()) {
+            stageTimeouts.put(stage, stage.defaultTimeoutMs);
+        }
+        supervisor.addStatusListener(this::reportServerStatus);
+        loadCurrentServerType();
+    }
+    
+    private ServerLogArchive openServerLog() {
+        try {
+            return new ServerLogArchive(new File(getFridaInternalDir(), "logs"));
+        } catch (IOException e) {
+            log.e(TAG, "Failed to open server log archive", e);
+            return null;
+        }
+    }
+    
+    private void loadCurrentServerType() {
+        String serverInfo = getInstalledServerInfo();
+        if (serverInfo != null) {
+            if (serverInfo.startsWith("Manual Installation")) {
+                currentServerType = serverInfo; // Already has "Manual Installation" prefix
+            } else {
+                currentServerType = "Downloaded: " + serverInfo;
+            }
+        } else {
+            currentServerType = "Unknown";
+        }
+    }
+
+    public boolean isRooted() {
+        try {
+            RootShell.Result result = rootShell.run("id");
+            String output = result.firstLine();
+            
+            log.d(TAG, "Root check output: " + output);
+            log.d(TAG, "Root check exit code: " + result.exitCode);
+            
+            return result.isSuccess() && output != null && output.contains("uid=0");
+        } catch (Exception e) {
+            log.e(TAG, "Root check failed", e);
+            return false;
+        }
+    }
+
+    public String getDeviceArchitecture() {
+        String abi = platform.getSupportedAbis()[0];
+        log.d(TAG, "Device ABI: " + abi);
+        return ElfInspector.archOfAbi(abi);
+    }
+    
+    /**
+     * Architectures the device can run, most preferred first.
+     */
+    private List<String> getSupportedArchitectures() {
+        List<String> archs = new ArrayList<>();
+        for (String abi : platform.getSupportedAbis()) {
+            String arch = ElfInspector.archOfAbi(abi);
+            if (!archs.contains(arch)) {
+                archs.add(arch);
+            }
+        }
+        return archs;
+    }
+    
+    /**
+     * Reads the architecture {@code binary} is built for from its ELF headers and checks the
+     * device can run it. Returns the architecture, or null after reporting why it is refused.
+     */
+    private String checkArchitecture(File binary, InstallCallback callback) {
+        try (InstallTrace.Span span = span("inspect-elf")) {
+            ElfInspector.Info elf;
+            try {
+                elf = ElfInspector.inspect(binary);
+            } catch (IOException e) {
+                span.fail(e.getMessage());
+                callback.onProgress("❌ " + e.getMessage());
+                callback.onError("Not a valid server binary: " + e.getMessage());
+                return null;
+            }
+            List<String> supported = getSupportedArchitectures();
+            if (elf.arch == null || !supported.contains(elf.arch)) {
+                String built = elf.arch != null ? elf.arch : "ELF machine " + elf.machine;
+                span.fail("unsupported architecture " + built);
+                callback.onProgress("❌ Binary is built for " + built);
+                callback.onError("Binary is built for " + built + ", but this device supports "
+                        + String.join(", ", supported));
+                return null;
+            }
+            callback.onProgress("🧬 ELF " + elf.arch + " (" + elf.bits + "-bit"
+                    + (elf.interpreter != null ? ", " + elf.interpreter : ", static") + ")");
+            span.ok();
+            return elf.arch;
+        }
+    }
+
+    private File getFridaDownloadDir() {
+        File fridaDir = new File(platform.getDownloadsDir(), "FridaServerInstaller");
+        if (!fridaDir.exists()) {
+            fridaDir.mkdirs();
+        }
+        return fridaDir;
+    }
+    
+    private File getFridaInternalDir() {
+        File fridaDir = new File(platform.getFilesDir(), "frida");
+        if (!fridaDir.exists()) {
+            fridaDir.mkdirs();
+        }
+        return fridaDir;
+    }
+    
+    public boolean isServerAlreadyInstalled() {
+        File fridaDir = getFridaInternalDir();
+        File serverFile = new File(fridaDir, "frida-server");
+        return serverFile.exists() && serverFile.canExecute();
+    }
+    
+    public String getInstalledServerInfo() {
+        File fridaDir = getFridaInternalDir();
+        File serverFile = new File(fridaDir, "frida-server");
+        File infoFile = new File(fridaDir, "server-info.txt");
+        
+        if (serverFile.exists() && infoFile.exists()) {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(infoFile)));
+                return reader.readLine();
+            } catch (Exception e) {
+                return "Unknown version";
+            }
+        }
+        return null;
+    }
+    
+    public String getCurrentServerType() {
+        return currentServerType;
+    }
+    
+    /**
+     * Selects the fused download → decode pipeline (default) or the older two-pass flow that
+     * saves the archive first and extracts it afterwards.
+     */
+    public void setStreamingInstall(boolean streamingInstall) {
+        this.streamingInstall = streamingInstall;
+    }
+    
+    /**
+     * Whether the streaming install also keeps a copy of the .xz archive in the Downloads folder.
+     */
+    public void setKeepDownloadedArchive(boolean keepDownloadedArchive) {
+        this.keepDownloadedArchive = keepDownloadedArchive;
+    }
+    
+    /**
+     * Number of parallel range requests used to fetch an asset. Segments arrive out of order,
+     * so values above 1 download the archive first and extract it afterwards instead of
+     * streaming it through the decoder.
+     */
+    public void setDownloadSegments(int downloadSegments) {
+        this.downloadSegments = Math.max(1, downloadSegments);
+    }
+    
+    /**
+     * How long cached release metadata is used before it is revalidated with GitHub.
+     */
+    public void setReleaseCacheTtl(long ttlMs) {
+        releaseCache.setTtlMs(ttlMs);
+    }
+    
+    /**
+     * Address frida-server is told to listen on, and that readiness is probed on.
+     */
+    public void setListenAddress(String host, int port) {
+        this.listenHost = host;
+        this.listenPort = port;
+    }
+    
+    /**
+     * How long a start waits for the server to accept connections before giving up.
+     */
+    public void setReadinessTimeout(long timeoutMs) {
+        this.readinessTimeoutMs = timeoutMs;
+    }
+    
+    /**
+     * How long a stop waits after SIGTERM before escalating to SIGKILL.
+     */
+    public void setStopGracePeriod(long graceMs) {
+        this.stopGraceMs = graceMs;
+    }
+    
+    /**
+     * Whether stopping also kills frida-server processes this app did not start, by name.
+     * Off by default, so servers started by hand or by other tools are left alone.
+     */
+    public void setKillUnmanagedServers(boolean killUnmanagedServers) {
+        this.killUnmanagedServers = killUnmanagedServers;
+    }
+    
+    /**
+     * Whether installs leave a running server up while the new binary is staged, then switch
+     * it over with a restart, rolling back if the new binary does not become ready. When off,
+     * the server is stopped before the install starts.
+     */
+    public void setStagedUpgrade(boolean stagedUpgrade) {
+        this.stagedUpgrade = stagedUpgrade;
+    }
+    
+    /**
+     * How often a running server's endpoint is probed for health.
+     */
+    public void setHealthProbeInterval(long intervalMs) {
+        this.healthProbeIntervalMs = intervalMs;
+    }
+    
+    /**
+     * GitHub-compatible releases endpoint, e.g. a local stub for load tests.
+     */
+    public void setReleasesUrl(String releasesUrl) {
+        this.releasesUrl = releasesUrl;
+    }
+    
+    public ReleaseMetadataCache getReleaseCache() {
+        return releaseCache;
+    }
+    
+    /**
+     * Disk budget shared by stored server versions and archives in the Downloads folder.
+     * Least recently used entries are evicted beyond it.
+     */
+    public void setArtifactQuotaBytes(long quotaBytes) {
+        artifactStore.setQuotaBytes(quotaBytes);
+        artifactStore.enforceQuota();
+    }
+    
+    public void setStageTimeout(InstallStage stage, long timeoutMs) {
+        stageTimeouts.put(stage, timeoutMs);
+    }
+    
+    private InstallerOperation.Stage stage(InstallStage stage) {
+        InstallerOperation operation = InstallerOperation.current();
+        if (operation == null) {
+            return InstallerOperation.Stage.NONE;
+        }
+        return operation.stage(stage.label, stageTimeouts.get(stage));
+    }
+    
+    /**
+     * Opens a span in the current operation's install trace, or a no-op span outside of one.
+     */
+    private InstallTrace.Span span(String name) {
+        InstallerOperation operation = InstallerOperation.current();
+        InstallTrace trace = operation != null ? operation.getTrace() : null;
+        return trace != null ? trace.span(name) : InstallTrace.Span.NONE;
+    }
+    
+    /**
+     * Runs an install on the shared pool, recording its stages in a trace. The trace ends with
+     * the first success or error the install reports, or as failed or cancelled if it reports
+     * neither.
+     */
+    private InstallerOperation launchTraced(String name, InstallCallback callback, Consumer<InstallCallback> body) {
+        return InstallerOperation.launch(() -> {
+            InstallTrace trace = installTracer.begin(name);
+            InstallerOperation.current().setTrace(trace);
+            try {
+                body.accept(new InstallCallback() {
+                    @Override
+                    public void onProgress(String message) {
+                        callback.onProgress(message);
+                    }
+                    
+                    @Override
+                    public void onError(String error) {
+                        installTracer.finish(trace, InstallerOperation.isCurrentCancelled()
+                                ? InstallTrace.Outcome.CANCELLED : InstallTrace.Outcome.FAILED, error);
+                        callback.onError(error);
+                    }
+                    
+                    @Override
+                    public void onSuccess(String message) {
+                        installTracer.finish(trace, InstallTrace.Outcome.OK, message);
+                        callback.onSuccess(message);
+                    }
+                    
+                    @Override
+                    public void onTransferProgress(ProgressReporter.Progress progress) {
+                        callback.onTransferProgress(progress);
+                    }
+                });
+            } finally {
+                installTracer.finish(trace, InstallerOperation.isCurrentCancelled()
+                        ? InstallTrace.Outcome.CANCELLED : InstallTrace.Outcome.FAILED, null);
+            }
+        });
+    }
+    
+    /**
+     * Like {@link #launchTraced}, running {@code body} under {@link #installLock}. A background
+     * prefetch holding it is cancelled rather than waited out; whatever it already stored is
+     * still found by the install.
+     */
+    private InstallerOperation launchInstall(String name, InstallCallback callback, Consumer<InstallCallback> body) {
+        return launchTraced(name, callback, traced -> {
+            InstallerOperation prefetch = prefetchOperation;
+            if (prefetch != null) {
+                prefetch.cancel("Superseded by an install");
+            }
+            try {
+                installLock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                traced.onError("Installation cancelled");
+                return;
+            }
+            try {
+                body.accept(traced);
+            } finally {
+                installLock.unlock();
+            }
+        });
+    }
+    
+    /**
+     * Timing traces of the most recent installs, oldest first.
+     */
+    public List<InstallTrace> getInstallTraces() {
+        return installTracer.getTraces();
+    }
+    
+    /**
+     * The most recent install traces as a JSON array, for diagnosing slow installs.
+     */
+    public String exportInstallTracesJson() {
+        return installTracer.toJson();
+    }
+    
+    /**
+     * The cancellation reason when the operation was cancelled or missed a deadline, since the
+     * exception it causes ("Socket closed", "Canceled", ...) says little about why.
+     */
+    private static String failureMessage(Exception e) {
+        InstallerOperation operation = InstallerOperation.current();
+        if (operation != null && operation.isCancelled()) {
+            return operation.getCancelReason();
+        }
+        return e.getMessage();
+    }
+    
+    /**
+     * Limits the persistent server log to {@code maxBytes} on disk and {@code maxAgeMs} of history.
+     */
+    public void setServerLogRetention(long maxBytes, long maxAgeMs) {
+        if (serverLog != null) {
+            serverLog.setRetention(maxBytes, maxAgeMs);
+        }
+    }
+    
+    /**
+     * Loads archived server output in the background. Without a keyword this returns the
+     * {@code maxLines} lines before {@code beforeLine} (or the newest lines when it is negative);
+     * with one it returns the newest matching lines.
+     */
+    public InstallerOperation loadServerLogHistory(long beforeLine, int maxLines, String keyword, LogHistoryCallback callback) {
+        return InstallerOperation.launch(() -> {
+            if (serverLog == null) {
+                callback.onError("Server log archive is not available");
+                return;
+            }
+            try {
+                if (keyword != null && !keyword.isEmpty()) {
+                    callback.onLogHistoryLoaded(serverLog.search(keyword, 0, Long.MAX_VALUE, maxLines), false);
+                    return;
+                }
+                long before = beforeLine < 0 ? serverLog.getNextLine() : beforeLine;
+                List<ServerLogArchive.Entry> entries = serverLog.readPageBefore(before, maxLines);
+                long oldest = entries.isEmpty() ? before : entries.get(0).lineNumber;
+                callback.onLogHistoryLoaded(entries, oldest > serverLog.getFirstLine());
+            } catch (IOException e) {
+                log.e(TAG, "Failed to read server log history", e);
+                callback.onError("Failed to read server log: " + failureMessage(e));
+            }
+        });
+    }
+    
+    /**
+     * True if the release is already extracted locally, so installing it needs no download.
+     */
+    public boolean isReleaseCached(FridaRelease release) {
+        return artifactStore.find(release.tagName, getDeviceArchitecture()) != null;
+    }
+    
+    private void removeExistingInstallation() {
+        try {
+            // Stop any running server first
+            stopFridaServer();
+            
+            File fridaDir = getFridaInternalDir();
+            File serverFile = new File(fridaDir, "frida-server");
+            File infoFile = new File(fridaDir, "server-info.txt");
+            
+            // Remove the active binary (or the link to it; stored versions stay in the artifact store)
+            if (serverFile.exists()) {
+                serverFile.delete();
+            }
+            
+            // Remove info file
+            if (infoFile.exists()) {
+                infoFile.delete();
+            }
+            
+            // Update current server type
+            currentServerType = "Unknown";
+            
+            log.d(TAG, "Existing Frida installation removed");
+        } catch (Exception e) {
+            log.e(TAG, "Failed to remove existing installation", e);
+        }
+    }
+    
+    /**
+     * Common first stage of every install: stop the running server (unless it is kept up for a
+     * staged upgrade) and make sure root works. Reports failures to the callback and returns
+     * false in that case.
+     */
+    private boolean stopServerAndCheckRoot(InstallCallback callback) throws IOException {
+        try (InstallerOperation.Stage ignored = stage(InstallStage.ROOT_CHECK)) {
+            if (stagedUpgrade && isManagedServerRunning()) {
+                callback.onProgress("🔄 Keeping the running server up while the new version is staged...");
+            } else {
+                callback.onProgress("🛑 Stopping any running Frida server...");
+                try (InstallTrace.Span span = span("stop-server")) {
+                    stopFridaServer();
+                    span.ok();
+                }
+            }
+            
+            callback.onProgress("🔐 Checking root permissions...");
+            boolean rootStatus;
+            try (InstallTrace.Span span = span("root-check")) {
+                rootStatus = isRooted();
+                // A cancelled root check also reads as "not rooted"; report the cancellation instead
+                InstallerOperation.checkCancelled();
+                if (rootStatus) {
+                    span.ok();
+                } else {
+                    span.fail("No root access");
+                }
+            }
+            if (!rootStatus) {
+                callback.onProgress("❌ Root check failed - No root access");
+                callback.onError("Root access is required but not available");
+                return false;
+            }
+            callback.onProgress("✅ Root access confirmed - Device is rooted");
+            return true;
+        }
+    }
+    
+    public InstallerOperation installFridaServer(InstallCallback callback) {
+        return installFridaServer(callback, false);
+    }
+    
+    public InstallerOperation installFridaServer(InstallCallback callback, boolean forceRedownload) {
+        return installFridaServerFromLatest(callback, forceRedownload);
+    }
+    
+    public InstallerOperation installFridaServerFromRelease(FridaRelease release, InstallCallback callback, boolean forceRedownload) {
+        return launchInstall("Install " + release.tagName, callback,
+                traced -> runReleaseInstall(release, traced, forceRedownload));
+    }
+    
+    private void runReleaseInstall(FridaRelease release, InstallCallback callback, boolean forceRedownload) {
+        try {
+            if (!stopServerAndCheckRoot(callback)) {
+                return;
+            }
+
+            callback.onProgress("📱 Detecting device architecture...");
+            String arch = getDeviceArchitecture();
+            callback.onProgress("✅ Device architecture detected: " + arch);
+
+            // Stored binaries are content-addressed, so downloading again would give the same bytes,
+            // unless the user asked for exactly that
+            if (!forceRedownload && activateStoredVersion(release.tagName, arch, callback)) {
+                return;
+            }
+
+            // A staged upgrade swaps the existing installation out only once the new one is ready
+            if (!stagedUpgrade && !forceRedownload && isServerAlreadyInstalled()) {
+                String serverInfo = getInstalledServerInfo();
+                callback.onProgress("📋 Found existing server: " + (serverInfo != null ? serverInfo : "Unknown version"));
+                callback.onProgress("🗑️ Removing existing installation to install selected version...");
+                removeExistingInstallation();
+                callback.onProgress("✅ Previous installation removed");
+            }
+
+            callback.onProgress("✅ Selected Frida version: " + release.tagName);
+
+            callback.onProgress("🔍 Finding matching server binary for " + arch + "...");
+            ServerAsset asset = release.getServerAsset(arch);
+            if (asset == null) {
+                callback.onProgress("❌ No matching binary found for " + arch);
+                callback.onError("No matching server binary found for architecture: " + arch);
+                return;
+            }
+            callback.onProgress("✅ Found matching binary for download");
+
+            StagedBinary staged = fetchServerBinary(asset, callback);
+            if (staged == null) {
+                return;
+            }
+
+            String binaryArch = activateNewBinary(staged, release.tagName, callback);
+            if (binaryArch == null) {
+                return;
+            }
+            
+            saveServerInfo(release.tagName, binaryArch);
+            loadCurrentServerType(); // Reload to ensure consistency
+            callback.onSuccess("Frida server " + release.tagName + " installed successfully!");
+
+        } catch (Exception e) {
+            log.e(TAG, "Installation failed", e);
+            callback.onError("Installation failed: " + failureMessage(e));
+        }
+    }
+    
+    /**
+     * Downloads and decodes the latest release for {@link #getDeviceArchitecture()} into the
+     * artifact store without touching the installed server, so installing that version later
+     * only has to chmod and activate it. Needs neither root nor a stopped server, and succeeds
+     * without downloading when the latest release is already stored. Fails straight away while
+     * an install is running, and is cancelled if one starts.
+     */
+    public InstallerOperation prefetchLatest(InstallCallback callback) {
+        return launchTraced("Prefetch latest", callback, traced -> {
+            if (!installLock.tryLock()) {
+                traced.onError("Prefetch skipped: an install is running");
+                return;
+            }
+            prefetchOperation = InstallerOperation.current();
+            try {
+                runPrefetch(traced);
+            } finally {
+                prefetchOperation = null;
+                installLock.unlock();
+            }
+        });
+    }
+    
+    private void runPrefetch(InstallCallback callback) {
+        File stagingFile = new File(getFridaInternalDir(), "frida-server.prefetch");
+        try {
+            FridaRelease release;
+            try (InstallerOperation.Stage ignored = stage(InstallStage.RELEASE_LOOKUP);
+                 InstallTrace.Span span = span("release-metadata")) {
+                release = getLatestRelease();
+                span.ok();
+            }
+            if (release == null) {
+                callback.onError("Failed to fetch latest release information");
+                return;
+            }
+            
+            String arch = getDeviceArchitecture();
+            if (artifactStore.find(release.tagName, arch) != null) {
+                callback.onSuccess("✅ Frida server " + release.tagName + " (" + arch + ") is already prefetched");
+                return;
+            }
+            
+            ServerAsset asset = release.getServerAsset(arch);
+            if (asset == null) {
+                callback.onError("No matching server binary found for architecture: " + arch);
+                return;
+            }
+            
+            callback.onProgress("📥 Prefetching Frida server " + release.tagName + " for " + arch + "...");
+            StagedBinary staged;
+            try (InstallerOperation.Stage ignored = stage(InstallStage.DOWNLOAD)) {
+                staged = downloadAndExtractStreaming(asset.downloadUrl, publishedSha256(asset), stagingFile, callback);
+            }
+            
+            try (InstallerOperation.Stage ignored = stage(InstallStage.ACTIVATE)) {
+                String binaryArch = checkArchitecture(staged.file, callback);
+                if (binaryArch == null) {
+                    return;
+                }
+                try (InstallTrace.Span span = span("store-import")) {
+                    ArtifactStore.Artifact artifact = artifactStore.importBinary(staged.file, release.tagName,
+                            binaryArch, staged.sha256, staged.archiveSha256);
+                    span.bytes(artifact.binary.length()).ok();
+                }
+            }
+            callback.onSuccess("📦 Frida server " + release.tagName + " prefetched; installing it needs no download");
+            
+        } catch (Exception e) {
+            log.e(TAG, "Prefetch failed", e);
+            callback.onError("Prefetch failed: " + failureMessage(e));
+        } finally {
+            // Already moved into the store on success
+            stagingFile.delete();
+        }
+    }
+    
+    private InstallerOperation installFridaServerFromLatest(InstallCallback callback, boolean forceRedownload) {
+        return launchInstall("Install latest", callback, traced -> runLatestInstall(traced, forceRedownload));
+    }
+    
+    private void runLatestInstall(InstallCallback callback, boolean forceRedownload) {
+        try {
+            if (!stopServerAndCheckRoot(callback)) {
+                return;
+            }
+
+            callback.onProgress("📱 Detecting device architecture...");
+            String arch = getDeviceArchitecture();
+            callback.onProgress("✅ Device architecture detected: " + arch);
+
+            if (!forceRedownload && isServerAlreadyInstalled()) {
+                String serverInfo = getInstalledServerInfo();
+                callback.onProgress("📋 Found existing server: " + (serverInfo != null ? serverInfo : "Unknown version"));
+                callback.onSuccess("✅ Frida server already installed! " + (serverInfo != null ? serverInfo : ""));
+                return;
+            }
+
+            callback.onProgress("🌐 Fetching latest Frida release from GitHub...");
+            FridaRelease release;
+            try (InstallerOperation.Stage ignored = stage(InstallStage.RELEASE_LOOKUP);
+                 InstallTrace.Span span = span("release-metadata")) {
+                release = getLatestRelease();
+                span.ok();
+            }
+            if (release == null) {
+                callback.onProgress("❌ Failed to fetch release information");
+                callback.onError("Failed to fetch latest release information");
+                return;
+            }
+
+            String version = release.tagName;
+            callback.onProgress("✅ Latest Frida version found: " + version);
+
+            if (!forceRedownload && activateStoredVersion(version, arch, callback)) {
+                return;
+            }
+
+            callback.onProgress("🔍 Finding matching server binary for " + arch + "...");
+            ServerAsset asset = release.getServerAsset(arch);
+            if (asset == null) {
+                callback.onProgress("❌ No matching binary found for " + arch);
+                callback.onError("No matching server binary found for architecture: " + arch);
+                return;
+            }
+            callback.onProgress("✅ Found matching binary for download");
+
+            StagedBinary staged = fetchServerBinary(asset, callback);
+            if (staged == null) {
+                return;
+            }
+
+            String binaryArch = activateNewBinary(staged, version, callback);
+            if (binaryArch == null) {
+                return;
+            }
+            
+            saveServerInfo(version, binaryArch);
+            loadCurrentServerType(); // Reload to ensure consistency
+            callback.onSuccess("Frida server " + version + " installed successfully!");
+
+        } catch (Exception e) {
+            log.e(TAG, "Installation failed", e);
+            callback.onError("Installation failed: " + failureMessage(e));
+        }
+    }
+    
+    public InstallerOperation installFromManualFile(String filePath, InstallCallback callback) {
+        return launchInstall("Install manual file " + new File(filePath).getName(), callback,
+                traced -> runManualInstall(filePath, traced));
+    }
+    
+    private void runManualInstall(String filePath, InstallCallback callback) {
+        try {
+            if (!stopServerAndCheckRoot(callback)) {
+                return;
+            }
+            
+            File sourceFile = new File(filePath);
+            if (!sourceFile.exists()) {
+                callback.onProgress("❌ Selected file does not exist: " + filePath);
+                callback.onError("Selected file does not exist");
+                return;
+            }
+            
+            callback.onProgress("📁 Processing selected file: " + sourceFile.getName() + " (" + BinaryFiles.formatFileSize(sourceFile.length()) + ")");
+            
+            File fridaDir = getFridaInternalDir();
+            
+            // Determine file type for processing
+            String fileName = sourceFile.getName().toLowerCase();
+            boolean isXzFile = fileName.endsWith(".xz");
+            
+            StagedBinary targetFile;
+            try (InstallerOperation.Stage ignored = stage(InstallStage.EXTRACT)) {
+                if (isXzFile) {
+                    callback.onProgress("📦 Processing compressed file (.xz)...");
+                    File tempFile = new File(fridaDir, "temp-server.xz");
+                    copyFile(sourceFile, tempFile, callback);
+                    callback.onProgress("📦 Extracting server binary...");
+                    targetFile = extractXzFile(tempFile, null, callback);
+                    tempFile.delete(); // Clean up temp file
+                } else {
+                    callback.onProgress("📁 Processing raw binary file...");
+                    File stagingFile = new File(fridaDir, "frida-server.staging");
+                    copyFile(sourceFile, stagingFile, callback);
+                    targetFile = new StagedBinary(stagingFile, null, null);
+                }
+            }
+            callback.onProgress("✅ File processing completed");
+            
+            if (targetFile == null) {
+                callback.onProgress("❌ File processing failed");
+                callback.onError("Failed to process server file");
+                return;
+            }
+            
+            String manualVersion = "Manual Installation (" + sourceFile.getName() + ")";
+            String arch = activateNewBinary(targetFile, manualVersion, callback);
+            if (arch == null) {
+                return;
+            }
+            
+            saveServerInfo(manualVersion, arch);
+            loadCurrentServerType(); // Reload to ensure consistency
+            callback.onSuccess("✅ Frida server installed successfully from manual file!");
+            
+        } catch (Exception e) {
+            log.e(TAG, "Manual installation failed", e);
+            callback.onProgress("❌ Manual installation error: " + failureMessage(e));
+            callback.onError("Manual installation failed: " + failureMessage(e));
+        }
+    }
+
+    /**
+     * Installs from an already opened file, such as a picked document's descriptor, in a
+     * single pass: the format is sniffed from the header, then XZ data is decoded and a raw
+     * ELF transferred straight into the staged binary, with no intermediate copies.
+     * {@code source} is closed when the operation finishes.
+     */
+    public InstallerOperation installFromManualChannel(String name, FileChannel source, InstallCallback callback) {
+        return installFromManualChannel(name, source, null, callback);
+    }
+
+    /**
+     * Like {@link #installFromManualChannel(String, FileChannel, InstallCallback)}, refusing the
+     * file unless {@code expectedSha256} matches the picked file or the binary decoded from it.
+     * A null or empty digest skips the check.
+     */
+    public InstallerOperation installFromManualChannel(String name, FileChannel source, String expectedSha256,
+                                                       InstallCallback callback) {
+        return launchInstall("Install manual file " + name, callback, traced -> {
+            try (FileChannel ignored = source) {
+                runManualChannelInstall(name, source, expectedSha256, traced);
+            } catch (IOException e) {
+                log.w(TAG, "Failed to close manual install source", e);
+            }
+        });
+    }
+    
+    private void runManualChannelInstall(String name, FileChannel source, String expectedSha256,
+                                         InstallCallback callback) {
+        File stagingFile = new File(getFridaInternalDir(), "frida-server.staging");
+        try {
+            String expected = null;
+            if (expectedSha256 != null && !expectedSha256.trim().isEmpty()) {
+                expected = Sha256.normalize(expectedSha256);
+                if (expected == null) {
+                    callback.onError("Expected SHA-256 must be 64 hexadecimal characters");
+                    return;
+                }
+            }
+            
+            if (!stopServerAndCheckRoot(callback)) {
+                return;
+            }
+            
+            callback.onProgress("📁 Processing selected file: " + name + " (" + BinaryFiles.formatFileSize(source.size()) + ")");
+            
+            BinaryFiles.Format format = BinaryFiles.sniffFormat(source);
+            long sourceSize = source.size() - source.position();
+            Sha256 archiveDigest = format == BinaryFiles.Format.XZ ? new Sha256() : null;
+            Sha256 digest = new Sha256();
+            long written;
+            try (InstallerOperation.Stage ignored = stage(InstallStage.EXTRACT)) {
+                switch (format) {
+                    case XZ:
+                        callback.onProgress("📦 Extracting server binary...");
+                        try (InstallTrace.Span span = span("decode")) {
+                            written = ParallelXzDecoder.decodeChannel(source, stagingFile, 64 * 1024, archiveDigest,
+                                    digest, progressReporter(ProgressReporter.Phase.EXTRACT, callback));
+                            span.bytes(written).ok();
+                        }
+                        break;
+                    case ELF:
+                        callback.onProgress("📁 Processing raw binary file...");
+                        try (InstallTrace.Span span = span("copy")) {
+                            written = BinaryFiles.transfer(source, stagingFile, digest,
+                                    progressReporter(ProgressReporter.Phase.COPY, callback));
+                            span.bytes(written).ok();
+                        }
+                        break;
+                    default:
+                        callback.onProgress("❌ Unrecognized file format");
+                        callback.onError("Selected file is neither an XZ archive nor an ELF binary");
+                        return;
+                }
+            }
+            callback.onProgress("✅ File processing completed");
+            
+            StagedBinary staged = new StagedBinary(stagingFile, digest.hexIfComplete(written),
+                    archiveDigest != null ? archiveDigest.hexIfComplete(sourceSize) : null);
+            if (expected != null) {
+                if (!expected.equals(staged.sha256) && !expected.equals(staged.archiveSha256)) {
+                    String actual = staged.archiveSha256 != null ? staged.archiveSha256 : staged.sha256;
+                    callback.onProgress("❌ SHA-256 mismatch");
+                    callback.onError("SHA-256 mismatch: expected " + expected + ", got " + actual);
+                    return;
+                }
+                callback.onProgress("✅ SHA-256 matches the expected digest");
+            }
+            
+            String manualVersion = "Manual Installation (" + name + ")";
+            String arch = activateNewBinary(staged, manualVersion, callback);
+            if (arch == null) {
+                return;
+            }
+            
+            saveServerInfo(manualVersion, arch);
+            loadCurrentServerType(); // Reload to ensure consistency
+            callback.onSuccess("✅ Frida server installed successfully from manual file!");
+            
+        } catch (Exception e) {
+            log.e(TAG, "Manual installation failed", e);
+            callback.onProgress("❌ Manual installation error: " + failureMessage(e));
+            callback.onError("Manual installation failed: " + failureMessage(e));
+        } finally {
+            // Already moved into the store on success; a leftover means the install failed
+            stagingFile.delete();
+        }
+    }
+    
+    private FridaRelease getLatestRelease() throws IOException {
+        ReleaseMetadataCache.Entry entry = releaseCache.getOrRevalidate(releasesUrl + "/latest");
+        return parseRelease(entry);
+    }
+    
+    /**
+     * Loads the first page of releases. Further pages are fetched with {@link #loadNextReleasesPage}.
+     */
+    public InstallerOperation getReleasesFirstPage(ReleasesCallback callback) {
+        return InstallerOperation.launch(() -> {
+            try (InstallerOperation.Stage ignored = stage(InstallStage.RELEASE_LOOKUP)) {
+                String url = releasesUrl + "?per_page=" + RELEASES_PAGE_SIZE;
+                ReleaseMetadataCache.Entry cached = releaseCache.get(url);
+                if (cached == null) {
+                    deliverReleasesPage(1, releaseCache.fetch(url), callback);
+                    return;
+                }
+                
+                // Stale-while-revalidate: show cached releases now, refresh behind them
+                deliverReleasesPage(1, cached, callback);
+                if (releaseCache.isFresh(cached)) {
+                    return;
+                }
+                try {
+                    ReleaseMetadataCache.Entry updated = releaseCache.revalidate(url, cached);
+                    if (updated != null) {
+                        deliverReleasesPage(1, updated, callback);
+                    }
+                } catch (IOException e) {
+                    log.w(TAG, "Release revalidation failed, keeping cached list", e);
+                }
+                log.d(TAG, "Release cache: " + releaseCache.getStats());
+            } catch (Exception e) {
+                log.e(TAG, "Failed to fetch releases", e);
+                callback.onError("Failed to fetch releases: " + failureMessage(e));
+            }
+        });
+    }
+    
+    /**
+     * Loads the page after the last one delivered, following GitHub's {@code Link: rel="next"}.
+     * Does nothing and returns null if there are no more pages or a page is already loading.
+     */
+    public InstallerOperation loadNextReleasesPage(ReleasesCallback callback) {
+        String url = nextReleasesUrl;
+        int page = nextReleasesPage;
+        if (url == null || !loadingReleasesPage.compareAndSet(false, true)) {
+            return null;
+        }
+        InstallerOperation operation = InstallerOperation.launch(() -> {
+            try (InstallerOperation.Stage ignored = stage(InstallStage.RELEASE_LOOKUP)) {
+                deliverReleasesPage(page, releaseCache.getOrRevalidate(url), callback);
+            } catch (Exception e) {
+                log.e(TAG, "Failed to fetch releases page " + page, e);
+                callback.onError("Failed to fetch releases: " + failureMessage(e));
+            }
+        });
+        // Also runs when the load is cancelled before it starts
+        operation.whenFinished(() -> loadingReleasesPage.set(false));
+        return operation;
+    }
+    
+    public boolean hasMoreReleases() {
+        return nextReleasesUrl != null;
+    }
+    
+    private void deliverReleasesPage(int page, ReleaseMetadataCache.Entry entry, ReleasesCallback callback) throws IOException {
+        List<FridaRelease> releases = parseReleases(entry);
+        nextReleasesUrl = entry.getNextPageUrl();
+        nextReleasesPage = page + 1;
+        callback.onReleasesPageLoaded(page, releases, nextReleasesUrl != null);
+    }
+    
+    private List<FridaRelease> parseReleases(ReleaseMetadataCache.Entry entry) throws IOException {
+        try (Reader reader = entry.openReader()) {
+            return ReleaseParser.parseReleases(reader);
+        }
+    }
+    
+    private FridaRelease parseRelease(ReleaseMetadataCache.Entry entry) throws IOException {
+        try (Reader reader = entry.openReader()) {
+            return ReleaseParser.parseRelease(reader);
+        }
+    }
+
+    /**
+     * The archive digest GitHub publishes for {@code asset}, or null for releases without one.
+     */
+    private static String publishedSha256(ServerAsset asset) {
+        String digest = asset.digest;
+        return digest != null && digest.startsWith("sha256:") ? Sha256.normalize(digest.substring("sha256:".length())) : null;
+    }
+    
+    private static IOException digestMismatch(String expected, String actual) {
+        return new IOException("SHA-256 mismatch: release lists " + expected + ", downloaded archive is " + actual);
+    }
+    
+    /**
+     * Switches frida-server to a version already in the artifact store. Returns false (and does
+     * nothing) if that version has not been extracted before.
+     */
+    private boolean activateStoredVersion(String version, String arch, InstallCallback callback)
+            throws IOException, InterruptedException {
+        ArtifactStore.Artifact stored = artifactStore.find(version, arch);
+        if (stored == null) {
+            return false;
+        }
+        if (artifactStore.verify(stored) == ArtifactStore.Verification.CORRUPT) {
+            callback.onProgress("⚠️ Stored copy of " + version + " no longer matches its SHA-256, downloading again...");
+            artifactStore.remove(stored);
+            return false;
+        }
+        callback.onProgress("⚡ " + version + " found in local version store, switching without download...");
+        try (InstallerOperation.Stage ignored = stage(InstallStage.ACTIVATE)) {
+            // Prefetched binaries are stored without root, so they are not executable yet
+            if (!stored.binary.canExecute()) {
+                callback.onProgress("🔧 Setting executable permissions with root...");
+                boolean permissionsSet;
+                try (InstallTrace.Span span = span("chmod")) {
+                    permissionsSet = setExecutablePermissions(stored.binary);
+                    if (permissionsSet) {
+                        span.ok();
+                    } else {
+                        span.fail("chmod failed");
+                    }
+                }
+                if (!permissionsSet) {
+                    callback.onError("Failed to set executable permissions");
+                    return true;
+                }
+            }
+            if (!switchTo(stored, "activate-stored", callback)) {
+                return true;
+            }
+        }
+        saveServerInfo(version, arch);
+        loadCurrentServerType(); // Reload to ensure consistency
+        callback.onSuccess("Frida server " + version + " activated from local store!");
+        return true;
+    }
+
+    /**
+     * Checks a freshly produced binary's architecture, moves it into the artifact store, makes
+     * it executable and points frida-server at it. Returns the architecture read from the
+     * binary, or null after reporting a failure to the callback.
+     */
+    private String activateNewBinary(StagedBinary staged, String version, InstallCallback callback)
+            throws IOException, InterruptedException {
+        try (InstallerOperation.Stage ignored = stage(InstallStage.ACTIVATE)) {
+            String arch = checkArchitecture(staged.file, callback);
+            if (arch == null) {
+                staged.file.delete();
+                return null;
+            }
+            
+            ArtifactStore.Artifact artifact;
+            try (InstallTrace.Span span = span("store-import")) {
+                artifact = artifactStore.importBinary(staged.file, version, arch, staged.sha256, staged.archiveSha256);
+                span.bytes(artifact.binary.length()).ok();
+            }
+            callback.onProgress("🔐 SHA-256: " + artifact.sha256);
+
+            callback.onProgress("🔧 Setting executable permissions with root...");
+            boolean permissionsSet;
+            try (InstallTrace.Span span = span("chmod")) {
+                permissionsSet = setExecutablePermissions(artifact.binary);
+                InstallerOperation.checkCancelled();
+                if (permissionsSet) {
+                    span.ok();
+                } else {
+                    span.fail("chmod failed");
+                }
+            }
+            if (!permissionsSet) {
+                callback.onProgress("❌ Permission setting failed");
+                callback.onError("Failed to set executable permissions");
+                return null;
+            }
+            callback.onProgress("✅ Executable permissions set successfully");
+
+            return switchTo(artifact, "activate", callback) ? arch : null;
+        }
+    }
+
+    /**
+     * Points frida-server at {@code artifact}. If a managed server is running it is restarted on
+     * the new binary, keeping the gap between stop and readiness short; should the new binary
+     * not become ready, the previous one is reactivated and relaunched and false is returned.
+     */
+    private boolean switchTo(ArtifactStore.Artifact artifact, String spanName, InstallCallback callback)
+            throws IOException, InterruptedException {
+        InstallCallback output = serverCallback;
+        ArtifactStore.Artifact previous = artifactStore.getActive();
+        if (output == null || !isManagedServerRunning() || previous == null || previous.sha256.equals(artifact.sha256)) {
+            try (InstallTrace.Span span = span(spanName)) {
+                artifactStore.activate(artifact);
+                span.bytes(artifact.binary.length()).ok();
+            }
+            return true;
+        }
+
+        callback.onProgress("🔄 Switching the running server to the new version...");
+        File serverFile = new File(getFridaInternalDir(), "frida-server");
+        ReadinessProbe.Result readiness;
+        long downtimeMs;
+        try (InstallTrace.Span span = span("switch")) {
+            long stoppedAt = System.nanoTime();
+            stopFridaServer();
+            // The previous binary must survive eviction until the new one has proven itself
+            artifactStore.activate(artifact, false);
+            readiness = launchSupervised(serverFile, output);
+            downtimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stoppedAt);
+            span.bytes(artifact.binary.length());
+            if (readiness.ready) {
+                span.ok();
+            } else {
+                span.fail(readiness.failure);
+            }
+        }
+        if (readiness.ready) {
+            artifactStore.enforceQuota();
+            log.d(TAG, "Switched server in " + downtimeMs + " ms");
+            callback.onProgress("✅ Server switched with " + downtimeMs + " ms downtime");
+            return true;
+        }
+
+        callback.onProgress("↩️ New server did not become ready (" + readiness.failure + "), rolling back...");
+        try (InstallTrace.Span span = span("rollback")) {
+            artifactStore.activate(previous);
+            ReadinessProbe.Result restored = launchSupervised(serverFile, output);
+            if (restored.ready) {
+                span.ok();
+            } else {
+                span.fail(restored.failure);
+            }
+        }
+        callback.onError("Upgrade rolled back: new server did not become ready: " + readiness.failure);
+        return false;
+    }
+
+    private boolean isManagedServerRunning() {
+        ServerSupervisor.State state = supervisor.getStatus().state;
+        return state == ServerSupervisor.State.RUNNING || state == ServerSupervisor.State.BACKING_OFF;
+    }
+
+    /**
+     * Downloads and decodes the server binary, either in one fused streaming pass or by
+     * saving the archive first and extracting it afterwards. Reports failures to the callback
+     * and returns null in that case; an archive that does not match the digest published with
+     * {@code asset} is deleted and throws.
+     */
+    private StagedBinary fetchServerBinary(ServerAsset asset, InstallCallback callback) throws IOException {
+        String downloadUrl = asset.downloadUrl;
+        String expectedArchiveSha256 = publishedSha256(asset);
+        if (streamingInstall && downloadSegments == 1) {
+            callback.onProgress(keepDownloadedArchive
+                    ? "📥 Streaming download and extraction (archive kept in /sdcard/Download/FridaServerInstaller/)..."
+                    : "📥 Streaming download and extraction...");
+            StagedBinary extractedFile;
+            // Download and decode are one pass here, so they share the download deadline
+            try (InstallerOperation.Stage ignored = stage(InstallStage.DOWNLOAD)) {
+                extractedFile = downloadAndExtractStreaming(downloadUrl, expectedArchiveSha256,
+                        new File(getFridaInternalDir(), "frida-server.staging"), callback);
+            }
+            if (extractedFile == null) {
+                callback.onProgress("❌ Download failed");
+                callback.onError("Failed to download Frida server");
+                return null;
+            }
+            callback.onProgress("✅ Download and extraction completed");
+            return extractedFile;
+        }
+
+        callback.onProgress("📥 Starting download to /sdcard/Download/FridaServerInstaller/...");
+        File downloadedFile;
+        Sha256 archiveDigest = new Sha256();
+        try (InstallerOperation.Stage ignored = stage(InstallStage.DOWNLOAD)) {
+            downloadedFile = downloadAssetWithProgress(downloadUrl, archiveDigest, callback);
+        }
+        if (downloadedFile == null) {
+            callback.onProgress("❌ Download failed");
+            callback.onError("Failed to download Frida server");
+            return null;
+        }
+        callback.onProgress("✅ Download completed: " + downloadedFile.getName());
+
+        String archiveSha256 = archiveDigest.hexIfComplete(downloadedFile.length());
+        if (expectedArchiveSha256 != null) {
+            if (archiveSha256 == null) {
+                // Every download path digests the archive, so this only runs if one skipped it
+                try (InstallTrace.Span span = span("verify-archive")) {
+                    archiveSha256 = Sha256.of(downloadedFile);
+                    span.bytes(downloadedFile.length()).ok();
+                }
+            }
+            if (!expectedArchiveSha256.equals(archiveSha256)) {
+                downloadedFile.delete();
+                throw digestMismatch(expectedArchiveSha256, archiveSha256);
+            }
+            callback.onProgress("🔐 Archive matches the release's published SHA-256");
+        }
+
+        callback.onProgress("📦 Extracting server binary...");
+        StagedBinary extractedFile;
+        try (InstallerOperation.Stage ignored = stage(InstallStage.EXTRACT)) {
+            extractedFile = extractXzFile(downloadedFile, archiveSha256, callback);
+        }
+        if (extractedFile == null) {
+            callback.onProgress("❌ Extraction failed");
+            callback.onError("Failed to extract server binary");
+            return null;
+        }
+        callback.onProgress("✅ Extraction completed");
+        return extractedFile;
+    }
+
+    /**
+     * Feeds the response body straight into the XZ decoder and a staging file, so the
+     * archive never has to be read back from storage. The compressed bytes are journaled by
+     * {@link ResumableDownloader} so dropped connections resume instead of starting over;
+     * when {@link #keepDownloadedArchive} is set the journal ends up in the Downloads folder.
+     * Returns the staged binary; the live {@code frida-server} is left alone until activation.
+     * Both the archive and the decoded binary are digested on the way through; an archive that
+     * does not match {@code expectedArchiveSha256} (if given) is discarded and throws.
+     */
+    private StagedBinary downloadAndExtractStreaming(String url, String expectedArchiveSha256, File stagingFile,
+                                                     InstallCallback callback) throws IOException {
+        String fileName = url.substring(url.lastIndexOf("/") + 1);
+        File archiveFile = new File(keepDownloadedArchive ? getFridaDownloadDir() : platform.getCacheDir(), fileName);
+
+        ProgressReporter progress = progressReporter(ProgressReporter.Phase.DOWNLOAD, callback);
+        Sha256 archiveDigest = new Sha256();
+        Sha256 digest = new Sha256();
+
+        StagedBinary staged;
+        try (InstallTrace.Span span = span("download-decode");
+             ResumableDownloader.ResumableInputStream downloadStream = resumableDownloader.open(url, archiveFile)) {
+            reportResume(downloadStream, callback);
+
+            long decoded = 0;
+            // Journaled bytes are replayed from byte zero, so a resumed download is digested in full
+            InputStream archiveStream = archiveDigest.wrap(downloadStream);
+            try (XZInputStream xzInputStream = new XZInputStream(archiveStream);
+                 FileOutputStream outputStream = new FileOutputStream(stagingFile)) {
+
+                byte[] buffer = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = xzInputStream.read(buffer)) != -1) {
+                    InstallerOperation.checkCancelled();
+                    outputStream.write(buffer, 0, bytesRead);
+                    digest.update(buffer, 0, bytesRead);
+                    decoded += bytesRead;
+                    progress.onProgress(downloadStream.getPosition(), downloadStream.getTotalLength());
+                }
+
+                // Drain anything after the XZ footer so the journal is complete
+                while (archiveStream.read(buffer) != -1) {
+                    // discard
+                }
+            }
+            staged = new StagedBinary(stagingFile, digest.hexIfComplete(decoded),
+                    archiveDigest.hexIfComplete(downloadStream.getPosition()));
+            if (expectedArchiveSha256 != null) {
+                if (!expectedArchiveSha256.equals(staged.archiveSha256)) {
+                    // Resuming would only replay the same bytes
+                    downloadStream.discard();
+                    throw digestMismatch(expectedArchiveSha256, staged.archiveSha256);
+                }
+                callback.onProgress("🔐 Archive matches the release's published SHA-256");
+            }
+
+            if (keepDownloadedArchive) {
+                downloadStream.commit();
+            } else {
+                downloadStream.discard();
+            }
+            span.bytes(decoded).ok();
+        } catch (IOException e) {
+            // The .part journal is left in place so the next attempt can resume
+            stagingFile.delete();
+            throw e;
+        }
+        return staged;
+    }
+
+    /**
+     * Downloads the archive into the Downloads folder. A single-stream download feeds
+     * {@code archiveDigest}; segments arrive out of order and leave it untouched.
+     */
+    private File downloadAssetWithProgress(String url, Sha256 archiveDigest, InstallCallback callback)
+            throws IOException {
+        File downloadDir = getFridaDownloadDir();
+        String fileName = url.substring(url.lastIndexOf("/") + 1);
+        File outputFile = new File(downloadDir, fileName);
+
+        ProgressReporter progress = progressReporter(ProgressReporter.Phase.DOWNLOAD, callback);
+
+        try (InstallTrace.Span span = span("download")) {
+            if (downloadSegments > 1) {
+                File downloaded = segmentedDownloader.download(url, outputFile, downloadSegments, archiveDigest,
+                        progress);
+                span.bytes(downloaded.length()).ok();
+                return downloaded;
+            }
+
+            try (ResumableDownloader.ResumableInputStream downloadStream = resumableDownloader.open(url, outputFile)) {
+                reportResume(downloadStream, callback);
+
+                InputStream archiveStream = archiveDigest.wrap(downloadStream);
+                byte[] buffer = new byte[8192];
+                while (archiveStream.read(buffer) != -1) {
+                    InstallerOperation.checkCancelled();
+                    progress.onProgress(downloadStream.getPosition(), downloadStream.getTotalLength());
+                }
+                downloadStream.commit();
+            }
+            span.bytes(outputFile.length()).ok();
+        }
+
+        return outputFile;
+    }
+
+    private void reportResume(ResumableDownloader.ResumableInputStream downloadStream, InstallCallback callback) {
+        if (downloadStream.getResumedFrom() > 0) {
+            callback.onProgress("🔁 Resuming download from " + BinaryFiles.formatFileSize(downloadStream.getResumedFrom()));
+        }
+    }
+
+    private static ProgressReporter progressReporter(ProgressReporter.Phase phase, InstallCallback callback) {
+        return new ProgressReporter(phase, callback::onTransferProgress);
+    }
+
+    private File downloadAsset(String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        File downloadDir = new File(platform.getFilesDir(), "frida");
+        if (!downloadDir.exists()) {
+            downloadDir.mkdirs();
+        }
+
+        File outputFile = new File(downloadDir, "frida-server.xz");
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Failed to download asset: " + response.code());
+            }
+
+            try (InputStream inputStream = response.body().byteStream();
+                 FileOutputStream outputStream = new FileOutputStream(outputFile)) {
+                
+                byte[] buffer = new byte[4096];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, bytesRead);
+                }
+            }
+        }
+
+        return outputFile;
+    }
+
+    /**
+     * @param archiveSha256 digest of {@code xzFile} if one was taken while it was written, or null
+     */
+    private StagedBinary extractXzFile(File xzFile, String archiveSha256, InstallCallback callback) throws IOException {
+        File internalDir = getFridaInternalDir();
+        // Decoded beside the live binary, which may still be running
+        File outputFile = new File(internalDir, "frida-server.staging");
+        
+        // Multi-block archives decode in parallel and are digested block by block in order;
+        // single-block ones fall back to one stream
+        Sha256 digest = new Sha256();
+        long decoded;
+        try (InstallTrace.Span span = span("decode")) {
+            decoded = ParallelXzDecoder.decode(xzFile, outputFile, ParallelXzDecoder.defaultThreads(), digest,
+                    progressReporter(ProgressReporter.Phase.EXTRACT, callback));
+            span.bytes(decoded).ok();
+        }
+
+        // Keep the downloaded file in Downloads folder, don't delete it
+        return new StagedBinary(outputFile, digest.hexIfComplete(decoded), archiveSha256);
+    }
+
+    private boolean setExecutablePermissions(File file) {
+        try {
+            RootShell.Result result = rootShell.run("chmod 755 " + file.getAbsolutePath());
+            for (String errorLine : result.stderr) {
+                log.e(TAG, "chmod error: " + errorLine);
+            }
+            
+            log.d(TAG, "chmod exit code: " + result.exitCode);
+            
+            if (result.isSuccess()) {
+                return file.canExecute();
+            }
+            return false;
+        } catch (Exception e) {
+            log.e(TAG, "Failed to set permissions", e);
+            return false;
+        }
+    }
+
+    public InstallerOperation startFridaServer(InstallCallback callback) {
+        return InstallerOperation.launch(() -> {
+            try (InstallerOperation.Stage ignored = stage(InstallStage.SERVER_START)) {
+                File fridaDir = getFridaInternalDir();
+                File serverFile = new File(fridaDir, "frida-server");
+                
+                if (!serverFile.exists()) {
+                    callback.onError("Frida server not found. Please install it first.");
+                    return;
+                }
+                
+                // Only re-read when the binary changed since it was last verified
+                ArtifactStore.Artifact active = artifactStore.getActive();
+                if (active != null) {
+                    ArtifactStore.Verification verification = artifactStore.verify(active);
+                    if (verification == ArtifactStore.Verification.CORRUPT) {
+                        callback.onError("❌ Installed Frida server no longer matches its SHA-256. Please reinstall it.");
+                        return;
+                    }
+                    if (verification == ArtifactStore.Verification.VERIFIED) {
+                        callback.onProgress("🔐 Server binary verified against its SHA-256");
+                    }
+                }
+                if (checkArchitecture(serverFile, callback) == null) {
+                    return;
+                }
+                
+                callback.onProgress("🛑 Stopping any existing Frida server...");
+                stopFridaServer();
+                
+                callback.onProgress("🚀 Starting Frida server: " + currentServerType);
+                String listenAddress = listenHost + ":" + listenPort;
+                callback.onProgress("📡 Server will listen on " + listenAddress);
+                callback.onProgress("📝 Real-time output will be shown below:");
+                archiveServerOutput("=== Starting frida-server: " + currentServerType + " ===");
+                
+                ReadinessProbe.Result readiness = launchSupervised(serverFile, callback);
+                if (readiness.ready) {
+                    callback.onSuccess("✅ Frida server ready on " + listenAddress + " in " + readiness.elapsedMs
+                            + " ms! Output will continue to be displayed in real-time.");
+                } else {
+                    callback.onError("❌ Failed to start Frida server after " + readiness.elapsedMs + " ms: "
+                            + readiness.failure);
+                }
+                
+            } catch (Exception e) {
+                log.e(TAG, "Failed to start server", e);
+                callback.onError("Failed to start server: " + failureMessage(e));
+            }
+        });
+    }
+    
+    /**
+     * Starts {@code serverFile} under the supervisor, streaming its output to {@code output}, and
+     * waits for it to accept connections. A server that never comes up, or whose start is
+     * cancelled, is terminated by its PID so it cannot keep holding the listen port.
+     */
+    private ReadinessProbe.Result launchSupervised(File serverFile, InstallCallback output)
+            throws IOException, InterruptedException {
+        String listenAddress = listenHost + ":" + listenPort;
+        // The supervisor streams output and restarts the server if it crashes
+        serverCallback = output;
+        ReadinessProbe probe = new ReadinessProbe(listenHost, listenPort);
+        Process process = supervisor.start(() -> launchServer(serverFile, listenAddress), (line, stderr) -> {
+            if (!stderr && line.startsWith(PID_MARKER)) {
+                serverPid = parsePid(line.substring(PID_MARKER.length()));
+                return;
+            }
+            if (stderr) {
+                probe.onStderr(line);
+            }
+            archiveServerOutput((stderr ? "[STDERR] " : "[STDOUT] ") + line);
+            output.onProgress((stderr ? "🔴 [STDERR] " : "📤 [STDOUT] ") + line);
+        });
+        // Abandoning the start kills the half-started server; once started it outlives the operation.
+        // Hooks run on the cancelling thread, so the root commands go to the blocking pool.
+        InstallerOperation operation = InstallerOperation.current();
+        Runnable abandon = () -> InstallerOperation.blockingExecutor().execute(() -> {
+            try {
+                terminateManagedServer();
+            } catch (Exception e) {
+                log.e(TAG, "Failed to stop abandoned server", e);
+            }
+        });
+        operation.onCancel(abandon);
+        
+        ReadinessProbe.Result readiness = probe.await(process, readinessTimeoutMs);
+        if (readiness.ready) {
+            operation.removeOnCancel(abandon);
+            log.d(TAG, "Server ready in " + readiness.elapsedMs + " ms");
+            archiveServerOutput("=== frida-server ready in " + readiness.elapsedMs + " ms ===");
+            healthProber.start(listenHost, listenPort, healthProbeIntervalMs,
+                    () -> supervisor.getStatus().state == ServerSupervisor.State.RUNNING);
+        } else {
+            // Don't keep restarting a server that never came up
+            operation.removeOnCancel(abandon);
+            terminateManagedServer();
+        }
+        return readiness;
+    }
+    
+    private Process launchServer(File serverFile, String listenAddress) throws IOException {
+        Process process = rootShell.spawn();
+        // exec keeps the shell's PID and makes su exit with frida-server, passing on its exit code
+        String command = "cd " + platform.getServerWorkingDir().getAbsolutePath()
+                + " && echo \"" + PID_MARKER + "$$\" && exec "
+                + serverFile.getAbsolutePath() + " -l " + listenAddress + "\n";
+        process.getOutputStream().write(command.getBytes());
+        process.getOutputStream().flush();
+        return process;
+    }
+    
+    private void reportServerStatus(ServerSupervisor.Status status) {
+        InstallCallback callback = serverCallback;
+        switch (status.state) {
+            case BACKING_OFF: {
+                String exit = ServerSupervisor.describeExitCode(status.lastExitCode);
+                long delaySeconds = Math.max(0, status.nextRestartAtMs - System.currentTimeMillis() + 999) / 1000;
+                log.w(TAG, "frida-server exited with " + exit + ", stderr: " + status.lastStderr);
+                archiveServerOutput("=== frida-server exited with " + exit + " ===");
+                if (callback != null) {
+                    callback.onProgress("💥 frida-server exited with " + exit + ", restarting in " + delaySeconds + "s");
+                }
+                break;
+            }
+            case RUNNING:
+                if (status.restartCount > 0) {
+                    archiveServerOutput("=== Restarted frida-server (restart #" + status.restartCount + ") ===");
+                    if (callback != null) {
+                        callback.onProgress("🔁 frida-server restarted (restart #" + status.restartCount + ")");
+                    }
+                }
+                break;
+            case CRASH_LOOP: {
+                String exit = ServerSupervisor.describeExitCode(status.lastExitCode);
+                log.e(TAG, "frida-server is crash looping, last exit " + exit + ", stderr: " + status.lastStderr);
+                archiveServerOutput("=== frida-server keeps crashing, last exit " + exit + "; restarts paused ===");
+                if (callback != null) {
+                    callback.onProgress("⛔ frida-server keeps crashing (" + exit + "). Automatic restarts paused.");
+                    for (String line : status.lastStderr) {
+                        callback.onProgress("🔴 [LAST STDERR] " + line);
+                    }
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+    
+    public ServerSupervisor.Status getServerStatus() {
+        return supervisor.getStatus();
+    }
+    
+    public void addServerStatusListener(ServerSupervisor.StatusListener listener) {
+        supervisor.addStatusListener(listener);
+    }
+    
+    public void removeServerStatusListener(ServerSupervisor.StatusListener listener) {
+        supervisor.removeStatusListener(listener);
+    }
+    
+    public HealthProber.Snapshot getServerHealth() {
+        return healthProber.getSnapshot();
+    }
+    
+    public void addServerHealthListener(HealthProber.Listener listener) {
+        healthProber.addListener(listener);
+    }
+    
+    public void removeServerHealthListener(HealthProber.Listener listener) {
+        healthProber.removeListener(listener);
+    }
+    
+    private void archiveServerOutput(String line) {
+        if (serverLog == null) {
+            return;
+        }
+        try {
+            serverLog.append(line);
+        } catch (IOException e) {
+            log.e(TAG, "Failed to archive server output", e);
+        }
+    }
+    
+    private static int parsePid(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Stops the server this app started: SIGTERM to its PID, then SIGKILL if it outlives the
+     * grace period. Other frida-server processes are only killed when
+     * {@link #setKillUnmanagedServers} is on.
+     */
+    public ServerTerminator.Result stopFridaServer() {
+        ServerTerminator.Result result = ServerTerminator.Result.NOT_RUNNING;
+        try {
+            // Stopping the supervisor first keeps it from restarting the server
+            serverCallback = null;
+            healthProber.stop();
+            result = terminateManagedServer();
+            
+            if (killUnmanagedServers) {
+                rootShell.run("pkill frida-server");
+            }
+        } catch (InterruptedException e) {
+            // Keep the flag so a cancelled operation stops at its next check
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.e(TAG, "Failed to stop server", e);
+        }
+        return result;
+    }
+    
+    /**
+     * Stops the supervisor and terminates the server it launched by PID, falling back to the
+     * launching process while the PID is not known yet.
+     */
+    private ServerTerminator.Result terminateManagedServer() throws IOException, InterruptedException {
+        Process process = supervisor.stop();
+        int pid = serverPid;
+        serverPid = 0;
+        if (process == null && pid <= 0) {
+            return ServerTerminator.Result.NOT_RUNNING;
+        }
+        ServerTerminator.Result result = ServerTerminator.terminate(rootShell, pid, process, stopGraceMs);
+        log.d(TAG, "Server " + pid + " stop: " + result.outcome + " in " + result.elapsedMs + " ms");
+        if (process != null && process.isAlive()) {
+            process.destroyForcibly();
+        }
+        return result;
+    }
+    
+    public boolean isServerRunning() {
+        try {
+            RootShell.Result result = rootShell.run("pgrep frida-server");
+            String pid = result.firstLine();
+            
+            log.d(TAG, "Server check PID: " + pid);
+            log.d(TAG, "Server check exit code: " + result.exitCode);
+            
+            return result.isSuccess() && pid != null && !pid.trim().isEmpty();
+        } catch (Exception e) {
+            log.e(TAG, "Failed to check server status", e);
+            return false;
+        }
+    }
+    
+    private void saveServerInfo(String version, String arch) {
+        try {
+            File fridaDir = getFridaInternalDir();
+            File infoFile = new File(fridaDir, "server-info.txt");
+            FileOutputStream fos = new FileOutputStream(infoFile);
+            String info = version + " (" + arch + ")";
+            fos.write(info.getBytes());
+            fos.close();
+        } catch (Exception e) {
+            log.e(TAG, "Failed to save server info", e);
+        }
+    }
+    
+    private void copyFile(File source, File dest, InstallCallback callback) throws IOException {
+        try (InstallTrace.Span span = span("copy")) {
+            long copied = BinaryFiles.copy(source, dest, BinaryFiles.DEFAULT_COPY_BUFFER_SIZE,
+                    progressReporter(ProgressReporter.Phase.COPY, callback));
+            span.bytes(copied).ok();
+        }
+    }
+}
\ No newline at end of file
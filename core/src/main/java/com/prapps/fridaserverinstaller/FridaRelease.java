@@ -0,0 +1,32 @@
+package com.prapps.fridaserverinstaller;
+
+import java.util.Map;
+
+/**
+ * A Frida release as listed by GitHub, reduced to what the installer needs.
+ */
+public class FridaRelease {
+    public String tagName;
+    public String name;
+    public String publishedAt;
+    public boolean prerelease;
+    // Android frida-server assets only, keyed by architecture
+    public Map<String, ServerAsset> serverAssets;
+
+    public FridaRelease(String tagName, String name, String publishedAt, boolean prerelease, Map<String, ServerAsset> serverAssets) {
+        this.tagName = tagName;
+        this.name = name;
+        this.publishedAt = publishedAt;
+        this.prerelease = prerelease;
+        this.serverAssets = serverAssets;
+    }
+
+    public String getDisplayName() {
+        return tagName + (prerelease ? " (Pre-release)" : "");
+    }
+
+    public ServerAsset getServerAsset(String arch) {
+        return serverAssets.get(arch);
+    }
+}
+
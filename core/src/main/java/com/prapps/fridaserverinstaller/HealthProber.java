@@ -0,0 +1,227 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Periodically checks that frida-server is accepting and answering connections.
+ *
+ * Each probe opens a TCP connection to the server endpoint and sends the WebSocket upgrade
+ * request frida clients start with; any HTTP status line back completes the handshake.
+ * Connect and handshake latencies go into {@link LatencyHistogram}s. A server whose process
+ * is alive but that fails {@link #DEGRADED_AFTER_FAILURES} probes in a row is reported as
+ * {@link Health#DEGRADED}; one whose process is gone as {@link Health#DOWN}.
+ */
+public class HealthProber {
+    public static final long DEFAULT_INTERVAL_MS = 5000;
+    public static final int DEFAULT_TIMEOUT_MS = 1000;
+    static final int DEGRADED_AFTER_FAILURES = 3;
+
+    public enum Health {
+        UNKNOWN, HEALTHY, DEGRADED, DOWN
+    }
+
+    public static class Snapshot {
+        public static final Snapshot UNKNOWN = new Snapshot(Health.UNKNOWN, 0, 0, 0, null,
+                new long[3], new long[3]);
+
+        public final Health health;
+        public final long probes;
+        public final long failures;
+        public final int consecutiveFailures;
+        /** Why the last probe failed, or null if it succeeded. */
+        public final String lastError;
+        /** p50, p95 and p99 connect latency in nanoseconds. */
+        public final long[] connectPercentilesNanos;
+        /** p50, p95 and p99 handshake latency in nanoseconds, measured after connecting. */
+        public final long[] handshakePercentilesNanos;
+
+        Snapshot(Health health, long probes, long failures, int consecutiveFailures, String lastError,
+                 long[] connectPercentilesNanos, long[] handshakePercentilesNanos) {
+            this.health = health;
+            this.probes = probes;
+            this.failures = failures;
+            this.consecutiveFailures = consecutiveFailures;
+            this.lastError = lastError;
+            this.connectPercentilesNanos = connectPercentilesNanos;
+            this.handshakePercentilesNanos = handshakePercentilesNanos;
+        }
+    }
+
+    /**
+     * Called on the prober thread after every probe. Must not block.
+     */
+    public interface Listener {
+        void onHealthChanged(Snapshot snapshot);
+    }
+
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram handshakeLatency = new LatencyHistogram();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HealthProber");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int timeoutMs = DEFAULT_TIMEOUT_MS;
+    private String host;
+    private int port;
+    private BooleanSupplier processAlive;
+    private ScheduledFuture<?> schedule;
+    private Snapshot snapshot = Snapshot.UNKNOWN;
+    private long probes;
+    private long failures;
+    private int consecutiveFailures;
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setTimeoutMs(int timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public synchronized Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Starts probing {@code host:port} every {@code intervalMs}, with fresh statistics.
+     *
+     * @param host the listen address; the wildcard address is probed on loopback
+     * @param processAlive whether the server process is still running
+     */
+    public synchronized void start(String host, int port, long intervalMs, BooleanSupplier processAlive) {
+        stop();
+        this.host = "0.0.0.0".equals(host) || "::".equals(host) ? "127.0.0.1" : host;
+        this.port = port;
+        this.processAlive = processAlive;
+        connectLatency.reset();
+        handshakeLatency.reset();
+        probes = 0;
+        failures = 0;
+        consecutiveFailures = 0;
+        publish(Snapshot.UNKNOWN);
+        // The server has just passed its readiness check, so the first probe can wait an interval
+        schedule = scheduler.scheduleWithFixedDelay(this::probe, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops probing and publishes {@link Snapshot#UNKNOWN}, so listeners don't keep showing the
+     * last result for a server that is no longer watched.
+     */
+    public synchronized void stop() {
+        if (schedule == null) {
+            return;
+        }
+        schedule.cancel(false);
+        schedule = null;
+        publish(Snapshot.UNKNOWN);
+    }
+
+    /**
+     * Runs one probe now and returns the resulting snapshot.
+     */
+    Snapshot probe() {
+        String probeHost;
+        int probePort;
+        synchronized (this) {
+            probeHost = host;
+            probePort = port;
+        }
+        String error = null;
+        try (Socket socket = new Socket()) {
+            long start = System.nanoTime();
+            socket.connect(new InetSocketAddress(probeHost, probePort), timeoutMs);
+            long connected = System.nanoTime();
+            connectLatency.recordNanos(connected - start);
+
+            socket.setSoTimeout(timeoutMs);
+            if (handshake(socket, probeHost, probePort)) {
+                handshakeLatency.recordNanos(System.nanoTime() - connected);
+            } else {
+                error = "No handshake response";
+            }
+        } catch (IOException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        return record(error);
+    }
+
+    private static boolean handshake(Socket socket, String host, int port) throws IOException {
+        String request = "GET /ws HTTP/1.1\r\n"
+                + "Host: " + host + ":" + port + "\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Sec-WebSocket-Key: ZnJpZGEtaGVhbHRoLXByb2Jl\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String statusLine = reader.readLine();
+        return statusLine != null && statusLine.startsWith("HTTP/");
+    }
+
+    private synchronized Snapshot record(String error) {
+        if (schedule == null) {
+            // Finished after stop(); the result no longer describes a watched server
+            return snapshot;
+        }
+        probes++;
+        Health health;
+        if (error == null) {
+            consecutiveFailures = 0;
+            health = Health.HEALTHY;
+        } else {
+            failures++;
+            consecutiveFailures++;
+            if (processAlive != null && !processAlive.getAsBoolean()) {
+                health = Health.DOWN;
+            } else if (consecutiveFailures >= DEGRADED_AFTER_FAILURES) {
+                health = Health.DEGRADED;
+            } else {
+                // A single failed probe is not enough to call the server degraded
+                health = snapshot.health;
+            }
+        }
+        Snapshot next = new Snapshot(health, probes, failures, consecutiveFailures, error,
+                percentiles(connectLatency), percentiles(handshakeLatency));
+        publish(next);
+        return next;
+    }
+
+    private void publish(Snapshot next) {
+        snapshot = next;
+        for (Listener listener : listeners) {
+            listener.onHealthChanged(next);
+        }
+    }
+
+    private static long[] percentiles(LatencyHistogram histogram) {
+        long[] values = new long[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            values[i] = histogram.percentileNanos(PERCENTILES[i]);
+        }
+        return values;
+    }
+}
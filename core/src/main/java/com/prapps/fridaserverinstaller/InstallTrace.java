@@ -0,0 +1,138 @@
+package com.prapps.fridaserverinstaller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timing record of one install: a span per stage with its duration, bytes and outcome.
+ *
+ * Spans are opened with try-with-resources around each stage. A span that reaches its end
+ * normally is marked with {@link Span#ok()}; one closed without it is recorded as failed, or
+ * as cancelled if its operation was cancelled, so exceptions need no extra handling.
+ */
+public class InstallTrace {
+    public enum Outcome {
+        OK, FAILED, CANCELLED
+    }
+
+    public static final class Span implements AutoCloseable {
+        static final Span NONE = new Span(null, "none", 0);
+
+        private final InstallTrace trace;
+        public final String name;
+        /** Offset from the start of the trace. */
+        public final long startOffsetMs;
+        private final long startNanos = System.nanoTime();
+        private long durationMs = -1;
+        private long bytes = -1;
+        private Outcome outcome;
+        private String error;
+
+        Span(InstallTrace trace, String name, long startOffsetMs) {
+            this.trace = trace;
+            this.name = name;
+            this.startOffsetMs = startOffsetMs;
+        }
+
+        /**
+         * Records how many bytes the stage read, wrote or produced.
+         */
+        public synchronized Span bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        public synchronized void ok() {
+            outcome = Outcome.OK;
+        }
+
+        public synchronized void fail(String error) {
+            outcome = Outcome.FAILED;
+            this.error = error;
+        }
+
+        @Override
+        public void close() {
+            if (trace == null) {
+                return;
+            }
+            synchronized (this) {
+                if (durationMs >= 0) {
+                    return;
+                }
+                durationMs = (System.nanoTime() - startNanos) / 1_000_000L;
+                if (outcome == null) {
+                    outcome = InstallerOperation.isCurrentCancelled() ? Outcome.CANCELLED : Outcome.FAILED;
+                }
+            }
+        }
+
+        /** Duration, or -1 while the span is still open. */
+        public synchronized long getDurationMs() {
+            return durationMs;
+        }
+
+        /** Bytes processed, or -1 if the stage does not move data. */
+        public synchronized long getBytes() {
+            return bytes;
+        }
+
+        /** Outcome, or null while the span is still open. */
+        public synchronized Outcome getOutcome() {
+            return outcome;
+        }
+
+        public synchronized String getError() {
+            return error;
+        }
+    }
+
+    public final String name;
+    public final long startedAtMs;
+    private final long startNanos = System.nanoTime();
+    private final List<Span> spans = new ArrayList<>();
+    private long durationMs = -1;
+    private Outcome outcome;
+    private String message;
+
+    InstallTrace(String name) {
+        this.name = name;
+        this.startedAtMs = System.currentTimeMillis();
+    }
+
+    public synchronized Span span(String spanName) {
+        Span span = new Span(this, spanName, (System.nanoTime() - startNanos) / 1_000_000L);
+        spans.add(span);
+        return span;
+    }
+
+    /**
+     * Ends the trace. Only the first call counts, so the first reported outcome wins.
+     */
+    synchronized void finish(Outcome outcome, String message) {
+        if (this.outcome != null) {
+            return;
+        }
+        this.outcome = outcome;
+        this.message = message;
+        durationMs = (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    public synchronized List<Span> getSpans() {
+        return Collections.unmodifiableList(new ArrayList<>(spans));
+    }
+
+    public synchronized long getDurationMs() {
+        return durationMs;
+    }
+
+    public synchronized Outcome getOutcome() {
+        return outcome;
+    }
+
+    /** Success or error message the install finished with, if any. */
+    public synchronized String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,105 @@
+package com.prapps.fridaserverinstaller;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the last {@code capacity} finished {@link InstallTrace}s and exports them as JSON.
+ */
+public class InstallTracer {
+    public static final int DEFAULT_CAPACITY = 20;
+
+    private final int capacity;
+    private final Deque<InstallTrace> traces = new ArrayDeque<>();
+
+    public InstallTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InstallTracer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public InstallTrace begin(String name) {
+        return new InstallTrace(name);
+    }
+
+    /**
+     * Ends {@code trace} (if its outcome has not been reported yet) and keeps it, dropping the
+     * oldest trace beyond capacity.
+     */
+    public void finish(InstallTrace trace, InstallTrace.Outcome outcome, String message) {
+        trace.finish(outcome, message);
+        synchronized (this) {
+            if (traces.contains(trace)) {
+                return;
+            }
+            traces.addLast(trace);
+            while (traces.size() > capacity) {
+                traces.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Finished traces, oldest first.
+     */
+    public synchronized List<InstallTrace> getTraces() {
+        return new ArrayList<>(traces);
+    }
+
+    public String toJson() {
+        StringWriter out = new StringWriter();
+        try {
+            writeJson(out);
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the kept traces as a JSON array, oldest first. Durations are in milliseconds and
+     * span offsets are relative to the start of their trace.
+     */
+    public void writeJson(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.beginArray();
+        for (InstallTrace trace : getTraces()) {
+            writer.beginObject();
+            writer.name("name").value(trace.name);
+            writer.name("startedAt").value(trace.startedAtMs);
+            writer.name("durationMs").value(trace.getDurationMs());
+            writer.name("outcome").value(trace.getOutcome() != null ? trace.getOutcome().name() : null);
+            writer.name("message").value(trace.getMessage());
+            writer.name("spans").beginArray();
+            for (InstallTrace.Span span : trace.getSpans()) {
+                writer.beginObject();
+                writer.name("name").value(span.name);
+                writer.name("startOffsetMs").value(span.startOffsetMs);
+                writer.name("durationMs").value(span.getDurationMs());
+                if (span.getBytes() >= 0) {
+                    writer.name("bytes").value(span.getBytes());
+                }
+                writer.name("outcome").value(span.getOutcome() != null ? span.getOutcome().name() : null);
+                if (span.getError() != null) {
+                    writer.name("error").value(span.getError());
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.flush();
+    }
+}
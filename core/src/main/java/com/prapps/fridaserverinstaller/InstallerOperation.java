@@ -0,0 +1,285 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+
+/**
+ * Handle for one background installer operation: cancellation, per-stage deadlines and a
+ * completion signal.
+ *
+ * Operations run on a single shared pool of {@link #MAX_CONCURRENT_OPERATIONS} threads. While
+ * one runs, {@link #current()} returns its handle on the worker thread and inside
+ * {@link #callAs} on threads it hands work to (segment downloads, parallel XZ workers). Work
+ * that only blocks (waiting on a process, the root shell or a lock) goes to
+ * {@link #blockingExecutor()} so it cannot starve the operation pool. Cancelling interrupts the worker, cancels
+ * every OkHttp call it started through {@link #callInterceptor()}, and runs registered hooks;
+ * copy and decode loops poll {@link #checkCancelled()} between buffers. Together these bound
+ * how long a cancelled operation keeps using the network or CPU.
+ */
+public final class InstallerOperation {
+    public static final int MAX_CONCURRENT_OPERATIONS = 4;
+
+    // Not inheritable: pool threads are created lazily from whatever thread first submits work
+    private static final ThreadLocal<InstallerOperation> CURRENT = new ThreadLocal<>();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_OPERATIONS, runnable -> {
+        Thread thread = new Thread(runnable, "FridaInstaller-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService BLOCKING = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "FridaInstaller-blocking-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FridaInstaller-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Runnable> cancelHooks = new ArrayList<>();
+    private final List<Runnable> finishHooks = new ArrayList<>();
+    private Thread worker;
+    private boolean finished;
+    private volatile String cancelReason;
+    private volatile InstallTrace trace;
+
+    /**
+     * A running deadline. Closing it before the deadline passes disarms it.
+     */
+    public static final class Stage implements AutoCloseable {
+        static final Stage NONE = new Stage(null);
+
+        private final ScheduledFuture<?> deadline;
+
+        Stage(ScheduledFuture<?> deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void close() {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Unbounded pool for short tasks that mostly wait, such as stopping the server, so they
+     * don't hold one of the {@link #MAX_CONCURRENT_OPERATIONS} operation threads.
+     */
+    public static ExecutorService blockingExecutor() {
+        return BLOCKING;
+    }
+
+    /**
+     * Runs {@code body} on the shared pool and returns its handle. A body cancelled before it
+     * starts is skipped.
+     */
+    public static InstallerOperation launch(Runnable body) {
+        InstallerOperation operation = new InstallerOperation();
+        EXECUTOR.execute(() -> operation.run(body));
+        return operation;
+    }
+
+    /**
+     * The operation running on this thread, or null outside of one.
+     */
+    public static InstallerOperation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code task} on this thread as part of {@code operation}, so cancellation checks and
+     * HTTP calls inside it are tied to that operation. Worker threads an operation hands part of
+     * its work to call this with the operation captured when the work was submitted, which may
+     * be null outside of one.
+     */
+    public static <T> T callAs(InstallerOperation operation, Callable<T> task) throws Exception {
+        InstallerOperation previous = CURRENT.get();
+        CURRENT.set(operation);
+        try {
+            return task.call();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Throws if the operation running on this thread has been cancelled.
+     */
+    public static void checkCancelled() throws InterruptedIOException {
+        InstallerOperation operation = CURRENT.get();
+        if (operation != null && operation.isCancelled()) {
+            throw new InterruptedIOException(operation.cancelReason);
+        }
+    }
+
+    /**
+     * True if the operation running on this thread has been cancelled. Retry loops check this
+     * so a cancelled call is not mistaken for a dropped connection.
+     */
+    public static boolean isCurrentCancelled() {
+        InstallerOperation operation = CURRENT.get();
+        return operation != null && operation.isCancelled();
+    }
+
+    /**
+     * Application interceptor that ties each OkHttp call made inside an operation to it, so
+     * cancelling the operation also aborts the socket read the call is blocked in.
+     */
+    public static Interceptor callInterceptor() {
+        return chain -> {
+            InstallerOperation operation = CURRENT.get();
+            if (operation != null) {
+                checkCancelled();
+                // Stays registered after proceed() returns; the body is read after that
+                operation.onCancel(chain.call()::cancel);
+            }
+            return chain.proceed(chain.request());
+        };
+    }
+
+    public void cancel() {
+        cancel("Cancelled");
+    }
+
+    public void cancel(String reason) {
+        List<Runnable> hooks;
+        synchronized (this) {
+            if (cancelReason != null || finished) {
+                return;
+            }
+            cancelReason = reason;
+            hooks = new ArrayList<>(cancelHooks);
+            cancelHooks.clear();
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+        for (Runnable hook : hooks) {
+            hook.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    /**
+     * Why the operation was cancelled (user request or a missed stage deadline), or null.
+     */
+    public String getCancelReason() {
+        return cancelReason;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * The trace recording this operation's stages, or null if it is not traced.
+     */
+    public InstallTrace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(InstallTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Runs {@code hook} when the operation is cancelled, or straight away if it already was.
+     */
+    public void onCancel(Runnable hook) {
+        synchronized (this) {
+            if (cancelReason == null) {
+                if (!finished) {
+                    cancelHooks.add(hook);
+                }
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    /**
+     * Drops a hook registered with {@link #onCancel} whose work no longer needs undoing.
+     */
+    public synchronized void removeOnCancel(Runnable hook) {
+        cancelHooks.remove(hook);
+    }
+
+    /**
+     * Runs {@code hook} once the operation's body has returned, or straight away if it has.
+     */
+    public void whenFinished(Runnable hook) {
+        synchronized (this) {
+            if (!finished) {
+                finishHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    /**
+     * Starts a deadline for one stage. If it is still open after {@code timeoutMs} the whole
+     * operation is cancelled with a reason naming the stage.
+     */
+    public Stage stage(String name, long timeoutMs) {
+        if (timeoutMs <= 0) {
+            return Stage.NONE;
+        }
+        String limit = timeoutMs % 1000 == 0 ? timeoutMs / 1000 + "s" : timeoutMs + "ms";
+        return new Stage(DEADLINES.schedule(
+                () -> cancel(name + " exceeded its " + limit + " deadline"),
+                timeoutMs, TimeUnit.MILLISECONDS));
+    }
+
+    private void run(Runnable body) {
+        boolean started;
+        synchronized (this) {
+            started = cancelReason == null;
+            if (started) {
+                worker = Thread.currentThread();
+            }
+        }
+        try {
+            if (started) {
+                CURRENT.set(this);
+                body.run();
+            }
+        } finally {
+            List<Runnable> hooks;
+            synchronized (this) {
+                worker = null;
+                finished = true;
+                cancelHooks.clear();
+                hooks = new ArrayList<>(finishHooks);
+                finishHooks.clear();
+                // Don't leak a cancellation interrupt into the next task on this pool thread
+                Thread.interrupted();
+            }
+            CURRENT.remove();
+            for (Runnable hook : hooks) {
+                hook.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Runs the engine on a plain JVM, e.g. for load tests on a Linux build machine: storage lives
+ * under one base directory, the ABI follows {@code os.arch}, logs go to stderr and commands
+ * run through whatever shell is supplied, typically {@code sh} in place of {@code su}.
+ */
+public class JvmPlatform implements Platform, Platform.Logger {
+    private final File baseDir;
+    private final RootShell rootShell;
+    private final String[] supportedAbis;
+
+    public JvmPlatform(File baseDir, RootShell rootShell) {
+        this(baseDir, rootShell, new String[]{abiOf(System.getProperty("os.arch", ""))});
+    }
+
+    public JvmPlatform(File baseDir, RootShell rootShell, String[] supportedAbis) {
+        this.baseDir = baseDir;
+        this.rootShell = rootShell;
+        this.supportedAbis = supportedAbis;
+    }
+
+    static String abiOf(String osArch) {
+        switch (osArch.toLowerCase(Locale.ROOT)) {
+            case "aarch64":
+            case "arm64":
+                return "arm64-v8a";
+            case "arm":
+                return "armeabi-v7a";
+            case "x86":
+            case "i386":
+            case "i686":
+                return "x86";
+            case "amd64":
+            case "x86_64":
+                return "x86_64";
+            default:
+                return osArch;
+        }
+    }
+
+    @Override
+    public File getFilesDir() {
+        return dir("files");
+    }
+
+    @Override
+    public File getCacheDir() {
+        return dir("cache");
+    }
+
+    @Override
+    public File getDownloadsDir() {
+        return dir("downloads");
+    }
+
+    @Override
+    public File getServerWorkingDir() {
+        return dir("tmp");
+    }
+
+    @Override
+    public String[] getSupportedAbis() {
+        return supportedAbis.clone();
+    }
+
+    @Override
+    public Logger getLogger() {
+        return this;
+    }
+
+    @Override
+    public RootShell getRootShell() {
+        return rootShell;
+    }
+
+    private File dir(String name) {
+        File dir = new File(baseDir, name);
+        dir.mkdirs();
+        return dir;
+    }
+
+    @Override
+    public void d(String tag, String message) {
+        print("D", tag, message, null);
+    }
+
+    @Override
+    public void w(String tag, String message) {
+        print("W", tag, message, null);
+    }
+
+    @Override
+    public void w(String tag, String message, Throwable error) {
+        print("W", tag, message, error);
+    }
+
+    @Override
+    public void e(String tag, String message) {
+        print("E", tag, message, null);
+    }
+
+    @Override
+    public void e(String tag, String message, Throwable error) {
+        print("E", tag, message, error);
+    }
+
+    private static void print(String level, String tag, String message, Throwable error) {
+        System.err.println(level + "/" + tag + ": " + message);
+        if (error != null) {
+            error.printStackTrace();
+        }
+    }
+}
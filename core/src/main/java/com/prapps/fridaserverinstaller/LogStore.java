@@ -0,0 +1,177 @@
+package com.prapps.fridaserverinstaller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity in-memory log of progress and server output lines.
+ *
+ * Every line gets a sequence number from a single counter and is written into slot
+ * {@code sequence % capacity}, overwriting the line {@code capacity} appends older. Appends
+ * are lock-free, so the stdout/stderr reader threads never block each other or the UI.
+ * Lines are truncated to {@link #MAX_LINE_LENGTH}, which together with the line limit caps
+ * memory regardless of how long the server runs.
+ *
+ * Readers either take a {@link Snapshot}, an O(1) view of the sequence range present at that
+ * moment, or copy a {@link #window} of lines starting at a sequence number.
+ */
+public class LogStore {
+    public static final int DEFAULT_CAPACITY = 2000;
+    public static final int MAX_LINE_LENGTH = 2000;
+    /** How many of the newest sequence numbers are checked for appends still in flight. */
+    private static final int IN_FLIGHT_SCAN = 64;
+
+    public static class Line {
+        public final long sequence;
+        public final long timestamp;
+        public final String text;
+
+        Line(long sequence, long timestamp, String text) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Immutable view of the lines with sequence numbers in {@code [firstSequence, endSequence)}.
+     * Lines overwritten after the snapshot was taken read as null.
+     */
+    public static class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(null, 0, 0);
+
+        private final LogStore store;
+        public final long firstSequence;
+        public final long endSequence;
+
+        Snapshot(LogStore store, long firstSequence, long endSequence) {
+            this.store = store;
+            this.firstSequence = firstSequence;
+            this.endSequence = endSequence;
+        }
+
+        public int size() {
+            return (int) (endSequence - firstSequence);
+        }
+
+        public boolean isEmpty() {
+            return endSequence == firstSequence;
+        }
+
+        public Line get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + size());
+            }
+            return store.lineAt(firstSequence + index);
+        }
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<Line> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong clearedBefore = new AtomicLong();
+
+    public LogStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LogStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Appends a line and returns its sequence number.
+     */
+    public long append(String text) {
+        if (text.length() > MAX_LINE_LENGTH) {
+            text = text.substring(0, MAX_LINE_LENGTH) + "…";
+        }
+        long sequence = nextSequence.getAndIncrement();
+        slots.set(slotOf(sequence), new Line(sequence, System.currentTimeMillis(), text));
+        return sequence;
+    }
+
+    /**
+     * Hides everything appended so far. Sequence numbers keep increasing.
+     */
+    public void clear() {
+        clearedBefore.set(nextSequence.get());
+    }
+
+    /**
+     * Sequence number the next appended line will get.
+     */
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    public Snapshot snapshot() {
+        long end = publishedEnd(nextSequence.get());
+        return new Snapshot(this, firstRetained(end), end);
+    }
+
+    /**
+     * Copies up to {@code maxLines} lines starting at {@code fromSequence}. If that line has
+     * already been overwritten the window starts at the oldest retained one.
+     */
+    public List<Line> window(long fromSequence, int maxLines) {
+        long end = publishedEnd(nextSequence.get());
+        long start = Math.max(fromSequence, firstRetained(end));
+        List<Line> lines = new ArrayList<>((int) Math.max(0, Math.min(maxLines, end - start)));
+        for (long sequence = start; sequence < end && lines.size() < maxLines; sequence++) {
+            Line line = lineAt(sequence);
+            if (line != null) {
+                lines.add(line);
+            }
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Number of lines pushed out of the buffer by newer ones.
+     */
+    public long getDroppedCount() {
+        return Math.max(0, nextSequence.get() - capacity);
+    }
+
+    Line lineAt(long sequence) {
+        Line line = slots.get(slotOf(sequence));
+        return line != null && line.sequence == sequence ? line : null;
+    }
+
+    private long firstRetained(long end) {
+        return Math.min(end, Math.max(clearedBefore.get(), Math.max(0, end - capacity)));
+    }
+
+    /**
+     * A writer may have claimed a sequence number without storing its line yet; end the
+     * range at the earliest such gap so snapshots never contain lines that appear later.
+     * In-flight appends are always among the most recent claims, so only the tail is checked.
+     */
+    private long publishedEnd(long claimedEnd) {
+        long end = claimedEnd;
+        long start = Math.max(0, claimedEnd - Math.min(capacity, IN_FLIGHT_SCAN));
+        for (long sequence = claimedEnd - 1; sequence >= start; sequence--) {
+            Line line = slots.get(slotOf(sequence));
+            if (line == null || line.sequence < sequence) {
+                end = sequence;
+            }
+        }
+        return end;
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence % capacity);
+    }
+}
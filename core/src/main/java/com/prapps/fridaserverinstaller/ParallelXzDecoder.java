@@ -0,0 +1,238 @@
+package com.prapps.fridaserverinstaller;
+
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes .xz files block by block on a worker pool.
+ *
+ * The XZ index lists every block's compressed and uncompressed offsets, so independent
+ * blocks can be decoded concurrently, each through its own {@link SeekableXZInputStream},
+ * and written at their final offset with positional {@link FileChannel} writes. Streams
+ * with a single block (the usual output of single-threaded {@code xz}) use the sequential
+ * decoder instead.
+ */
+public final class ParallelXzDecoder {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ParallelXzDecoder() {
+    }
+
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Decodes {@code xzFile} into {@code outputFile} and returns the number of bytes written.
+     */
+    public static long decode(File xzFile, File outputFile, int threads) throws IOException {
+        return decode(xzFile, outputFile, threads, null);
+    }
+
+    /**
+     * Like {@link #decode(File, File, int)}, reporting uncompressed bytes written out of the
+     * total recorded in the index. Workers report concurrently, so the listener must be
+     * thread-safe.
+     */
+    public static long decode(File xzFile, File outputFile, int threads,
+                              ResumableDownloader.ProgressListener listener) throws IOException {
+        return decode(xzFile, outputFile, threads, null, listener);
+    }
+
+    /**
+     * Like {@link #decode(File, File, int, ResumableDownloader.ProgressListener)}, feeding
+     * {@code digest} with the output. SHA-256 cannot be split across blocks, so when blocks are
+     * decoded in parallel the calling thread re-reads each one from the output file, in order, as
+     * soon as it and every block before it are written, while the workers decode the rest. Only
+     * the single-threaded path digests the bytes as they are decoded.
+     */
+    public static long decode(File xzFile, File outputFile, int threads, Sha256 digest,
+                              ResumableDownloader.ProgressListener listener) throws IOException {
+        int blockCount;
+        long uncompressedSize;
+        long[] blockPositions;
+        long[] blockSizes;
+        try (SeekableXZInputStream index = new SeekableXZInputStream(new SeekableFileInputStream(xzFile))) {
+            blockCount = index.getBlockCount();
+            uncompressedSize = index.length();
+            blockPositions = new long[blockCount];
+            blockSizes = new long[blockCount];
+            for (int block = 0; block < blockCount; block++) {
+                blockPositions[block] = index.getBlockPos(block);
+                blockSizes[block] = index.getBlockSize(block);
+            }
+        }
+
+        if (blockCount <= 1 || threads <= 1) {
+            return decodeSequential(xzFile, outputFile, uncompressedSize, BUFFER_SIZE, digest, listener);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, blockCount), runnable -> {
+            Thread thread = new Thread(runnable, "ParallelXzDecoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (RandomAccessFile output = new RandomAccessFile(outputFile, "rw")) {
+            output.setLength(uncompressedSize);
+            FileChannel channel = output.getChannel();
+
+            AtomicLong written = new AtomicLong();
+            InstallerOperation operation = InstallerOperation.current();
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int block = 0; block < blockCount; block++) {
+                int blockNumber = block;
+                futures.add(executor.submit(() -> InstallerOperation.callAs(operation, () -> {
+                    decodeBlock(xzFile, blockNumber, channel, written, uncompressedSize, listener);
+                    return null;
+                })));
+            }
+            for (int block = 0; block < blockCount; block++) {
+                futures.get(block).get();
+                if (digest != null) {
+                    digest.update(channel, blockPositions[block], blockSizes[block]);
+                }
+            }
+        } catch (ExecutionException e) {
+            outputFile.delete();
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            outputFile.delete();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Decompression interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+        return uncompressedSize;
+    }
+
+    private static void decodeBlock(File xzFile, int block, FileChannel channel, AtomicLong written,
+                                    long totalSize, ResumableDownloader.ProgressListener listener)
+            throws IOException {
+        try (SeekableXZInputStream in = new SeekableXZInputStream(new SeekableFileInputStream(xzFile))) {
+            in.seekToBlock(block);
+            long position = in.getBlockPos(block);
+            long remaining = in.getBlockSize(block);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (remaining > 0) {
+                InstallerOperation.checkCancelled();
+                int bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (bytesRead == -1) {
+                    throw new IOException("Unexpected end of XZ block " + block);
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+                remaining -= bytesRead;
+                long total = written.addAndGet(bytesRead);
+                if (listener != null) {
+                    listener.onProgress(total, totalSize);
+                }
+            }
+        }
+    }
+
+    static long decodeSequential(File xzFile, File outputFile, long totalSize,
+                                 ResumableDownloader.ProgressListener listener) throws IOException {
+        return decodeSequential(xzFile, outputFile, totalSize, BUFFER_SIZE, listener);
+    }
+
+    static long decodeSequential(File xzFile, File outputFile, long totalSize, int bufferSize,
+                                 ResumableDownloader.ProgressListener listener) throws IOException {
+        return decodeSequential(xzFile, outputFile, totalSize, bufferSize, null, listener);
+    }
+
+    static long decodeSequential(File xzFile, File outputFile, long totalSize, int bufferSize, Sha256 digest,
+                                 ResumableDownloader.ProgressListener listener) throws IOException {
+        long written = 0;
+        try (InputStream fileInputStream = new FileInputStream(xzFile);
+             XZInputStream xzInputStream = new XZInputStream(fileInputStream);
+             FileOutputStream outputStream = new FileOutputStream(outputFile)) {
+
+            byte[] buffer = new byte[bufferSize];
+            int bytesRead;
+            while ((bytesRead = xzInputStream.read(buffer)) != -1) {
+                InstallerOperation.checkCancelled();
+                outputStream.write(buffer, 0, bytesRead);
+                if (digest != null) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+                written += bytesRead;
+                if (listener != null) {
+                    listener.onProgress(written, totalSize);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Decodes the rest of {@code source}, e.g. a picked document's descriptor, straight into
+     * {@code outputFile} without staging the archive. The channel is read sequentially, so
+     * this works for any file descriptor; progress is the compressed bytes consumed out of
+     * the channel's size. Returns the number of bytes written.
+     */
+    public static long decodeChannel(FileChannel source, File outputFile, int bufferSize,
+                                     ResumableDownloader.ProgressListener listener) throws IOException {
+        return decodeChannel(source, outputFile, bufferSize, null, null, listener);
+    }
+
+    /**
+     * Like {@link #decodeChannel(FileChannel, File, int, ResumableDownloader.ProgressListener)},
+     * feeding {@code archiveDigest} with the compressed bytes read and {@code digest} with the
+     * decoded output. Either may be null.
+     */
+    public static long decodeChannel(FileChannel source, File outputFile, int bufferSize, Sha256 archiveDigest,
+                                     Sha256 digest, ResumableDownloader.ProgressListener listener) throws IOException {
+        long start = source.position();
+        long total = source.size() - start;
+        long written = 0;
+        // Not closed: the caller owns the channel
+        InputStream channelIn = Channels.newInputStream(source);
+        InputStream in = new BufferedInputStream(archiveDigest != null ? archiveDigest.wrap(channelIn) : channelIn,
+                bufferSize);
+        try (FileOutputStream outputStream = new FileOutputStream(outputFile)) {
+            XZInputStream xzInputStream = new XZInputStream(in);
+            byte[] buffer = new byte[bufferSize];
+            int bytesRead;
+            while ((bytesRead = xzInputStream.read(buffer)) != -1) {
+                InstallerOperation.checkCancelled();
+                outputStream.write(buffer, 0, bytesRead);
+                if (digest != null) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+                written += bytesRead;
+                if (listener != null) {
+                    listener.onProgress(source.position() - start, total);
+                }
+            }
+        }
+        if (listener != null) {
+            // The index and footer are only consumed by the final read
+            listener.onProgress(source.position() - start, total);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,40 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.File;
+
+/**
+ * What {@link FridaInstaller} needs from the system it runs on. The app supplies the Android
+ * implementation; {@link JvmPlatform} runs the engine on a plain JVM.
+ */
+public interface Platform {
+    /**
+     * Log output, in the shape of {@code android.util.Log}.
+     */
+    interface Logger {
+        void d(String tag, String message);
+        void w(String tag, String message);
+        void w(String tag, String message, Throwable error);
+        void e(String tag, String message);
+        void e(String tag, String message, Throwable error);
+    }
+
+    /** Private storage; the installed server and its store live under it. */
+    File getFilesDir();
+
+    /** Private storage the system may clear. */
+    File getCacheDir();
+
+    /** Shared downloads folder where archives are kept for the user. */
+    File getDownloadsDir();
+
+    /** Working directory frida-server is started in. */
+    File getServerWorkingDir();
+
+    /** ABIs the device can run, preferred first, e.g. {@code arm64-v8a}. */
+    String[] getSupportedAbis();
+
+    Logger getLogger();
+
+    /** Shell that runs commands as root. */
+    RootShell getRootShell();
+}
@@ -0,0 +1,148 @@
+package com.prapps.fridaserverinstaller;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Coalesces byte-level progress into a bounded number of UI updates.
+ *
+ * Producers call {@link #onProgress} as often as they like (every buffer read, from several
+ * threads for segmented downloads). An update is forwarded only when the whole-percent value
+ * has moved by at least {@link #DEFAULT_MIN_PERCENT_STEP} or {@link #DEFAULT_MIN_INTERVAL_MS}
+ * has passed since the last one, so a transfer produces at most about a hundred updates plus
+ * ten per second. Each update carries an exponentially smoothed throughput and the ETA derived
+ * from it.
+ */
+public class ProgressReporter implements ResumableDownloader.ProgressListener {
+    public static final long DEFAULT_MIN_INTERVAL_MS = 100;
+    public static final int DEFAULT_MIN_PERCENT_STEP = 1;
+    /** Weight of the newest rate sample in the moving average. */
+    private static final double SMOOTHING = 0.3;
+    /** Rate samples closer together than this are folded into the next one. */
+    private static final long MIN_SAMPLE_INTERVAL_MS = 50;
+
+    public enum Phase {
+        DOWNLOAD, EXTRACT, COPY
+    }
+
+    public static class Progress {
+        public final Phase phase;
+        public final int percent;
+        public final long bytes;
+        public final long totalBytes;
+        /** Smoothed throughput, or 0 until the first sample has been taken. */
+        public final long bytesPerSecond;
+        /** Estimated time remaining, or -1 when unknown. */
+        public final long etaMs;
+
+        Progress(Phase phase, int percent, long bytes, long totalBytes, long bytesPerSecond, long etaMs) {
+            this.phase = phase;
+            this.percent = percent;
+            this.bytes = bytes;
+            this.totalBytes = totalBytes;
+            this.bytesPerSecond = bytesPerSecond;
+            this.etaMs = etaMs;
+        }
+    }
+
+    public interface Listener {
+        void onProgress(Progress progress);
+    }
+
+    private final Phase phase;
+    private final Listener listener;
+    private final LongSupplier clockMs;
+    private final long minIntervalMs;
+    private final int minPercentStep;
+
+    private long lastEmitMs = -1;
+    private int lastEmitPercent = -1;
+    private long lastEmitBytes = -1;
+    private long highestBytes = -1;
+    private long sampleMs;
+    private long sampleBytes;
+    private double smoothedRate;
+    private int emitted;
+
+    public ProgressReporter(Phase phase, Listener listener) {
+        this(phase, listener, DEFAULT_MIN_INTERVAL_MS, DEFAULT_MIN_PERCENT_STEP, System::currentTimeMillis);
+    }
+
+    ProgressReporter(Phase phase, Listener listener, long minIntervalMs, int minPercentStep, LongSupplier clockMs) {
+        this.phase = phase;
+        this.listener = listener;
+        this.minIntervalMs = minIntervalMs;
+        this.minPercentStep = minPercentStep;
+        this.clockMs = clockMs;
+    }
+
+    @Override
+    public void onProgress(long bytes, long totalBytes) {
+        Progress progress;
+        synchronized (this) {
+            if (bytes < highestBytes) {
+                // Stale report from a concurrent segment that lost the race
+                return;
+            }
+            long now = clockMs.getAsLong();
+            if (highestBytes < 0) {
+                // Baseline at the first report, which may be a resumed offset
+                sampleMs = now;
+                sampleBytes = bytes;
+            }
+            highestBytes = bytes;
+            sample(now, bytes);
+
+            int percent = percentOf(bytes, totalBytes);
+            boolean finished = totalBytes > 0 && bytes >= totalBytes;
+            boolean stepReached = percent - lastEmitPercent >= minPercentStep;
+            boolean intervalReached = lastEmitMs < 0 || now - lastEmitMs >= minIntervalMs;
+            if (bytes == lastEmitBytes || !(finished || stepReached || intervalReached)) {
+                return;
+            }
+            progress = snapshot(percent, bytes, totalBytes);
+            lastEmitMs = now;
+            lastEmitPercent = percent;
+            lastEmitBytes = bytes;
+            emitted++;
+        }
+        listener.onProgress(progress);
+    }
+
+    /**
+     * Number of updates forwarded to the listener so far.
+     */
+    public synchronized int getEmittedCount() {
+        return emitted;
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return Math.round(smoothedRate);
+    }
+
+    private void sample(long now, long bytes) {
+        long elapsed = now - sampleMs;
+        if (elapsed < MIN_SAMPLE_INTERVAL_MS) {
+            return;
+        }
+        double rate = (bytes - sampleBytes) * 1000.0 / elapsed;
+        smoothedRate = smoothedRate == 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * smoothedRate;
+        sampleMs = now;
+        sampleBytes = bytes;
+    }
+
+    private Progress snapshot(int percent, long bytes, long totalBytes) {
+        long rate = Math.round(smoothedRate);
+        long etaMs = -1;
+        if (totalBytes > 0 && rate > 0) {
+            etaMs = Math.max(0, totalBytes - bytes) * 1000 / rate;
+        }
+        return new Progress(phase, percent, bytes, totalBytes, rate, etaMs);
+    }
+
+    private static int percentOf(long bytes, long totalBytes) {
+        if (totalBytes <= 0) {
+            return 0;
+        }
+        return (int) Math.min(100, bytes * 100 / totalBytes);
+    }
+}
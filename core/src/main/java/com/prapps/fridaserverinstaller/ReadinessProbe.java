@@ -0,0 +1,132 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Locale;
+
+/**
+ * Decides when a freshly launched frida-server is usable, or that it never will be.
+ *
+ * The listen address is probed with TCP connects, retried with a backoff from
+ * {@link #INITIAL_BACKOFF_MS} up to {@link #MAX_BACKOFF_MS}. Meanwhile stderr lines fed to
+ * {@link #onStderr} are matched against messages frida-server prints when it cannot start,
+ * and the process is checked for an early exit. Whichever outcome is known first is returned,
+ * so a healthy start is reported as soon as the port accepts and a broken one without
+ * waiting out the timeout.
+ */
+public class ReadinessProbe {
+    public static final long DEFAULT_TIMEOUT_MS = 15_000;
+    static final long INITIAL_BACKOFF_MS = 20;
+    static final long MAX_BACKOFF_MS = 250;
+    private static final int CONNECT_TIMEOUT_MS = 250;
+
+    /** Lower-case fragments of stderr lines that mean the server will not come up. */
+    private static final String[] FATAL_MESSAGES = {
+            "unable to start",
+            "error binding",
+            "address already in use",
+            "permission denied",
+            "cannot link executable",
+            "not executable",
+            "inaccessible or not found",
+            "segmentation fault",
+            "bad system call",
+    };
+
+    public static class Result {
+        public final boolean ready;
+        public final long elapsedMs;
+        /** Why the server is not ready, or null if it is. */
+        public final String failure;
+
+        Result(boolean ready, long elapsedMs, String failure) {
+            this.ready = ready;
+            this.elapsedMs = elapsedMs;
+            this.failure = failure;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private String fatalLine;
+
+    /**
+     * @param host the address the server listens on; the wildcard address is probed on loopback
+     */
+    public ReadinessProbe(String host, int port) {
+        this.host = "0.0.0.0".equals(host) || "::".equals(host) ? "127.0.0.1" : host;
+        this.port = port;
+    }
+
+    public static boolean isFatal(String line) {
+        String lower = line.toLowerCase(Locale.ROOT);
+        for (String message : FATAL_MESSAGES) {
+            if (lower.contains(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Feeds a stderr line from the server. A fatal one ends {@link #await} straight away.
+     */
+    public synchronized void onStderr(String line) {
+        if (fatalLine == null && isFatal(line)) {
+            fatalLine = line;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the server accepts connections, reports a fatal error, exits, or
+     * {@code timeoutMs} passes.
+     */
+    public Result await(Process process, long timeoutMs) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMs * 1_000_000L;
+        long backoff = INITIAL_BACKOFF_MS;
+        while (true) {
+            String fatal = getFatalLine();
+            if (fatal != null) {
+                return new Result(false, elapsedMs(start), fatal);
+            }
+            if (!process.isAlive()) {
+                return new Result(false, elapsedMs(start),
+                        "Server exited with " + ServerSupervisor.describeExitCode(process.exitValue()));
+            }
+            if (accepts()) {
+                return new Result(true, elapsedMs(start), null);
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return new Result(false, elapsedMs(start),
+                        "Server not listening on " + host + ":" + port + " after " + timeoutMs + " ms");
+            }
+            synchronized (this) {
+                if (fatalLine == null) {
+                    wait(Math.min(backoff, (remainingNanos + 999_999) / 1_000_000L));
+                }
+            }
+            backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+        }
+    }
+
+    private synchronized String getFatalLine() {
+        return fatalLine;
+    }
+
+    private boolean accepts() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+}
@@ -0,0 +1,293 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Persistent cache for GitHub release metadata responses.
+ *
+ * Each URL is stored as a JSON body file plus a small properties file with its ETag,
+ * Last-Modified, fetch time and body digest. Bodies are streamed to disk and parsed from
+ * there, so a large response is never held in memory as a String.
+ *
+ * Entries younger than the TTL are served without touching the network; older ones are
+ * revalidated with {@code If-None-Match} / {@code If-Modified-Since}, where a 304 only
+ * refreshes the timestamp (and does not count against the GitHub rate limit).
+ */
+public class ReleaseMetadataCache {
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000;
+
+    private final OkHttpClient httpClient;
+    private final File cacheDir;
+    private volatile long ttlMs = DEFAULT_TTL_MS;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger updates = new AtomicInteger();
+
+    public static class Entry {
+        public final File bodyFile;
+        public final String etag;
+        public final String lastModified;
+        public final long fetchedAt;
+        public final String sha256;
+        public final String link;
+
+        Entry(File bodyFile, String etag, String lastModified, long fetchedAt, String sha256, String link) {
+            this.bodyFile = bodyFile;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+            this.sha256 = sha256;
+            this.link = link;
+        }
+
+        /**
+         * The {@code rel="next"} target of the response's {@code Link} header, or null on the last page.
+         */
+        public String getNextPageUrl() {
+            return nextLink(link);
+        }
+
+        public Reader openReader() throws IOException {
+            return new BufferedReader(new InputStreamReader(new FileInputStream(bodyFile), StandardCharsets.UTF_8));
+        }
+    }
+
+    public ReleaseMetadataCache(OkHttpClient httpClient, File cacheDir) {
+        this.httpClient = httpClient;
+        this.cacheDir = cacheDir;
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+    }
+
+    public void setTtlMs(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    public boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.fetchedAt < ttlMs;
+    }
+
+    /**
+     * Returns the cached entry for {@code url}, or null. Counts as a hit or a miss.
+     */
+    public Entry get(String url) {
+        Entry entry = read(url);
+        if (entry != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Returns an entry for {@code url}: the cached one while fresh, otherwise the result of
+     * revalidating it. If revalidation fails the stale entry is used rather than failing.
+     */
+    public Entry getOrRevalidate(String url) throws IOException {
+        Entry cached = get(url);
+        if (cached == null) {
+            return fetch(url);
+        }
+        if (isFresh(cached)) {
+            return cached;
+        }
+        try {
+            Entry updated = revalidate(url, cached);
+            return updated != null ? updated : read(url);
+        } catch (IOException e) {
+            return cached;
+        }
+    }
+
+    /**
+     * Unconditional GET that stores the response.
+     */
+    public Entry fetch(String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Failed to fetch " + url + ": " + response.code());
+            }
+            return store(url, response);
+        }
+    }
+
+    /**
+     * Conditional GET against a cached entry.
+     *
+     * @return the new entry if the remote content changed, or null if it is unchanged
+     */
+    public Entry revalidate(String url, Entry cached) throws IOException {
+        Request.Builder builder = new Request.Builder().url(url);
+        if (cached.etag != null) {
+            builder.header("If-None-Match", cached.etag);
+        }
+        if (cached.lastModified != null) {
+            builder.header("If-Modified-Since", cached.lastModified);
+        }
+
+        try (Response response = httpClient.newCall(builder.build()).execute()) {
+            long now = System.currentTimeMillis();
+            if (response.code() == 304) {
+                notModified.incrementAndGet();
+                writeMeta(url, new Entry(cached.bodyFile, cached.etag, cached.lastModified, now, cached.sha256, cached.link));
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Failed to revalidate " + url + ": " + response.code());
+            }
+            Entry stored = store(url, response);
+            if (stored.sha256.equals(cached.sha256)) {
+                notModified.incrementAndGet();
+                return null;
+            }
+            updates.incrementAndGet();
+            return stored;
+        }
+    }
+
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    public int getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    public int getUpdateCount() {
+        return updates.get();
+    }
+
+    public String getStats() {
+        return "hits=" + hits.get() + " misses=" + misses.get()
+                + " notModified=" + notModified.get() + " updates=" + updates.get();
+    }
+
+    private synchronized Entry read(String url) {
+        String key = keyFor(url);
+        File bodyFile = new File(cacheDir, key + ".json");
+        File metaFile = new File(cacheDir, key + ".meta");
+        if (!bodyFile.exists() || !metaFile.exists()) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(metaFile)) {
+            Properties meta = new Properties();
+            meta.load(in);
+            if (!url.equals(meta.getProperty("url"))) {
+                return null;
+            }
+            return new Entry(bodyFile, meta.getProperty("etag"), meta.getProperty("lastModified"),
+                    Long.parseLong(meta.getProperty("fetchedAt", "0")), meta.getProperty("sha256", ""),
+                    meta.getProperty("link"));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Streams the response body to the cache, hashing it on the way, and records its metadata.
+     * The body goes to a private temp file without holding the lock, so a slow revalidation
+     * does not block readers; only the rename and metadata write are synchronized.
+     */
+    private Entry store(String url, Response response) throws IOException {
+        String key = keyFor(url);
+        File bodyTemp = File.createTempFile(key, ".json.tmp", cacheDir);
+
+        Sha256 digest = new Sha256();
+        try (InputStream in = response.body().byteStream();
+             OutputStream out = digest.wrap(new FileOutputStream(bodyTemp))) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException e) {
+            bodyTemp.delete();
+            throw e;
+        }
+
+        Entry entry = new Entry(new File(cacheDir, key + ".json"), response.header("ETag"),
+                response.header("Last-Modified"), System.currentTimeMillis(), digest.hex(), response.header("Link"));
+        synchronized (this) {
+            if (!bodyTemp.renameTo(entry.bodyFile)) {
+                bodyTemp.delete();
+                throw new IOException("Failed to write release cache entry");
+            }
+            writeMeta(url, entry);
+        }
+        return entry;
+    }
+
+    private synchronized void writeMeta(String url, Entry entry) throws IOException {
+        File metaFile = new File(cacheDir, keyFor(url) + ".meta");
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        if (entry.etag != null) {
+            meta.setProperty("etag", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            meta.setProperty("lastModified", entry.lastModified);
+        }
+        meta.setProperty("fetchedAt", Long.toString(entry.fetchedAt));
+        meta.setProperty("sha256", entry.sha256);
+        if (entry.link != null) {
+            meta.setProperty("link", entry.link);
+        }
+        try (FileOutputStream out = new FileOutputStream(metaFile)) {
+            meta.store(out, "Release metadata cache entry");
+        }
+    }
+
+    /**
+     * Extracts the {@code rel="next"} URL from a GitHub {@code Link} header such as
+     * {@code <https://api.github.com/...&page=2>; rel="next", <...&page=9>; rel="last"}.
+     */
+    static String nextLink(String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        for (String part : linkHeader.split(",")) {
+            String[] segments = part.split(";");
+            String target = segments[0].trim();
+            if (!target.startsWith("<") || !target.endsWith(">")) {
+                continue;
+            }
+            for (int i = 1; i < segments.length; i++) {
+                String param = segments[i].trim().replace(" ", "");
+                if (param.equals("rel=\"next\"") || param.equals("rel=next")) {
+                    return target.substring(1, target.length() - 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String keyFor(String url) {
+        return Sha256.of(url.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+}
@@ -0,0 +1,155 @@
+package com.prapps.fridaserverinstaller;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass parser for GitHub release JSON built on Gson's {@link JsonReader}.
+ *
+ * Only the fields the installer uses are kept, and of each release's assets only the Android
+ * {@code frida-server} archives survive, indexed by architecture. Everything else (uploader
+ * objects, other platforms, gadgets, devkits, ...) is skipped without being materialised.
+ */
+public final class ReleaseParser {
+    private static final String SERVER_PREFIX = "frida-server-";
+    private static final String ANDROID_MARKER = "-android-";
+    private static final String XZ_SUFFIX = ".xz";
+
+    private ReleaseParser() {
+    }
+
+    /**
+     * Parses a {@code /releases} array, dropping releases without Android server assets.
+     */
+    public static List<FridaRelease> parseReleases(Reader source) throws IOException {
+        List<FridaRelease> releases = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                FridaRelease release = readRelease(reader);
+                if (release != null && !release.serverAssets.isEmpty()) {
+                    releases.add(release);
+                }
+            }
+            reader.endArray();
+        }
+        return releases;
+    }
+
+    /**
+     * Parses a single release object such as {@code /releases/latest}.
+     */
+    public static FridaRelease parseRelease(Reader source) throws IOException {
+        try (JsonReader reader = new JsonReader(source)) {
+            return readRelease(reader);
+        }
+    }
+
+    /**
+     * Extracts the architecture from {@code frida-server-<version>-android-<arch>.xz}, or returns
+     * null for any other asset name.
+     */
+    static String serverAssetArch(String assetName) {
+        if (!assetName.startsWith(SERVER_PREFIX) || !assetName.endsWith(XZ_SUFFIX)) {
+            return null;
+        }
+        int marker = assetName.lastIndexOf(ANDROID_MARKER);
+        if (marker < SERVER_PREFIX.length()) {
+            return null;
+        }
+        return assetName.substring(marker + ANDROID_MARKER.length(), assetName.length() - XZ_SUFFIX.length());
+    }
+
+    private static FridaRelease readRelease(JsonReader reader) throws IOException {
+        String tagName = null;
+        String name = null;
+        String publishedAt = null;
+        boolean prerelease = false;
+        Map<String, ServerAsset> serverAssets = new HashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "tag_name":
+                    tagName = nextStringOrNull(reader);
+                    break;
+                case "name":
+                    name = nextStringOrNull(reader);
+                    break;
+                case "published_at":
+                    publishedAt = nextStringOrNull(reader);
+                    break;
+                case "prerelease":
+                    prerelease = reader.nextBoolean();
+                    break;
+                case "assets":
+                    readAssets(reader, serverAssets);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (tagName == null) {
+            return null;
+        }
+        return new FridaRelease(tagName, name != null ? name : tagName,
+                publishedAt != null ? publishedAt : "", prerelease, serverAssets);
+    }
+
+    private static void readAssets(JsonReader reader, Map<String, ServerAsset> serverAssets)
+            throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            String url = null;
+            long size = -1;
+            String digest = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = nextStringOrNull(reader);
+                        break;
+                    case "browser_download_url":
+                        url = nextStringOrNull(reader);
+                        break;
+                    case "size":
+                        size = reader.nextLong();
+                        break;
+                    case "digest":
+                        digest = nextStringOrNull(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            String arch = name != null ? serverAssetArch(name) : null;
+            if (arch != null && url != null) {
+                serverAssets.put(arch, new ServerAsset(name, url, size, digest));
+            }
+        }
+        reader.endArray();
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
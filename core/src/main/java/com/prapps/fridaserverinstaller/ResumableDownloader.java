@@ -0,0 +1,518 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Downloads that survive dropped connections.
+ *
+ * Bytes are journaled to a {@code .part} file next to the target, with a small
+ * {@code .part.meta} file recording the URL, validator (ETag / Last-Modified) and expected
+ * length. When the connection drops, the download is retried with {@code Range} and
+ * {@code If-Range} after an exponential backoff with jitter. A later run picks up the same
+ * journal and only fetches the missing tail.
+ */
+public class ResumableDownloader {
+    public static final int DEFAULT_MAX_ATTEMPTS = 6;
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 15_000;
+
+    private final OkHttpClient httpClient;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long baseDelayMs = DEFAULT_BASE_DELAY_MS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+
+    public interface ProgressListener {
+        void onProgress(long bytesDownloaded, long totalBytes);
+    }
+
+    public ResumableDownloader(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public ResumableDownloader setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public ResumableDownloader setBackoff(long baseDelayMs, long maxDelayMs) {
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        return this;
+    }
+
+    public static File partFileFor(File target) {
+        return new File(target.getParentFile(), target.getName() + ".part");
+    }
+
+    /**
+     * Downloads {@code url} into {@code target}, resuming any journal left by an earlier attempt.
+     */
+    public File download(String url, File target, ProgressListener listener) throws IOException {
+        return download(url, target, null, listener);
+    }
+
+    /**
+     * Like {@link #download(String, File, ProgressListener)}, feeding {@code digest} (if not
+     * null) with the whole file, including bytes replayed from an earlier attempt's journal.
+     */
+    public File download(String url, File target, Sha256 digest, ProgressListener listener) throws IOException {
+        try (ResumableInputStream in = open(url, target)) {
+            InputStream source = digest != null ? digest.wrap(in) : in;
+            byte[] buffer = new byte[8192];
+            while (source.read(buffer) != -1) {
+                if (listener != null) {
+                    listener.onProgress(in.getPosition(), in.getTotalLength());
+                }
+            }
+            in.commit();
+        }
+        return target;
+    }
+
+    /**
+     * Opens a stream over the whole remote file that transparently resumes after connection
+     * drops. Bytes already journaled from a previous attempt are replayed from disk first, so
+     * consumers (such as the XZ decoder) always see the file from byte zero. Call
+     * {@link ResumableInputStream#commit()} once the stream is exhausted to move the journal
+     * to {@code target}.
+     */
+    public ResumableInputStream open(String url, File target) throws IOException {
+        return new ResumableInputStream(url, target);
+    }
+
+    long backoffDelayMs(int failures) {
+        long exponential = baseDelayMs << Math.min(failures - 1, 20);
+        long capped = Math.min(maxDelayMs, exponential);
+        // "Equal jitter": keep half of the delay, randomise the other half
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    public class ResumableInputStream extends InputStream {
+        private final String url;
+        private final File target;
+        private final File partFile;
+        private final File metaFile;
+
+        private String validator;
+        private long totalLength = -1;
+        private long position;
+        private long journalLength;
+        private long resumedFrom;
+
+        private InputStream replay;
+        private Response response;
+        private InputStream network;
+        private OutputStream journal;
+        private boolean finished;
+        private boolean closed;
+
+        ResumableInputStream(String url, File target) throws IOException {
+            this.url = url;
+            this.target = target;
+            this.partFile = partFileFor(target);
+            this.metaFile = new File(target.getParentFile(), target.getName() + ".part.meta");
+            loadJournal();
+            connectWithRetry();
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public long getTotalLength() {
+            return totalLength;
+        }
+
+        /**
+         * Number of bytes that came from the journal of an earlier attempt instead of the network.
+         */
+        public long getResumedFrom() {
+            return resumedFrom;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (length == 0) {
+                return 0;
+            }
+
+            if (replay != null) {
+                int n = replay.read(buffer, offset, (int) Math.min(length, journalLength - position));
+                if (n > 0 && position + n <= journalLength) {
+                    position += n;
+                    if (position == journalLength) {
+                        replay.close();
+                        replay = null;
+                    }
+                    return n;
+                }
+                replay.close();
+                replay = null;
+            }
+
+            int failures = 0;
+            while (true) {
+                if (finished) {
+                    return -1;
+                }
+                try {
+                    if (network == null) {
+                        connect(false);
+                        continue;
+                    }
+                    int n = network.read(buffer, offset, length);
+                    if (n == -1) {
+                        if (totalLength < 0 || journalLength == totalLength) {
+                            finished = true;
+                            closeNetwork();
+                            return -1;
+                        }
+                        throw new IOException("Connection closed at " + journalLength + " of " + totalLength + " bytes");
+                    }
+                    journal.write(buffer, offset, n);
+                    journalLength += n;
+                    position += n;
+                    return n;
+                } catch (IOException e) {
+                    // Socket timeouts are InterruptedIOExceptions too, so check the thread instead
+                    if (e instanceof RemoteChangedException
+                            || Thread.currentThread().isInterrupted() || InstallerOperation.isCurrentCancelled()) {
+                        throw e;
+                    }
+                    failures++;
+                    if (failures >= maxAttempts) {
+                        throw e;
+                    }
+                    closeNetwork();
+                    sleepBeforeRetry(failures, e);
+                }
+            }
+        }
+
+        /**
+         * Moves the completed journal to the target file and drops the metadata.
+         */
+        public File commit() throws IOException {
+            if (!finished) {
+                throw new IOException("Download has not finished");
+            }
+            close();
+            if (target.exists()) {
+                target.delete();
+            }
+            if (!partFile.renameTo(target)) {
+                throw new IOException("Failed to move " + partFile.getName() + " to " + target.getName());
+            }
+            metaFile.delete();
+            return target;
+        }
+
+        /**
+         * Deletes the journal so the next attempt starts from scratch.
+         */
+        public void discard() {
+            try {
+                close();
+            } catch (IOException ignored) {
+            }
+            partFile.delete();
+            metaFile.delete();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (replay != null) {
+                replay.close();
+                replay = null;
+            }
+            closeNetwork();
+        }
+
+        private void loadJournal() {
+            if (!partFile.exists() || !metaFile.exists()) {
+                partFile.delete();
+                metaFile.delete();
+                return;
+            }
+            Properties meta = new Properties();
+            try (FileInputStream in = new FileInputStream(metaFile)) {
+                meta.load(in);
+            } catch (IOException e) {
+                partFile.delete();
+                metaFile.delete();
+                return;
+            }
+            if (!url.equals(meta.getProperty("url"))) {
+                partFile.delete();
+                metaFile.delete();
+                return;
+            }
+            validator = meta.getProperty("validator");
+            totalLength = Long.parseLong(meta.getProperty("length", "-1"));
+            journalLength = partFile.length();
+        }
+
+        private void saveJournalMeta() throws IOException {
+            Properties meta = new Properties();
+            meta.setProperty("url", url);
+            if (validator != null) {
+                meta.setProperty("validator", validator);
+            }
+            meta.setProperty("length", Long.toString(totalLength));
+            try (FileOutputStream out = new FileOutputStream(metaFile)) {
+                meta.store(out, "Partial download journal");
+            }
+        }
+
+        private void connectWithRetry() throws IOException {
+            int failures = 0;
+            while (true) {
+                try {
+                    connect(true);
+                    return;
+                } catch (IOException e) {
+                    // Socket timeouts are InterruptedIOExceptions too, so check the thread instead
+                    if (e instanceof RemoteChangedException
+                            || Thread.currentThread().isInterrupted() || InstallerOperation.isCurrentCancelled()) {
+                        throw e;
+                    }
+                    failures++;
+                    if (failures >= maxAttempts) {
+                        throw e;
+                    }
+                    sleepBeforeRetry(failures, e);
+                }
+            }
+        }
+
+        /**
+         * @param initial true for the first connection of this stream, when nothing has been
+         *                handed to the consumer yet and a stale journal can still be thrown away
+         */
+        private void connect(boolean initial) throws IOException {
+            Request.Builder builder = new Request.Builder().url(url);
+            if (journalLength > 0) {
+                builder.header("Range", "bytes=" + journalLength + "-");
+                if (validator != null) {
+                    builder.header("If-Range", validator);
+                }
+            }
+
+            Response candidate = httpClient.newCall(builder.build()).execute();
+            int code = candidate.code();
+
+            if (code == 416 && journalLength > 0 && journalLength == totalLength) {
+                // Everything is already in the journal
+                candidate.close();
+                finished = true;
+                startReplayIfNeeded(initial);
+                return;
+            }
+
+            if (code == 206) {
+                String newValidator = validatorOf(candidate);
+                String contentRange = candidate.header("Content-Range");
+                boolean changed = validator != null && newValidator != null && !validator.equals(newValidator);
+                if (changed || contentRangeStart(contentRange) != journalLength) {
+                    candidate.close();
+                    restartOrFail(initial, changed
+                            ? "Remote file changed during download"
+                            : "Unexpected Content-Range " + contentRange + ", requested bytes " + journalLength + "-");
+                    return;
+                }
+                long length = totalLengthFromContentRange(contentRange);
+                if (length > 0) {
+                    totalLength = length;
+                }
+                if (newValidator != null) {
+                    validator = newValidator;
+                }
+                response = candidate;
+                network = candidate.body().byteStream();
+                openJournal(true);
+                saveJournalMeta();
+                startReplayIfNeeded(initial);
+                return;
+            }
+
+            if (code == 200) {
+                String newValidator = validatorOf(candidate);
+                if (!initial && position > 0) {
+                    // The server ignored the range. That is only usable if the content is unchanged,
+                    // in which case the bytes the consumer already has are skipped.
+                    if (validator != null && newValidator != null && !validator.equals(newValidator)) {
+                        candidate.close();
+                        throw new RemoteChangedException("Remote file changed during download");
+                    }
+                    InputStream body = candidate.body().byteStream();
+                    skipFully(body, journalLength);
+                    response = candidate;
+                    network = body;
+                    return;
+                }
+
+                // Fresh start: the journal (if any) is stale or the server cannot resume
+                validator = newValidator;
+                totalLength = candidate.body().contentLength();
+                journalLength = 0;
+                response = candidate;
+                network = candidate.body().byteStream();
+                openJournal(false);
+                saveJournalMeta();
+                return;
+            }
+
+            candidate.close();
+            if (code == 416) {
+                // Journal no longer matches the remote file
+                restartOrFail(initial, "Remote file changed during download");
+                return;
+            }
+            throw new IOException("Failed to download asset: " + code);
+        }
+
+        /**
+         * Drops a journal that no longer matches the remote file. Before the consumer has seen
+         * any bytes the download simply starts over; afterwards the bytes it already consumed
+         * cannot be taken back, so the stream fails for good instead of retrying.
+         */
+        private void restartOrFail(boolean initial, String message) throws IOException {
+            journalLength = 0;
+            validator = null;
+            partFile.delete();
+            metaFile.delete();
+            if (!initial) {
+                throw new RemoteChangedException(message);
+            }
+            connect(true);
+        }
+
+        private void startReplayIfNeeded(boolean initial) throws IOException {
+            if (initial && journalLength > 0) {
+                resumedFrom = journalLength;
+                replay = new FileInputStream(partFile);
+            }
+        }
+
+        private void openJournal(boolean append) throws IOException {
+            if (journal == null || !append) {
+                if (journal != null) {
+                    journal.close();
+                }
+                journal = new FileOutputStream(partFile, append);
+            }
+        }
+
+        private void closeNetwork() throws IOException {
+            if (response != null) {
+                response.close();
+                response = null;
+            }
+            network = null;
+            if (journal != null && (finished || closed)) {
+                journal.close();
+                journal = null;
+            }
+        }
+
+        private void sleepBeforeRetry(int failures, IOException cause) throws IOException {
+            try {
+                Thread.sleep(backoffDelayMs(failures));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                InterruptedIOException interrupted = new InterruptedIOException("Download interrupted");
+                interrupted.initCause(cause);
+                throw interrupted;
+            }
+        }
+    }
+
+    private static String validatorOf(Response response) {
+        String etag = response.header("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    private static long contentRangeStart(String contentRange) {
+        // Format: "bytes start-end/total"
+        if (contentRange == null || !contentRange.trim().startsWith("bytes ")) {
+            return -1;
+        }
+        String value = contentRange.trim().substring("bytes ".length());
+        int dash = value.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.substring(0, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long totalLengthFromContentRange(String contentRange) {
+        // Format: "bytes start-end/total"
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = count;
+        while (remaining > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n == -1) {
+                throw new IOException("Connection closed while skipping to offset " + count);
+            }
+            remaining -= n;
+        }
+    }
+
+    /**
+     * The remote file no longer matches bytes that were already handed to the consumer, so
+     * retrying could only splice two different files together.
+     */
+    private static class RemoteChangedException extends IOException {
+        RemoteChangedException(String message) {
+            super(message);
+        }
+    }
+}
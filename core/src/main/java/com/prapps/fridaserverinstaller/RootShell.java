@@ -0,0 +1,273 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-lived shell (normally {@code su}) that executes commands one after another.
+ *
+ * Forking {@code su} costs hundreds of milliseconds plus a policy check on Magisk devices,
+ * so a single process is kept for the whole app run. Each command is followed by a sentinel
+ * line carrying its exit code, which is how output from consecutive commands is told apart.
+ * If the shell dies or a command times out, the process is discarded and a fresh one is
+ * spawned for the next command.
+ */
+public class RootShell {
+    public static final long DEFAULT_TIMEOUT_MS = 10_000;
+
+    private static RootShell instance;
+
+    private final String shellCommand;
+    private final String marker = "__FSI_" + UUID.randomUUID().toString().replace("-", "") + "__";
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    private Process process;
+    private OutputStream stdin;
+    private LinkedBlockingQueue<String> stdoutLines;
+    private LinkedBlockingQueue<String> stderrLines;
+    private int spawnCount;
+
+    public static class Result {
+        public final int exitCode;
+        public final List<String> stdout;
+        public final List<String> stderr;
+        /** The deadline passed before the command finished. */
+        public final boolean timedOut;
+        /**
+         * The shell exited before the command finished (e.g. {@code su} was denied);
+         * {@link #exitCode} is then the shell's own exit code.
+         */
+        public final boolean shellExited;
+
+        Result(int exitCode, List<String> stdout, List<String> stderr, boolean timedOut, boolean shellExited) {
+            this.exitCode = exitCode;
+            this.stdout = Collections.unmodifiableList(stdout);
+            this.stderr = Collections.unmodifiableList(stderr);
+            this.timedOut = timedOut;
+            this.shellExited = shellExited;
+        }
+
+        public boolean isSuccess() {
+            return !timedOut && !shellExited && exitCode == 0;
+        }
+
+        public String firstLine() {
+            return stdout.isEmpty() ? null : stdout.get(0);
+        }
+    }
+
+    public RootShell(String shellCommand) {
+        this.shellCommand = shellCommand;
+    }
+
+    /**
+     * Returns the app-wide root shell. The {@code su} process is spawned lazily on the first command.
+     */
+    public static synchronized RootShell getInstance() {
+        if (instance == null) {
+            instance = new RootShell("su");
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a separate shell process, for a long-running command such as frida-server that
+     * must not hold up the shared one.
+     */
+    public Process spawn() throws IOException {
+        return Runtime.getRuntime().exec(shellCommand);
+    }
+
+    public Result run(String command) throws IOException, InterruptedException {
+        return run(command, DEFAULT_TIMEOUT_MS);
+    }
+
+    public Result run(String command, long timeoutMs) throws IOException, InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            ensureAlive();
+
+            String script = command + "\n"
+                    + "echo \"" + marker + " $?\"\n"
+                    + "echo \"" + marker + "\" >&2\n";
+            try {
+                stdin.write(script.getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+            } catch (IOException e) {
+                // The shell died between commands; retry once on a fresh process
+                destroyProcess();
+                ensureAlive();
+                stdin.write(script.getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            List<String> stdout = new ArrayList<>();
+            List<String> stderr = new ArrayList<>();
+
+            Integer exitCode = null;
+            while (exitCode == null) {
+                String line = poll(stdoutLines, deadline);
+                if (line == null) {
+                    return abandon(-1, stdout, stderr);
+                }
+                int markerIndex = line.indexOf(marker);
+                if (markerIndex >= 0) {
+                    if (markerIndex > 0) {
+                        stdout.add(line.substring(0, markerIndex));
+                    }
+                    exitCode = parseExitCode(line.substring(markerIndex + marker.length()).trim());
+                } else {
+                    stdout.add(line);
+                }
+            }
+
+            while (true) {
+                String line = poll(stderrLines, deadline);
+                if (line == null) {
+                    return abandon(exitCode, stdout, stderr);
+                }
+                int markerIndex = line.indexOf(marker);
+                if (markerIndex >= 0) {
+                    if (markerIndex > 0) {
+                        stderr.add(line.substring(0, markerIndex));
+                    }
+                    break;
+                }
+                stderr.add(line);
+            }
+
+            return new Result(exitCode, stdout, stderr, false, false);
+        } catch (InterruptedException e) {
+            // The command's output is still pending; start clean next time
+            destroyProcess();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards the shell after {@link #poll} gave up, telling a dead shell apart from a
+     * command that ran past its deadline.
+     */
+    private Result abandon(int exitCode, List<String> stdout, List<String> stderr) {
+        Process dead = process;
+        destroyProcess();
+        if (dead != null && !dead.isAlive()) {
+            return new Result(dead.exitValue(), stdout, stderr, false, true);
+        }
+        return new Result(exitCode, stdout, stderr, true, false);
+    }
+
+    /**
+     * Number of shell processes spawned so far. Stays at 1 while the shell is healthy.
+     */
+    public int getSpawnCount() {
+        return spawnCount;
+    }
+
+    public boolean isAlive() {
+        lock.lock();
+        try {
+            return process != null && process.isAlive();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            if (process != null && process.isAlive()) {
+                try {
+                    stdin.write("exit\n".getBytes(StandardCharsets.UTF_8));
+                    stdin.flush();
+                    process.waitFor(500, TimeUnit.MILLISECONDS);
+                } catch (IOException | InterruptedException ignored) {
+                }
+            }
+            destroyProcess();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureAlive() throws IOException {
+        if (process != null && process.isAlive()) {
+            return;
+        }
+        destroyProcess();
+
+        process = Runtime.getRuntime().exec(shellCommand);
+        stdin = process.getOutputStream();
+        stdoutLines = new LinkedBlockingQueue<>();
+        stderrLines = new LinkedBlockingQueue<>();
+        startPump(process.getInputStream(), stdoutLines, "RootShell-stdout");
+        startPump(process.getErrorStream(), stderrLines, "RootShell-stderr");
+        spawnCount++;
+    }
+
+    private void destroyProcess() {
+        if (process != null) {
+            process.destroy();
+            process = null;
+            stdin = null;
+        }
+    }
+
+    private static void startPump(InputStream stream, LinkedBlockingQueue<String> sink, String name) {
+        Thread pump = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    sink.add(line);
+                }
+            } catch (IOException ignored) {
+                // Stream closed because the shell went away
+            }
+        }, name);
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    /**
+     * Next line from {@code queue}, or null once the deadline passes or the shell has exited
+     * with nothing left to read.
+     */
+    private String poll(LinkedBlockingQueue<String> queue, long deadline) throws InterruptedException {
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            String line = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)), TimeUnit.NANOSECONDS);
+            if (line != null) {
+                return line;
+            }
+            // Shell exited (e.g. "su" was denied) and nothing is left to read
+            if (process == null || (!process.isAlive() && queue.isEmpty())) {
+                return null;
+            }
+        }
+    }
+
+    private static int parseExitCode(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fetches one file over several parallel HTTP range requests.
+ *
+ * The target is preallocated and each segment writes at its own offset with positional
+ * {@link FileChannel} writes, so segments never wait on each other. Progress from all
+ * segments is summed and reported from the calling thread. Servers that do not advertise
+ * {@code Accept-Ranges: bytes} (or files too small to be worth splitting) fall back to a
+ * single {@link ResumableDownloader} stream.
+ */
+public class SegmentedDownloader {
+    public static final int DEFAULT_SEGMENTS = 4;
+    public static final long MIN_SEGMENT_SIZE = 256 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 100;
+    private static final int MAX_SEGMENT_ATTEMPTS = 5;
+
+    private final OkHttpClient httpClient;
+    private final ResumableDownloader fallback;
+
+    public SegmentedDownloader(OkHttpClient httpClient, ResumableDownloader fallback) {
+        this.httpClient = httpClient;
+        this.fallback = fallback;
+    }
+
+    public File download(String url, File target, int segments, ResumableDownloader.ProgressListener listener)
+            throws IOException {
+        return download(url, target, segments, null, listener);
+    }
+
+    /**
+     * Like {@link #download(String, File, int, ResumableDownloader.ProgressListener)}, feeding
+     * {@code digest} (if not null) with the whole file. Segments finish out of order and
+     * SHA-256 cannot be split between them, so the calling thread re-reads each segment from
+     * {@code target}, in order, once it is complete, while later ones are still downloading.
+     * Only the single-connection fallback digests the bytes as they arrive.
+     */
+    public File download(String url, File target, int segments, Sha256 digest,
+                         ResumableDownloader.ProgressListener listener) throws IOException {
+        Probe probe = segments > 1 ? probe(url) : null;
+        if (probe == null || !probe.acceptsRanges || probe.length < MIN_SEGMENT_SIZE * 2) {
+            return fallback.download(url, target, digest, listener);
+        }
+
+        int count = (int) Math.min(segments, probe.length / MIN_SEGMENT_SIZE);
+        long segmentSize = (probe.length + count - 1) / count;
+        AtomicLong downloaded = new AtomicLong();
+        File partFile = ResumableDownloader.partFileFor(target);
+
+        ExecutorService executor = Executors.newFixedThreadPool(count, runnable -> {
+            Thread thread = new Thread(runnable, "SegmentedDownloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+            file.setLength(probe.length);
+            FileChannel channel = file.getChannel();
+
+            InstallerOperation operation = InstallerOperation.current();
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long start = i * segmentSize;
+                long end = Math.min(probe.length, start + segmentSize) - 1;
+                futures.add(executor.submit(() -> InstallerOperation.callAs(operation, () -> {
+                    fetchSegment(probe, channel, start, end, downloaded);
+                    return null;
+                })));
+            }
+
+            for (int i = 0; i < count; i++) {
+                while (true) {
+                    try {
+                        futures.get(i).get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (listener != null) {
+                            listener.onProgress(downloaded.get(), probe.length);
+                        }
+                    }
+                }
+                if (digest != null) {
+                    long start = i * segmentSize;
+                    digest.update(channel, start, Math.min(probe.length, start + segmentSize) - start);
+                }
+            }
+            if (listener != null) {
+                listener.onProgress(downloaded.get(), probe.length);
+            }
+        } catch (ExecutionException e) {
+            partFile.delete();
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            partFile.delete();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (target.exists()) {
+            target.delete();
+        }
+        if (!partFile.renameTo(target)) {
+            throw new IOException("Failed to move " + partFile.getName() + " to " + target.getName());
+        }
+        return target;
+    }
+
+    private void fetchSegment(Probe probe, FileChannel channel, long start, long end, AtomicLong downloaded)
+            throws IOException, InterruptedException {
+        long position = start;
+        int failures = 0;
+        byte[] buffer = new byte[16 * 1024];
+
+        while (position <= end) {
+            long attemptStart = position;
+            Request.Builder builder = new Request.Builder()
+                    .url(probe.url)
+                    .header("Range", "bytes=" + position + "-" + end);
+            if (probe.validator != null) {
+                builder.header("If-Range", probe.validator);
+            }
+
+            try (Response response = httpClient.newCall(builder.build()).execute()) {
+                if (response.code() != 206) {
+                    throw new IOException("Server did not honour range request: " + response.code());
+                }
+                checkContentRange(response.header("Content-Range"), position, end, probe.length);
+                InputStream in = response.body().byteStream();
+                int n;
+                while (position <= end && (n = in.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                    while (chunk.hasRemaining()) {
+                        position += channel.write(chunk, position);
+                    }
+                    downloaded.addAndGet(n);
+                }
+                if (position <= end) {
+                    throw new EOFException("Segment ended at byte " + position + " of " + start + "-" + end);
+                }
+            } catch (IOException e) {
+                // Only attempts that got nowhere count towards giving up; every retry still backs off
+                if (position > attemptStart) {
+                    failures = 0;
+                }
+                if (Thread.currentThread().isInterrupted() || InstallerOperation.isCurrentCancelled()
+                        || ++failures >= MAX_SEGMENT_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(fallback.backoffDelayMs(failures));
+            }
+        }
+    }
+
+    /**
+     * Rejects a 206 whose {@code Content-Range} is not the requested {@code start-end} of a
+     * file of the probed length, since writing it at {@code start} would corrupt the target.
+     */
+    static void checkContentRange(String contentRange, long start, long end, long length) throws IOException {
+        String range = "bytes " + start + "-" + end + "/";
+        String value = contentRange != null ? contentRange.trim() : null;
+        // An unknown total ("*") is allowed; a different one means the file changed
+        if (value == null || !value.startsWith(range)
+                || !(value.endsWith("/*") || value.equals(range + length))) {
+            throw new IOException("Unexpected Content-Range " + contentRange + ", requested " + range + length);
+        }
+    }
+
+    private Probe probe(String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .head()
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                return null;
+            }
+            Probe probe = new Probe();
+            // Use the post-redirect URL so segments don't each repeat the redirect
+            probe.url = response.request().url().toString();
+            probe.acceptsRanges = "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+            String length = response.header("Content-Length");
+            probe.length = length != null ? Long.parseLong(length) : -1;
+            String etag = response.header("ETag");
+            probe.validator = etag != null && !etag.startsWith("W/") ? etag : response.header("Last-Modified");
+            return probe;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class Probe {
+        String url;
+        boolean acceptsRanges;
+        long length;
+        String validator;
+    }
+}
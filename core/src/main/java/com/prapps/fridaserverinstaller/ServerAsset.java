@@ -0,0 +1,19 @@
+package com.prapps.fridaserverinstaller;
+
+/**
+ * One Android frida-server archive attached to a {@link FridaRelease}.
+ */
+public class ServerAsset {
+    public final String name;
+    public final String downloadUrl;
+    public final long size;
+    // e.g. "sha256:<hex>", null for releases published before GitHub exposed digests
+    public final String digest;
+
+    public ServerAsset(String name, String downloadUrl, long size, String digest) {
+        this.name = name;
+        this.downloadUrl = downloadUrl;
+        this.size = size;
+        this.digest = digest;
+    }
+}
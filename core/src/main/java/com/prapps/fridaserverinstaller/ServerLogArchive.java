@@ -0,0 +1,612 @@
+package com.prapps.fridaserverinstaller;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Persistent, size-rotated archive of frida-server output.
+ *
+ * Lines are appended as {@code <epochMillis>\t<text>} to the active segment
+ * {@code <n>.log}. Once it reaches the segment size it is closed and compressed in the
+ * background to {@code <n>.log.xz}, written in small XZ blocks so any offset can be reached
+ * with {@link SeekableXZInputStream} without decoding the segment from the start.
+ *
+ * Every segment has a sidecar {@code <n>.idx} of fixed 24-byte records
+ * (timestamp, global line number, uncompressed byte offset), one every
+ * {@link #INDEX_STRIDE} lines. Queries memory-map only the indexes of segments whose time or
+ * line range overlaps the request, binary-search them, and read data from the indexed offset.
+ *
+ * Finished segments are deleted oldest first once the archive exceeds its size budget or
+ * they fall outside the retention window.
+ */
+public class ServerLogArchive implements Closeable {
+    public static final long DEFAULT_SEGMENT_BYTES = 1024 * 1024;
+    public static final long DEFAULT_MAX_TOTAL_BYTES = 32L * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+    static final int INDEX_STRIDE = 128;
+    private static final int RECORD_BYTES = 24;
+    private static final int XZ_BLOCK_BYTES = 64 * 1024;
+
+    public static class Entry {
+        public final long lineNumber;
+        public final long timestamp;
+        public final String text;
+
+        Entry(long lineNumber, long timestamp, String text) {
+            this.lineNumber = lineNumber;
+            this.timestamp = timestamp;
+            this.text = text;
+        }
+    }
+
+    /**
+     * A segment on disk. Its lines run from {@code firstLine} up to the next segment's first line.
+     */
+    public static class Segment {
+        public final long number;
+        public final File data;
+        public final File index;
+        public final boolean compressed;
+        public final long firstLine;
+        public final long firstTimestamp;
+
+        Segment(long number, File data, File index, boolean compressed, long firstLine, long firstTimestamp) {
+            this.number = number;
+            this.data = data;
+            this.index = index;
+            this.compressed = compressed;
+            this.firstLine = firstLine;
+            this.firstTimestamp = firstTimestamp;
+        }
+
+        public long getSizeBytes() {
+            return data.length() + index.length();
+        }
+    }
+
+    private static class IndexRecord {
+        final long timestamp;
+        final long line;
+        final long offset;
+
+        IndexRecord(long timestamp, long line, long offset) {
+            this.timestamp = timestamp;
+            this.line = line;
+            this.offset = offset;
+        }
+    }
+
+    private final File dir;
+    private final long segmentBytes;
+    private final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ServerLogArchive");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
+    private volatile long maxAgeMs = DEFAULT_MAX_AGE_MS;
+
+    private long activeNumber;
+    private OutputStream activeOut;
+    private DataOutputStream activeIndexOut;
+    private long activeBytes;
+    private long activeLines;
+    private long nextLine;
+
+    public ServerLogArchive(File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public ServerLogArchive(File dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create log directory " + dir);
+        }
+        recover();
+    }
+
+    public void setRetention(long maxTotalBytes, long maxAgeMs) {
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxAgeMs = maxAgeMs;
+        background.execute(this::enforceRetention);
+    }
+
+    /**
+     * Appends one line of output and returns its global line number.
+     */
+    public synchronized long append(String text) throws IOException {
+        if (activeOut == null) {
+            openActiveSegment();
+        }
+        long now = System.currentTimeMillis();
+        if (activeLines % INDEX_STRIDE == 0) {
+            activeIndexOut.writeLong(now);
+            activeIndexOut.writeLong(nextLine);
+            activeIndexOut.writeLong(activeBytes);
+            activeIndexOut.flush();
+        }
+        byte[] bytes = (now + "\t" + text.replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8);
+        activeOut.write(bytes);
+        // Flushed per line so output survives the app being killed
+        activeOut.flush();
+        activeBytes += bytes.length;
+        activeLines++;
+
+        long lineNumber = nextLine++;
+        if (activeBytes >= segmentBytes) {
+            rotate();
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Line number the next appended line will get; one past the newest line.
+     */
+    public synchronized long getNextLine() {
+        return nextLine;
+    }
+
+    /**
+     * Oldest line still retained, or {@link #getNextLine()} when the archive is empty.
+     */
+    public long getFirstLine() throws IOException {
+        List<Segment> segments = listSegments();
+        return segments.isEmpty() ? getNextLine() : segments.get(0).firstLine;
+    }
+
+    public List<Segment> listSegments() throws IOException {
+        File[] indexFiles = dir.listFiles((file, name) -> name.endsWith(".idx"));
+        List<Segment> segments = new ArrayList<>();
+        if (indexFiles == null) {
+            return segments;
+        }
+        for (File index : indexFiles) {
+            long number = parseSegmentNumber(index.getName());
+            if (number < 0) {
+                continue;
+            }
+            File plain = new File(dir, segmentName(number) + ".log");
+            File compressed = new File(dir, segmentName(number) + ".log.xz");
+            // Prefer the plain file: it is only deleted once the compressed copy is complete
+            File data = plain.exists() ? plain : compressed;
+            if (!data.exists()) {
+                continue;
+            }
+            List<IndexRecord> records = readIndex(index, 1);
+            if (records.isEmpty()) {
+                continue;
+            }
+            segments.add(new Segment(number, data, index, data == compressed,
+                    records.get(0).line, records.get(0).timestamp));
+        }
+        Collections.sort(segments, (a, b) -> Long.compare(a.number, b.number));
+        return segments;
+    }
+
+    public long getTotalBytes() throws IOException {
+        long total = 0;
+        for (Segment segment : listSegments()) {
+            total += segment.getSizeBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Reads up to {@code maxLines} lines starting at global line {@code fromLine}, continuing
+     * into later segments as needed. Lines already removed by retention are skipped.
+     */
+    public List<Entry> readLines(long fromLine, int maxLines) throws IOException {
+        List<Segment> segments = listSegments();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < segments.size() && entries.size() < maxLines; i++) {
+            Segment segment = segments.get(i);
+            long endLine = i + 1 < segments.size() ? segments.get(i + 1).firstLine : Long.MAX_VALUE;
+            if (endLine <= fromLine) {
+                continue;
+            }
+            IndexRecord start = floorByLine(readIndex(segment.index, Integer.MAX_VALUE), fromLine);
+            try (BufferedReader reader = openAt(segment, start.offset)) {
+                long lineNumber = start.line;
+                long timestamp = start.timestamp;
+                String line;
+                while (entries.size() < maxLines && (line = reader.readLine()) != null) {
+                    Entry entry = parse(lineNumber++, line, timestamp);
+                    timestamp = entry.timestamp;
+                    if (entry.lineNumber >= fromLine) {
+                        entries.add(entry);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * The {@code maxLines} lines before {@code beforeLine}, oldest first, for paging back
+     * through history.
+     */
+    public List<Entry> readPageBefore(long beforeLine, int maxLines) throws IOException {
+        long from = Math.max(getFirstLine(), beforeLine - maxLines);
+        if (from >= beforeLine) {
+            return new ArrayList<>();
+        }
+        return readLines(from, (int) (beforeLine - from));
+    }
+
+    /**
+     * Lines logged in {@code [fromMs, toMs]}, oldest first, up to {@code maxLines}.
+     */
+    public List<Entry> findByTime(long fromMs, long toMs, int maxLines) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<Segment> segments = listSegments();
+        for (int i = 0; i < segments.size() && entries.size() < maxLines; i++) {
+            if (!overlaps(segments, i, fromMs, toMs)) {
+                continue;
+            }
+            scanSegment(segments.get(i), fromMs, toMs, null, entries, maxLines);
+        }
+        return entries;
+    }
+
+    /**
+     * The newest {@code maxLines} lines in {@code [fromMs, toMs]} containing {@code keyword}
+     * (case-insensitive), oldest first. Segments are scanned newest first and the scan stops
+     * once enough matches have been found.
+     */
+    public List<Entry> search(String keyword, long fromMs, long toMs, int maxLines) throws IOException {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        List<Segment> segments = listSegments();
+        List<Entry> matches = new ArrayList<>();
+        for (int i = segments.size() - 1; i >= 0 && matches.size() < maxLines; i--) {
+            if (!overlaps(segments, i, fromMs, toMs)) {
+                continue;
+            }
+            List<Entry> segmentMatches = new ArrayList<>();
+            scanSegment(segments.get(i), fromMs, toMs, needle, segmentMatches, Integer.MAX_VALUE);
+            matches.addAll(0, segmentMatches);
+        }
+        return matches.size() > maxLines
+                ? new ArrayList<>(matches.subList(matches.size() - maxLines, matches.size()))
+                : matches;
+    }
+
+    /**
+     * Closes the active segment so it is compressed like the others.
+     */
+    public synchronized void rotate() throws IOException {
+        if (activeOut == null) {
+            return;
+        }
+        activeOut.close();
+        activeIndexOut.close();
+        activeOut = null;
+        activeIndexOut = null;
+        long finished = activeNumber;
+        background.execute(() -> {
+            compress(finished);
+            enforceRetention();
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (activeOut != null) {
+            activeOut.close();
+            activeIndexOut.close();
+            activeOut = null;
+            activeIndexOut = null;
+        }
+        background.shutdown();
+    }
+
+    /**
+     * Waits for queued compression and retention work. Used by tests.
+     */
+    void awaitBackgroundWork(long timeoutMs) throws IOException {
+        try {
+            background.submit(() -> { }).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void openActiveSegment() throws IOException {
+        activeNumber++;
+        File data = new File(dir, segmentName(activeNumber) + ".log");
+        File index = new File(dir, segmentName(activeNumber) + ".idx");
+        activeOut = new BufferedOutputStream(new FileOutputStream(data), 8192);
+        activeIndexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index), RECORD_BYTES));
+        activeBytes = 0;
+        activeLines = 0;
+    }
+
+    /**
+     * Continues numbering after the newest existing segment and queues compression of any
+     * plain segments left by an earlier process.
+     */
+    private void recover() throws IOException {
+        File[] partial = dir.listFiles((file, name) -> name.endsWith(".tmp"));
+        if (partial != null) {
+            for (File file : partial) {
+                file.delete();
+            }
+        }
+
+        List<Segment> segments = listSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        Segment last = segments.get(segments.size() - 1);
+        activeNumber = last.number;
+
+        List<IndexRecord> records = readIndex(last.index, Integer.MAX_VALUE);
+        IndexRecord lastRecord = records.get(records.size() - 1);
+        long lines = 0;
+        try (BufferedReader reader = openAt(last, lastRecord.offset)) {
+            while (reader.readLine() != null) {
+                lines++;
+            }
+        }
+        nextLine = lastRecord.line + lines;
+
+        for (Segment segment : segments) {
+            if (!segment.compressed) {
+                long number = segment.number;
+                background.execute(() -> compress(number));
+            }
+        }
+        background.execute(this::enforceRetention);
+    }
+
+    private void compress(long number) {
+        File plain = new File(dir, segmentName(number) + ".log");
+        File compressed = new File(dir, segmentName(number) + ".log.xz");
+        File temp = new File(dir, segmentName(number) + ".log.xz.tmp");
+        if (!plain.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(plain);
+             XZOutputStream out = new XZOutputStream(new FileOutputStream(temp), new LZMA2Options(6))) {
+            byte[] buffer = new byte[8192];
+            int inBlock = 0;
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+                inBlock += bytesRead;
+                if (inBlock >= XZ_BLOCK_BYTES) {
+                    out.endBlock();
+                    inBlock = 0;
+                }
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (temp.renameTo(compressed)) {
+            plain.delete();
+        } else {
+            temp.delete();
+        }
+    }
+
+    private void enforceRetention() {
+        try {
+            List<Segment> segments = listSegments();
+            long activeSegment;
+            synchronized (this) {
+                activeSegment = activeOut != null ? activeNumber : -1;
+            }
+            long total = 0;
+            for (Segment segment : segments) {
+                total += segment.getSizeBytes();
+            }
+            long cutoff = System.currentTimeMillis() - maxAgeMs;
+            for (int i = 0; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                if (segment.number == activeSegment) {
+                    break;
+                }
+                // A segment ends where the next one starts
+                long endTimestamp = i + 1 < segments.size() ? segments.get(i + 1).firstTimestamp : Long.MAX_VALUE;
+                if (total <= maxTotalBytes && endTimestamp >= cutoff) {
+                    break;
+                }
+                total -= segment.getSizeBytes();
+                segment.data.delete();
+                new File(dir, segmentName(segment.number) + ".log").delete();
+                segment.index.delete();
+            }
+        } catch (IOException e) {
+            // Retried after the next rotation
+        }
+    }
+
+    private void scanSegment(Segment segment, long fromMs, long toMs, String needle,
+                             List<Entry> out, int maxLines) throws IOException {
+        IndexRecord start = floorByTime(readIndex(segment.index, Integer.MAX_VALUE), fromMs);
+        try (BufferedReader reader = openAt(segment, start.offset)) {
+            long lineNumber = start.line;
+            long timestamp = start.timestamp;
+            String line;
+            while (out.size() < maxLines && (line = reader.readLine()) != null) {
+                Entry entry = parse(lineNumber++, line, timestamp);
+                timestamp = entry.timestamp;
+                if (entry.timestamp > toMs) {
+                    break;
+                }
+                if (entry.timestamp >= fromMs
+                        && (needle == null || entry.text.toLowerCase(Locale.ROOT).contains(needle))) {
+                    out.add(entry);
+                }
+            }
+        }
+    }
+
+    private static boolean overlaps(List<Segment> segments, int i, long fromMs, long toMs) {
+        long start = segments.get(i).firstTimestamp;
+        long end = i + 1 < segments.size() ? segments.get(i + 1).firstTimestamp : Long.MAX_VALUE;
+        return start <= toMs && end >= fromMs;
+    }
+
+    private static IndexRecord floorByLine(List<IndexRecord> records, long line) {
+        int low = 0;
+        int high = records.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (records.get(mid).line <= line) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return records.get(low);
+    }
+
+    private static IndexRecord floorByTime(List<IndexRecord> records, long timestamp) {
+        int low = 0;
+        int high = records.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            // Strictly earlier, so lines sharing the timestamp before this record are not skipped
+            if (records.get(mid).timestamp < timestamp) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return records.get(low);
+    }
+
+    /**
+     * Memory-maps an index file and decodes up to {@code maxRecords} records. A record still
+     * being written by the active segment is ignored.
+     */
+    private static List<IndexRecord> readIndex(File index, int maxRecords) throws IOException {
+        List<IndexRecord> records = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(index, "r");
+             FileChannel channel = file.getChannel()) {
+            long count = Math.min(maxRecords, channel.size() / RECORD_BYTES);
+            if (count == 0) {
+                return records;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, count * RECORD_BYTES);
+            for (int i = 0; i < count; i++) {
+                records.add(new IndexRecord(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+            }
+        }
+        return records;
+    }
+
+    private static BufferedReader openAt(Segment segment, long offset) throws IOException {
+        InputStream in;
+        if (segment.compressed) {
+            in = openCompressedAt(segment.data, offset);
+        } else {
+            try {
+                in = openPlainAt(segment.data, offset);
+            } catch (FileNotFoundException e) {
+                // Compressed in the background since it was listed; the .xz is renamed into
+                // place before the plain file is deleted
+                in = openCompressedAt(new File(segment.data.getPath() + ".xz"), offset);
+            }
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static InputStream openCompressedAt(File data, long offset) throws IOException {
+        SeekableXZInputStream xz = new SeekableXZInputStream(new SeekableFileInputStream(data));
+        xz.seek(offset);
+        return xz;
+    }
+
+    private static InputStream openPlainAt(File data, long offset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(data, "r");
+             FileChannel channel = file.getChannel()) {
+            long length = channel.size() - offset;
+            return new ByteBufferInputStream(length > 0
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, offset, length)
+                    : ByteBuffer.allocate(0));
+        }
+    }
+
+    private static Entry parse(long lineNumber, String line, long fallbackTimestamp) {
+        int tab = line.indexOf('\t');
+        if (tab > 0) {
+            try {
+                return new Entry(lineNumber, Long.parseLong(line.substring(0, tab)), line.substring(tab + 1));
+            } catch (NumberFormatException e) {
+                // Fall through
+            }
+        }
+        return new Entry(lineNumber, fallbackTimestamp, line);
+    }
+
+    private static String segmentName(long number) {
+        return String.format(Locale.ROOT, "%08d", number);
+    }
+
+    private static long parseSegmentNumber(String fileName) {
+        int dot = fileName.indexOf('.');
+        try {
+            return Long.parseLong(fileName.substring(0, dot));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a frida-server process alive.
+ *
+ * A watcher thread waits on the process handle. When the process exits without
+ * {@link #stop()} having been called, its exit code and the last {@link #STDERR_TAIL_LINES}
+ * stderr lines are recorded and it is relaunched after an exponential backoff, capped at
+ * {@code maxBackoffMs}. A run that lasted {@code stableUptimeMs} resets the backoff. If
+ * {@code maxCrashes} exits fall within {@code crashWindowMs} the circuit opens: the supervisor
+ * stays in {@link State#CRASH_LOOP} until it is started again by hand.
+ */
+public class ServerSupervisor {
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 30_000;
+    public static final int DEFAULT_MAX_CRASHES = 5;
+    public static final long DEFAULT_CRASH_WINDOW_MS = 60_000;
+    public static final long DEFAULT_STABLE_UPTIME_MS = 30_000;
+    public static final int STDERR_TAIL_LINES = 20;
+    /** How long to wait for the stderr reader to drain after the process has exited. */
+    private static final long STDERR_DRAIN_MS = 1000;
+
+    public enum State {
+        STOPPED, RUNNING, BACKING_OFF, CRASH_LOOP
+    }
+
+    public static class Status {
+        public static final Status STOPPED = new Status(State.STOPPED, 0, 0, null, Collections.emptyList(), 0);
+
+        public final State state;
+        /** Automatic restarts since the last manual start. */
+        public final int restartCount;
+        /** When the current process was launched, or 0 if none is running. */
+        public final long startedAtMs;
+        /** Exit code of the last unexpected exit, or null if there has been none. */
+        public final Integer lastExitCode;
+        public final List<String> lastStderr;
+        /** When the pending restart is due, or 0 outside {@link State#BACKING_OFF}. */
+        public final long nextRestartAtMs;
+
+        Status(State state, int restartCount, long startedAtMs, Integer lastExitCode,
+               List<String> lastStderr, long nextRestartAtMs) {
+            this.state = state;
+            this.restartCount = restartCount;
+            this.startedAtMs = startedAtMs;
+            this.lastExitCode = lastExitCode;
+            this.lastStderr = lastStderr;
+            this.nextRestartAtMs = nextRestartAtMs;
+        }
+
+        public long getUptimeMs(long nowMs) {
+            return state == State.RUNNING ? Math.max(0, nowMs - startedAtMs) : 0;
+        }
+    }
+
+    public interface Launcher {
+        Process launch() throws IOException;
+    }
+
+    public interface OutputListener {
+        void onOutput(String line, boolean stderr);
+    }
+
+    /**
+     * Called on every state change, in order and one at a time, after the supervisor has
+     * released its lock. A slow listener delays later notifications but not the supervisor.
+     */
+    public interface StatusListener {
+        void onStatusChanged(Status status);
+    }
+
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final int maxCrashes;
+    private final long crashWindowMs;
+    private final long stableUptimeMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ServerSupervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<StatusListener> statusListeners = new CopyOnWriteArrayList<>();
+
+    private Launcher launcher;
+    private OutputListener outputListener;
+    private Process process;
+    private long generation;
+    private Status status = Status.STOPPED;
+    private int consecutiveCrashes;
+    private final Deque<Long> recentCrashes = new ArrayDeque<>();
+    private ScheduledFuture<?> pendingRestart;
+    /** Status changes made under the lock that listeners have not been told about yet. */
+    private final Deque<Status> undelivered = new ArrayDeque<>();
+    private final Object deliveryLock = new Object();
+
+    public ServerSupervisor() {
+        this(DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS, DEFAULT_MAX_CRASHES,
+                DEFAULT_CRASH_WINDOW_MS, DEFAULT_STABLE_UPTIME_MS);
+    }
+
+    ServerSupervisor(long initialBackoffMs, long maxBackoffMs, int maxCrashes, long crashWindowMs,
+                     long stableUptimeMs) {
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxCrashes = maxCrashes;
+        this.crashWindowMs = crashWindowMs;
+        this.stableUptimeMs = stableUptimeMs;
+    }
+
+    public void addStatusListener(StatusListener listener) {
+        statusListeners.add(listener);
+    }
+
+    public void removeStatusListener(StatusListener listener) {
+        statusListeners.remove(listener);
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    /**
+     * The process currently being supervised, or null while stopped or backing off.
+     */
+    public synchronized Process getProcess() {
+        return process;
+    }
+
+    /**
+     * Launches the server and supervises it until {@link #stop()}. Resets the restart count
+     * and closes the circuit. Failing to launch throws instead of scheduling a restart.
+     */
+    public Process start(Launcher launcher, OutputListener outputListener) throws IOException {
+        try {
+            synchronized (this) {
+                stopLocked();
+                this.launcher = launcher;
+                this.outputListener = outputListener;
+                consecutiveCrashes = 0;
+                recentCrashes.clear();
+                launch(0, null, Collections.emptyList());
+                return process;
+            }
+        } finally {
+            deliverStatuses();
+        }
+    }
+
+    /**
+     * Stops supervising and cancels any pending restart. Returns the running process, which
+     * the caller is responsible for terminating, or null.
+     */
+    public Process stop() {
+        Process stopped;
+        synchronized (this) {
+            stopped = stopLocked();
+        }
+        deliverStatuses();
+        return stopped;
+    }
+
+    private Process stopLocked() {
+        generation++;
+        if (pendingRestart != null) {
+            pendingRestart.cancel(false);
+            pendingRestart = null;
+        }
+        Process stopped = process;
+        process = null;
+        if (status.state != State.STOPPED) {
+            setStatus(new Status(State.STOPPED, status.restartCount, 0, status.lastExitCode, status.lastStderr, 0));
+        }
+        return stopped;
+    }
+
+    private void launch(int restartCount, Integer lastExitCode, List<String> lastStderr) throws IOException {
+        Process launched = launcher.launch();
+        long launchGeneration = ++generation;
+        process = launched;
+        setStatus(new Status(State.RUNNING, restartCount, System.currentTimeMillis(), lastExitCode, lastStderr, 0));
+        watch(launched, launchGeneration);
+    }
+
+    private void watch(Process launched, long launchGeneration) {
+        OutputListener listener = outputListener;
+        StderrTail tail = new StderrTail();
+        Thread stdoutReader = readLines(launched.getInputStream(), line -> listener.onOutput(line, false));
+        Thread stderrReader = readLines(launched.getErrorStream(), line -> {
+            tail.add(line);
+            listener.onOutput(line, true);
+        });
+
+        Thread waiter = new Thread(() -> {
+            int exitCode;
+            try {
+                exitCode = launched.waitFor();
+                stderrReader.join(STDERR_DRAIN_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            onExit(launchGeneration, exitCode, tail.lines());
+            deliverStatuses();
+        }, "ServerSupervisor-waiter");
+        waiter.setDaemon(true);
+        stdoutReader.start();
+        stderrReader.start();
+        waiter.start();
+    }
+
+    private synchronized void onExit(long exitGeneration, int exitCode, List<String> stderr) {
+        if (exitGeneration != generation) {
+            // Stopped on purpose, or a newer process has already replaced this one
+            return;
+        }
+        process = null;
+        recordCrash(status.startedAtMs, status.restartCount, exitCode, stderr);
+    }
+
+    private void recordCrash(long startedAtMs, int restartCount, int exitCode, List<String> stderr) {
+        long now = System.currentTimeMillis();
+        if (now - startedAtMs >= stableUptimeMs) {
+            consecutiveCrashes = 0;
+        }
+        consecutiveCrashes++;
+        recentCrashes.addLast(now);
+        while (!recentCrashes.isEmpty() && now - recentCrashes.peekFirst() > crashWindowMs) {
+            recentCrashes.removeFirst();
+        }
+
+        if (recentCrashes.size() >= maxCrashes) {
+            setStatus(new Status(State.CRASH_LOOP, restartCount, 0, exitCode, stderr, 0));
+            return;
+        }
+        long delay = backoffMs(consecutiveCrashes);
+        setStatus(new Status(State.BACKING_OFF, restartCount, 0, exitCode, stderr, now + delay));
+        long restartGeneration = generation;
+        pendingRestart = scheduler.schedule(() -> {
+            restart(restartGeneration);
+            deliverStatuses();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void restart(long restartGeneration) {
+        if (restartGeneration != generation || status.state != State.BACKING_OFF) {
+            return;
+        }
+        pendingRestart = null;
+        try {
+            launch(status.restartCount + 1, status.lastExitCode, status.lastStderr);
+        } catch (IOException e) {
+            // Counts as another crash so a launcher that keeps failing still trips the circuit
+            recordCrash(System.currentTimeMillis(), status.restartCount + 1, -1,
+                    Collections.singletonList("Restart failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Exit codes above 128 are how a shell reports death by signal (139 is SIGSEGV).
+     */
+    public static String describeExitCode(Integer exitCode) {
+        if (exitCode == null) {
+            return "no exit";
+        }
+        if (exitCode > 128 && exitCode < 160) {
+            return "exit code " + exitCode + " (signal " + (exitCode - 128) + ")";
+        }
+        return "exit code " + exitCode;
+    }
+
+    long backoffMs(int crashes) {
+        int shift = Math.min(crashes - 1, 30);
+        return Math.min(maxBackoffMs, initialBackoffMs << shift);
+    }
+
+    private void setStatus(Status newStatus) {
+        status = newStatus;
+        undelivered.addLast(newStatus);
+    }
+
+    /**
+     * Passes queued status changes to the listeners. Must be called without the supervisor
+     * lock held; the delivery lock keeps notifications from different threads in order.
+     */
+    private void deliverStatuses() {
+        synchronized (deliveryLock) {
+            while (true) {
+                Status next;
+                synchronized (this) {
+                    next = undelivered.pollFirst();
+                }
+                if (next == null) {
+                    return;
+                }
+                for (StatusListener listener : statusListeners) {
+                    listener.onStatusChanged(next);
+                }
+            }
+        }
+    }
+
+    private static Thread readLines(InputStream stream, Consumer<String> consumer) {
+        Thread thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    consumer.accept(line);
+                }
+            } catch (IOException e) {
+                // Stream closed with the process
+            }
+        }, "ServerSupervisor-reader");
+        thread.setDaemon(true); // Don't prevent app shutdown
+        return thread;
+    }
+
+    private static final class StderrTail {
+        private final Deque<String> lines = new ArrayDeque<>();
+
+        synchronized void add(String line) {
+            if (lines.size() == STDERR_TAIL_LINES) {
+                lines.removeFirst();
+            }
+            lines.addLast(line);
+        }
+
+        synchronized List<String> lines() {
+            return Collections.unmodifiableList(new ArrayList<>(lines));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops one server process by PID: SIGTERM, a bounded wait for it to exit, then SIGKILL if
+ * it is still alive.
+ *
+ * The wait returns as soon as the process is gone. When the launching {@link Process} is known
+ * its exit is awaited directly; otherwise the PID is polled with {@code kill -0}. Only the
+ * given PID is signalled, so servers this app did not start are left alone.
+ */
+public final class ServerTerminator {
+    public static final long DEFAULT_GRACE_MS = 2000;
+    static final long KILL_WAIT_MS = 1000;
+    private static final long POLL_INTERVAL_MS = 10;
+
+    public enum Outcome {
+        /** Nothing was running under that PID. */
+        NOT_RUNNING,
+        /** Exited after SIGTERM. */
+        TERMINATED,
+        /** Needed SIGKILL. */
+        KILLED,
+        /** Survived SIGKILL, for example while stuck in uninterruptible sleep. */
+        STILL_RUNNING
+    }
+
+    public static class Result {
+        public static final Result NOT_RUNNING = new Result(Outcome.NOT_RUNNING, 0);
+
+        public final Outcome outcome;
+        public final long elapsedMs;
+
+        Result(Outcome outcome, long elapsedMs) {
+            this.outcome = outcome;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private ServerTerminator() {
+    }
+
+    /**
+     * @param pid the server's PID, or 0 if unknown, in which case {@code process} is signalled
+     * @param process the process that launched the server and exits with it, or null
+     */
+    public static Result terminate(RootShell shell, int pid, Process process, long graceMs)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        if (pid <= 0) {
+            return terminateProcess(process, graceMs, start);
+        }
+        if (!isAlive(shell, pid, process)) {
+            return new Result(Outcome.NOT_RUNNING, elapsedMs(start));
+        }
+        shell.run("kill -TERM " + pid);
+        if (awaitExit(shell, pid, process, graceMs)) {
+            return new Result(Outcome.TERMINATED, elapsedMs(start));
+        }
+        shell.run("kill -KILL " + pid);
+        if (awaitExit(shell, pid, process, KILL_WAIT_MS)) {
+            return new Result(Outcome.KILLED, elapsedMs(start));
+        }
+        return new Result(Outcome.STILL_RUNNING, elapsedMs(start));
+    }
+
+    private static Result terminateProcess(Process process, long graceMs, long start) throws InterruptedException {
+        if (process == null || !process.isAlive()) {
+            return new Result(Outcome.NOT_RUNNING, elapsedMs(start));
+        }
+        process.destroy();
+        if (process.waitFor(graceMs, TimeUnit.MILLISECONDS)) {
+            return new Result(Outcome.TERMINATED, elapsedMs(start));
+        }
+        process.destroyForcibly();
+        if (process.waitFor(KILL_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            return new Result(Outcome.KILLED, elapsedMs(start));
+        }
+        return new Result(Outcome.STILL_RUNNING, elapsedMs(start));
+    }
+
+    private static boolean isAlive(RootShell shell, int pid, Process process) throws IOException, InterruptedException {
+        if (process != null) {
+            return process.isAlive();
+        }
+        return shell.run("kill -0 " + pid).isSuccess();
+    }
+
+    private static boolean awaitExit(RootShell shell, int pid, Process process, long timeoutMs)
+            throws IOException, InterruptedException {
+        if (process != null) {
+            return process.waitFor(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (isAlive(shell, pid, null)) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        return true;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+}
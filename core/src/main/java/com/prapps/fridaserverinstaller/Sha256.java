@@ -0,0 +1,183 @@
+package com.prapps.fridaserverinstaller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Running SHA-256 of a byte stream. The sequential download and decode loops feed it as the
+ * bytes pass through; the parallel ones write out of order, so they read each finished region
+ * back through {@link #update(FileChannel, long, long)} instead. The number of bytes seen is
+ * kept alongside, so callers can tell whether a digest covers the whole output or a path
+ * skipped it.
+ */
+public final class Sha256 {
+    private static final long MAP_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final MessageDigest digest;
+    private long length;
+
+    public Sha256() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void update(byte[] buffer, int offset, int count) {
+        digest.update(buffer, offset, count);
+        length += count;
+    }
+
+    /**
+     * Feeds the buffer's remaining bytes without moving its position.
+     */
+    public void update(ByteBuffer buffer) {
+        length += buffer.remaining();
+        digest.update(buffer.duplicate());
+    }
+
+    /**
+     * Feeds {@code length} bytes of {@code channel} starting at {@code position} through a
+     * mapping. This re-reads the region; parallel writers call it for each region in order once
+     * it is complete, while later regions are still being written, so the bytes usually still
+     * come from the page cache rather than storage.
+     */
+    public void update(FileChannel channel, long position, long length) throws IOException {
+        long done = 0;
+        while (done < length) {
+            InstallerOperation.checkCancelled();
+            long chunk = Math.min(MAP_CHUNK_SIZE, length - done);
+            update(channel.map(FileChannel.MapMode.READ_ONLY, position + done, chunk));
+            done += chunk;
+        }
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Finishes the digest and returns it as lowercase hex.
+     */
+    public String hex() {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Hex digest if it covers exactly {@code expectedLength} bytes, otherwise null.
+     */
+    public String hexIfComplete(long expectedLength) {
+        return length == expectedLength ? hex() : null;
+    }
+
+    /**
+     * Passes reads through, digesting every byte handed to the consumer.
+     */
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int n = read(one, 0, 1);
+                return n == -1 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int n = in.read(buffer, offset, count);
+                if (n > 0) {
+                    update(buffer, offset, n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                // Skipped bytes still belong to the stream, so read them
+                byte[] buffer = new byte[8192];
+                long skipped = 0;
+                while (skipped < count) {
+                    int n = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+                    if (n == -1) {
+                        break;
+                    }
+                    skipped += n;
+                }
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Passes writes through, digesting every byte written.
+     */
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int count) throws IOException {
+                out.write(buffer, offset, count);
+                update(buffer, offset, count);
+            }
+        };
+    }
+
+    /**
+     * Reads {@code file} in full and returns its digest, for binaries no loop has digested.
+     */
+    public static String of(File file) throws IOException {
+        Sha256 sha256 = new Sha256();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                sha256.update(buffer, 0, bytesRead);
+            }
+        }
+        return sha256.hex();
+    }
+
+    /**
+     * Digest of an in-memory value, such as a cache key.
+     */
+    public static String of(byte[] bytes) {
+        Sha256 sha256 = new Sha256();
+        sha256.update(bytes, 0, bytes.length);
+        return sha256.hex();
+    }
+
+    /**
+     * Lowercase form of a user-supplied hex digest, or null if it is not 64 hex digits.
+     */
+    public static String normalize(String digest) {
+        if (digest == null) {
+            return null;
+        }
+        String hex = digest.trim().toLowerCase(Locale.ROOT);
+        return hex.matches("[0-9a-f]{64}") ? hex : null;
+    }
+}
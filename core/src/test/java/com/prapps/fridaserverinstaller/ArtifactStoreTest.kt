@@ -0,0 +1,178 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.nio.file.Files
+import kotlin.random.Random
+
+import org.junit.Assert.*
+
+class ArtifactStoreTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private lateinit var fridaDir: File
+    private lateinit var downloadsDir: File
+    private lateinit var activeLink: File
+
+    @Before
+    fun setUp() {
+        fridaDir = tempFolder.newFolder("frida")
+        downloadsDir = tempFolder.newFolder("downloads")
+        activeLink = File(fridaDir, "frida-server")
+    }
+
+    private fun newStore() = ArtifactStore(File(fridaDir, "store"), activeLink, downloadsDir)
+
+    private fun binary(seed: Int, size: Int = 1024): File {
+        val file = File(fridaDir, "staged-$seed")
+        file.writeBytes(Random(seed).nextBytes(size))
+        return file
+    }
+
+    @Test
+    fun activate_switchesBetweenStoredVersions() {
+        val store = newStore()
+        val v16 = store.importBinary(binary(16), "16.7.19", "arm64")
+        val v17 = store.importBinary(binary(17), "17.2.0", "arm64")
+
+        store.activate(v16)
+        assertTrue(Files.isSymbolicLink(activeLink.toPath()))
+        assertArrayEquals(v16.binary.readBytes(), activeLink.readBytes())
+
+        store.activate(v17)
+        assertArrayEquals(v17.binary.readBytes(), activeLink.readBytes())
+        assertEquals(v17.sha256, store.active.sha256)
+    }
+
+    @Test
+    fun index_survivesRestart() {
+        newStore().importBinary(binary(1), "16.7.19", "arm64")
+
+        val reopened = newStore()
+        val found = reopened.find("16.7.19", "arm64")
+        assertNotNull(found)
+        assertNull(reopened.find("16.7.19", "x86"))
+    }
+
+    @Test
+    fun verify_rereadsOnlyWhenSizeOrMtimeChange() {
+        val store = newStore()
+        val staged = binary(7)
+        val artifact = store.importBinary(staged, "16.7.19", "arm64", Sha256.of(staged), null)
+
+        assertEquals(ArtifactStore.Verification.UNCHANGED, store.verify(artifact))
+
+        artifact.binary.setLastModified(artifact.binary.lastModified() - 10_000)
+        assertEquals(ArtifactStore.Verification.VERIFIED, store.verify(artifact))
+        assertEquals(ArtifactStore.Verification.UNCHANGED, newStore().verify(newStore().find("16.7.19", "arm64")))
+
+        artifact.binary.writeBytes(Random(8).nextBytes(1024))
+        assertEquals(ArtifactStore.Verification.CORRUPT, store.verify(artifact))
+    }
+
+    @Test
+    fun importBinary_keepsInlineDigests() {
+        val staged = binary(9)
+        val sha256 = Sha256.of(staged)
+        newStore().importBinary(staged, "16.7.19", "arm64", sha256, "a".repeat(64))
+
+        val found = newStore().find("16.7.19", "arm64")!!
+        assertEquals(sha256, found.sha256)
+        assertEquals("a".repeat(64), found.archiveSha256)
+    }
+
+    @Test
+    fun identicalContent_isStoredOnce() {
+        val store = newStore()
+        val first = store.importBinary(binary(5), "a", "arm64")
+        val second = store.importBinary(binary(5), "b", "arm64")
+
+        assertEquals(first.sha256, second.sha256)
+        assertEquals(first.binary, second.binary)
+        assertEquals(first.size, store.usedBytes)
+    }
+
+    @Test
+    fun importBinary_replacesStoredCopyThatChangedSinceVerification() {
+        val store = newStore()
+        val stored = store.importBinary(binary(4), "16.7.19", "arm64")
+        val original = binary(4).readBytes()
+        stored.binary.writeBytes(Random(99).nextBytes(1024))
+
+        val reimported = store.importBinary(binary(4), "16.7.19", "arm64")
+
+        assertArrayEquals(original, reimported.binary.readBytes())
+        assertEquals(ArtifactStore.Verification.UNCHANGED, store.verify(reimported))
+    }
+
+    @Test
+    fun identicalContent_keepsEveryVersionFindable() {
+        newStore().importBinary(binary(5), "16.7.19", "arm64")
+        newStore().importBinary(binary(5), "Manual", "arm64")
+
+        val reopened = newStore()
+        val release = reopened.find("16.7.19", "arm64")
+        val manual = reopened.find("Manual", "arm64")
+        assertNotNull(release)
+        assertNotNull(manual)
+        assertEquals(release!!.binary, manual!!.binary)
+
+        // Re-pointing one name keeps the shared binary for the other until it is evicted too
+        reopened.activate(manual)
+        reopened.importBinary(binary(6), "Manual", "arm64")
+        assertTrue(release.binary.exists())
+        reopened.activate(reopened.find("Manual", "arm64")!!)
+        reopened.setQuotaBytes(0)
+        reopened.enforceQuota()
+        assertNull(reopened.find("16.7.19", "arm64"))
+        assertFalse(release.binary.exists())
+        assertNotNull(reopened.find("Manual", "arm64"))
+    }
+
+    @Test
+    fun quota_evictsLeastRecentlyUsedButNeverActive() {
+        val store = newStore()
+        val oldest = store.importBinary(binary(1, 4096), "1", "arm64")
+        Thread.sleep(5)
+        val middle = store.importBinary(binary(2, 4096), "2", "arm64")
+        Thread.sleep(5)
+        val newest = store.importBinary(binary(3, 4096), "3", "arm64")
+        val archive = File(downloadsDir, "frida-server-0-android-arm64.xz")
+        archive.writeBytes(ByteArray(4096))
+        archive.setLastModified(1000)
+
+        store.activate(oldest) // most recently used now
+        store.setQuotaBytes(8192)
+        store.enforceQuota()
+
+        assertFalse(archive.exists())
+        assertNull(store.find("2", "arm64"))
+        assertNotNull(store.find("1", "arm64"))
+        assertNotNull(store.find("3", "arm64"))
+        assertFalse(middle.binary.exists())
+        assertTrue(newest.binary.exists())
+    }
+
+    @Test
+    fun quota_leavesDownloadsInProgressAlone() {
+        val store = newStore()
+        val resuming = File(downloadsDir, "frida-server-1-android-arm64.xz")
+        resuming.writeBytes(ByteArray(4096))
+        File(downloadsDir, "frida-server-1-android-arm64.xz.part").writeBytes(ByteArray(4096))
+        File(downloadsDir, "frida-server-1-android-arm64.xz.part.meta").writeText("url=x")
+        val unrelated = File(downloadsDir, "notes.txt")
+        unrelated.writeBytes(ByteArray(4096))
+
+        assertEquals(0, store.getUsedBytes())
+        store.setQuotaBytes(0)
+        store.enforceQuota()
+
+        assertTrue(resuming.exists())
+        assertTrue(File(downloadsDir, "frida-server-1-android-arm64.xz.part").exists())
+        assertTrue(unrelated.exists())
+    }
+}
@@ -0,0 +1,100 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.tukaani.xz.LZMA2Options
+import org.tukaani.xz.XZOutputStream
+import java.io.File
+import java.io.FileInputStream
+import kotlin.random.Random
+
+import org.junit.Assert.*
+
+class BinaryFilesTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private fun elf(name: String, size: Int): File {
+        val data = Random(5).nextBytes(size)
+        byteArrayOf(0x7F, 'E'.code.toByte(), 'L'.code.toByte(), 'F'.code.toByte()).copyInto(data)
+        return File(tempFolder.root, name).apply { writeBytes(data) }
+    }
+
+    @Test
+    fun copy_matchesSourceAndReportsEveryWrite() {
+        val source = elf("frida-server", 100_000)
+        val dest = File(tempFolder.root, "copy")
+        val reports = mutableListOf<Long>()
+
+        val copied = BinaryFiles.copy(source, dest, 8192) { bytes, total ->
+            assertEquals(100_000L, total)
+            reports.add(bytes)
+        }
+
+        assertEquals(100_000L, copied)
+        assertArrayEquals(source.readBytes(), dest.readBytes())
+        assertEquals(13, reports.size)
+        assertEquals(100_000L, reports.last())
+    }
+
+    @Test
+    fun validate_acceptsElfServer() {
+        assertNull(BinaryFiles.validateFridaBinary(elf("frida-server-android-arm64", 2 * 1024 * 1024)))
+    }
+
+    @Test
+    fun validate_rejectsBadMagicAndSize() {
+        val notElf = File(tempFolder.root, "frida-server").apply { writeBytes(ByteArray(2 * 1024 * 1024)) }
+        assertEquals("Not a valid ELF binary - Frida server should be an ELF executable",
+            BinaryFiles.validateFridaBinary(notElf))
+        assertTrue(BinaryFiles.validateFridaBinary(elf("frida-server-small", 1000))!!.startsWith("File too small"))
+    }
+
+    @Test
+    fun sniffFormat_readsMagicWithoutMovingChannel() {
+        val elf = elf("frida-server", 100)
+        val xz = File(tempFolder.root, "server.xz").apply {
+            XZOutputStream(outputStream(), LZMA2Options(1)).use { it.write(ByteArray(100)) }
+        }
+        val text = File(tempFolder.root, "notes.txt").apply { writeText("not a binary") }
+
+        FileInputStream(elf).channel.use { channel ->
+            assertEquals(BinaryFiles.Format.ELF, BinaryFiles.sniffFormat(channel))
+            assertEquals(0L, channel.position())
+        }
+        FileInputStream(xz).channel.use { assertEquals(BinaryFiles.Format.XZ, BinaryFiles.sniffFormat(it)) }
+        FileInputStream(text).channel.use { assertEquals(BinaryFiles.Format.UNKNOWN, BinaryFiles.sniffFormat(it)) }
+    }
+
+    @Test
+    fun transfer_copiesRestOfChannel() {
+        val source = elf("frida-server", 300_000)
+        val dest = File(tempFolder.root, "transferred")
+        val reports = mutableListOf<Long>()
+
+        val transferred = FileInputStream(source).channel.use { channel ->
+            BinaryFiles.transfer(channel, dest) { bytes, _ -> reports.add(bytes) }
+        }
+
+        assertEquals(300_000L, transferred)
+        assertArrayEquals(source.readBytes(), dest.readBytes())
+        assertEquals(300_000L, reports.last())
+    }
+
+    @Test
+    fun transfer_digestsWhatItCopies() {
+        val source = elf("frida-server", 300_000)
+        val dest = File(tempFolder.root, "transferred")
+        val digest = Sha256()
+
+        val transferred = FileInputStream(source).channel.use { channel ->
+            channel.position(100)
+            BinaryFiles.transfer(channel, dest, digest, null)
+        }
+
+        assertEquals(299_900L, transferred)
+        assertEquals(299_900L, digest.length)
+        assertEquals(Sha256.of(dest), digest.hex())
+    }
+}
@@ -0,0 +1,92 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+import org.junit.Assert.*
+
+internal const val EM_386 = 3
+internal const val EM_ARM = 40
+internal const val EM_X86_64 = 62
+internal const val EM_AARCH64 = 183
+
+/**
+ * Little-endian ELF header of an executable without program headers; 64-bit for arm64 and
+ * x86_64 unless [is64] says otherwise.
+ */
+internal fun elfHeader(machine: Int, is64: Boolean = machine == EM_AARCH64 || machine == EM_X86_64): ByteArray {
+    val header = ByteBuffer.allocate(if (is64) 64 else 52).order(ByteOrder.LITTLE_ENDIAN)
+    header.put(byteArrayOf(0x7F, 'E'.code.toByte(), 'L'.code.toByte(), 'F'.code.toByte()))
+    header.put((if (is64) 2 else 1).toByte()).put(1).put(1)
+    header.putShort(16, 3) // ET_DYN
+    header.putShort(18, machine.toShort())
+    return header.array()
+}
+
+class ElfInspectorTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private fun file(bytes: ByteArray): File = tempFolder.newFile().apply { writeBytes(bytes) }
+
+    /**
+     * 64-bit arm64 executable with a single PT_INTERP program header.
+     */
+    private fun withInterpreter(interpreter: String): ByteArray {
+        val path = (interpreter + "\u0000").toByteArray()
+        val elf = ByteBuffer.allocate(64 + 56 + path.size).order(ByteOrder.LITTLE_ENDIAN)
+        elf.put(elfHeader(EM_AARCH64))
+        elf.putLong(32, 64) // e_phoff
+        elf.putShort(54, 56) // e_phentsize
+        elf.putShort(56, 1) // e_phnum
+        elf.putInt(64, 3) // PT_INTERP
+        elf.putLong(64 + 8, 120) // p_offset
+        elf.putLong(64 + 32, path.size.toLong()) // p_filesz
+        elf.position(120)
+        elf.put(path)
+        return elf.array()
+    }
+
+    @Test
+    fun inspect_readsMachineAndClass() {
+        for ((machine, arch) in listOf(EM_AARCH64 to "arm64", EM_ARM to "arm", EM_386 to "x86", EM_X86_64 to "x86_64")) {
+            val info = ElfInspector.inspect(file(elfHeader(machine) + ByteArray(4096)))
+            assertEquals(arch, info.arch)
+            assertEquals(if (arch.contains("64")) 64 else 32, info.bits)
+            assertNull(info.interpreter)
+        }
+    }
+
+    @Test
+    fun inspect_readsInterpreter() {
+        val info = ElfInspector.inspect(file(withInterpreter("/system/bin/linker64")))
+
+        assertEquals("arm64", info.arch)
+        assertEquals("/system/bin/linker64", info.interpreter)
+    }
+
+    @Test
+    fun inspect_matchesHostShell() {
+        val info = ElfInspector.inspect(File("/bin/sh"))
+
+        assertEquals(ElfInspector.archOfAbi(JvmPlatform.abiOf(System.getProperty("os.arch"))), info.arch)
+        assertNotNull(info.interpreter)
+    }
+
+    @Test
+    fun inspect_rejectsMalformedHeaders() {
+        val truncated = withInterpreter("/system/bin/linker64").copyOf(100)
+        for (bytes in listOf("#!/bin/sh\n".toByteArray(), elfHeader(EM_AARCH64, is64 = false), truncated)) {
+            try {
+                ElfInspector.inspect(file(bytes))
+                fail("Accepted " + bytes.size + " bytes")
+            } catch (expected: IOException) {
+            }
+        }
+    }
+}
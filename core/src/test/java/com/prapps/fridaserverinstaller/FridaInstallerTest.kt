@@ -0,0 +1,431 @@
+package com.prapps.fridaserverinstaller
+
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.tukaani.xz.LZMA2Options
+import org.tukaani.xz.XZOutputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.security.MessageDigest
+import java.util.Properties
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+import org.junit.Assert.*
+
+/**
+ * Runs a whole install on the JVM: a local stub stands in for GitHub and a plain shell for su.
+ */
+class FridaInstallerTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private lateinit var server: MockWebServer
+    private lateinit var shell: RootShell
+    private val binary = elfHeader(EM_AARCH64) + Random(3).nextBytes(256 * 1024)
+
+    private lateinit var archive: ByteArray
+    private val assetRequests = AtomicInteger()
+    @Volatile
+    private var publishedDigest = ""
+    @Volatile
+    private var assetDelayMs = 0L
+
+    private class Outcome(val success: String?, val error: String?)
+
+    @Before
+    fun setUp() {
+        val compressed = ByteArrayOutputStream()
+        XZOutputStream(compressed, LZMA2Options(1)).use { it.write(binary) }
+        archive = compressed.toByteArray()
+        publishedDigest = "sha256:" + sha256(archive)
+        server = MockWebServer()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse = when (request.path) {
+                "/releases/latest" -> MockResponse().setBody(
+                    """{"tag_name":"16.5.9","name":"Frida 16.5.9","prerelease":false,"assets":[
+                       {"name":"frida-server-16.5.9-android-arm64.xz","size":${archive.size},
+                        "digest":"$publishedDigest",
+                        "browser_download_url":"${server.url("/frida-server-16.5.9-android-arm64.xz")}"}]}"""
+                )
+                "/frida-server-16.5.9-android-arm64.xz" -> {
+                    assetRequests.incrementAndGet()
+                    MockResponse().setBody(Buffer().write(archive)).setBodyDelay(assetDelayMs, TimeUnit.MILLISECONDS)
+                }
+                else -> MockResponse().setResponseCode(404)
+            }
+        }
+        server.start()
+        shell = RootShell(fakeRootShell().absolutePath)
+    }
+
+    @After
+    fun tearDown() {
+        shell.close()
+        server.shutdown()
+    }
+
+    /**
+     * A plain sh whose `id` reports root, so the install's root check passes without root.
+     * Unless [exec], the sh runs as a child of the "su" process, so like a real `su` client
+     * killing that process leaves the server it started running.
+     */
+    private fun fakeRootShell(exec: Boolean = true): File {
+        val bin = tempFolder.newFolder(if (exec) "bin" else "bin-forking")
+        File(bin, "id").apply {
+            writeText("#!/bin/sh\necho 'uid=0(root) gid=0(root)'\n")
+            setExecutable(true)
+        }
+        return File(bin, "fake-su").apply {
+            writeText("#!/bin/sh\nPATH=${bin.absolutePath}:\$PATH ${if (exec) "exec " else ""}sh\n")
+            setExecutable(true)
+        }
+    }
+
+    private fun sha256(bytes: ByteArray): String =
+        MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+
+    /** The entry of the only version stored under [sha256]. */
+    private fun storeEntry(platform: JvmPlatform, sha256: String): Properties = Properties().apply {
+        val entries = File(platform.filesDir, "frida/store/$sha256")
+            .listFiles { _, name -> name.startsWith("entry-") && name.endsWith(".properties") }!!
+        assertEquals(1, entries.size)
+        entries[0].inputStream().use { load(it) }
+    }
+
+    private fun install(installer: FridaInstaller): Outcome =
+        await { installer.installFridaServer(it, true) }
+
+    /**
+     * Runs an operation to completion, including the cleanup it does after reporting, so the
+     * next operation in a test never races it for the staging file.
+     */
+    private fun await(start: (FridaInstaller.InstallCallback) -> InstallerOperation): Outcome =
+        begin(start).invoke()
+
+    /** Starts an operation and returns a function that waits for it like [await]. */
+    private fun begin(start: (FridaInstaller.InstallCallback) -> InstallerOperation): () -> Outcome {
+        val done = CountDownLatch(2)
+        var outcome: Outcome? = null
+        start(object : FridaInstaller.InstallCallback {
+            override fun onProgress(message: String) {}
+            override fun onTransferProgress(progress: ProgressReporter.Progress) {}
+            override fun onSuccess(message: String) {
+                outcome = Outcome(message, null)
+                done.countDown()
+            }
+            override fun onError(error: String) {
+                outcome = Outcome(null, error)
+                done.countDown()
+            }
+        }).whenFinished { done.countDown() }
+        return {
+            assertTrue(done.await(30, TimeUnit.SECONDS))
+            outcome!!
+        }
+    }
+
+    private fun awaitAssetRequests(count: Int) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10)
+        while (assetRequests.get() < count) {
+            assertTrue(System.nanoTime() < deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    @Test
+    fun installLatest_fromLocalStub() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a"))
+        val installer = FridaInstaller(platform)
+        installer.setReleasesUrl(server.url("/releases").toString())
+
+        val outcome = install(installer)
+
+        assertNull(outcome.error)
+        assertEquals("Frida server 16.5.9 installed successfully!", outcome.success)
+        assertTrue(installer.isServerAlreadyInstalled)
+        assertArrayEquals(binary, File(platform.filesDir, "frida/frida-server").readBytes())
+        assertEquals("arm64", installer.deviceArchitecture)
+    }
+
+    @Test
+    fun prefetchLatest_storesReleaseSoInstallSkipsDownload() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a"))
+        val prefetcher = FridaInstaller(platform)
+        prefetcher.setReleasesUrl(server.url("/releases").toString())
+
+        val prefetched = await { prefetcher.prefetchLatest(it) }
+
+        assertNull(prefetched.error)
+        assertEquals(1, assetRequests.get())
+        assertFalse(prefetcher.isServerAlreadyInstalled)
+        assertEquals("✅ Frida server 16.5.9 (arm64) is already prefetched", await { prefetcher.prefetchLatest(it) }.success)
+
+        val outcome = install(prefetcher)
+
+        assertEquals("Frida server 16.5.9 activated from local store!", outcome.success)
+        assertEquals(1, assetRequests.get())
+        assertArrayEquals(binary, File(platform.filesDir, "frida/frida-server").readBytes())
+        assertTrue(File(platform.filesDir, "frida/frida-server").canExecute())
+    }
+
+    @Test
+    fun prefetchLatest_yieldsToInstalls() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a"))
+        val installer = FridaInstaller(platform)
+        installer.setReleasesUrl(server.url("/releases").toString())
+        assetDelayMs = 1000
+
+        // An install started during a prefetch cancels it instead of racing it for the store
+        val prefetch = begin { installer.prefetchLatest(it) }
+        awaitAssetRequests(1)
+        assertEquals("Frida server 16.5.9 installed successfully!", install(installer).success)
+        assertNotNull(prefetch().error)
+
+        // A prefetch started during an install gives up straight away
+        val empty = FridaInstaller(JvmPlatform(tempFolder.newFolder("device-2"), shell, arrayOf("arm64-v8a")))
+        empty.setReleasesUrl(server.url("/releases").toString())
+        val install = begin { empty.installFridaServer(it, true) }
+        awaitAssetRequests(3)
+        assertEquals("Prefetch skipped: an install is running", await { empty.prefetchLatest(it) }.error)
+        assertNull(install().error)
+    }
+
+    @Test
+    fun install_recordsDigestsTakenWhileStreaming() {
+        for (streaming in listOf(true, false)) {
+            val platform = JvmPlatform(tempFolder.newFolder("device-$streaming"), shell, arrayOf("arm64-v8a"))
+            val installer = FridaInstaller(platform)
+            installer.setReleasesUrl(server.url("/releases").toString())
+            installer.setStreamingInstall(streaming)
+
+            assertNull(install(installer).error)
+
+            val entry = storeEntry(platform, sha256(binary))
+            assertEquals(sha256(binary), entry.getProperty("sha256"))
+            assertEquals(sha256(archive), entry.getProperty("archiveSha256"))
+        }
+    }
+
+    @Test
+    fun install_rejectsArchiveNotMatchingPublishedDigest() {
+        publishedDigest = "sha256:" + "0".repeat(64)
+        val expectedError = "SHA-256 mismatch: release lists ${"0".repeat(64)}, downloaded archive is ${sha256(archive)}"
+        // Fused streaming, download then extract, and segmented (digested by reading the file back)
+        for ((streaming, segments) in listOf(true to 1, false to 1, false to 4)) {
+            val platform = JvmPlatform(tempFolder.newFolder("device-$streaming-$segments"), shell, arrayOf("arm64-v8a"))
+            val installer = FridaInstaller(platform)
+            installer.setReleasesUrl(server.url("/releases").toString())
+            installer.setStreamingInstall(streaming)
+            installer.setDownloadSegments(segments)
+
+            val outcome = install(installer)
+
+            assertEquals("Installation failed: $expectedError", outcome.error)
+            assertFalse(installer.isServerAlreadyInstalled)
+            assertFalse(File(platform.filesDir, "frida/frida-server").exists())
+        }
+
+        val platform = JvmPlatform(tempFolder.newFolder("device-prefetch"), shell, arrayOf("arm64-v8a"))
+        val prefetcher = FridaInstaller(platform)
+        prefetcher.setReleasesUrl(server.url("/releases").toString())
+        assertEquals("Prefetch failed: $expectedError", await { prefetcher.prefetchLatest(it) }.error)
+    }
+
+    @Test
+    fun installManualChannel_sniffsFormatAndLeavesNoCopies() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a"))
+        val installer = FridaInstaller(platform)
+        // Named without .xz: the format comes from the header
+        val picked = File(tempFolder.root, "picked").apply {
+            XZOutputStream(outputStream(), LZMA2Options(1)).use { it.write(binary) }
+        }
+
+        val outcome = await { installer.installFromManualChannel("picked", FileInputStream(picked).channel, it) }
+
+        assertNull(outcome.error)
+        assertArrayEquals(binary, File(platform.filesDir, "frida/frida-server").readBytes())
+        val leftovers = File(platform.filesDir, "frida").list()!!.filter { it.startsWith("frida-server.") || it.startsWith("temp") }
+        assertEquals(emptyList<String>(), leftovers)
+    }
+
+    @Test
+    fun installManualChannel_checksExpectedSha256() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a"))
+        val installer = FridaInstaller(platform)
+        val picked = File(tempFolder.root, "picked").apply {
+            XZOutputStream(outputStream(), LZMA2Options(1)).use { it.write(binary) }
+        }
+
+        val mismatch = await {
+            installer.installFromManualChannel("picked", FileInputStream(picked).channel, "0".repeat(64), it)
+        }
+        assertTrue(mismatch.error!!.startsWith("SHA-256 mismatch"))
+        assertFalse(installer.isServerAlreadyInstalled)
+
+        // Either the picked archive's digest or the decoded binary's is accepted
+        for (expected in listOf(sha256(picked.readBytes()).uppercase(), sha256(binary))) {
+            val outcome = await {
+                installer.installFromManualChannel("picked", FileInputStream(picked).channel, expected, it)
+            }
+            assertNull(outcome.error)
+        }
+        assertEquals(sha256(picked.readBytes()), storeEntry(platform, sha256(binary)).getProperty("archiveSha256"))
+    }
+
+    @Test
+    fun installManualChannel_recordsArchitectureFromElfHeader() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a", "armeabi-v7a"))
+        val installer = FridaInstaller(platform)
+        val picked = File(tempFolder.root, "picked").apply { writeBytes(elfHeader(EM_ARM) + Random(4).nextBytes(1024)) }
+
+        val outcome = await { installer.installFromManualChannel("picked", FileInputStream(picked).channel, it) }
+
+        assertNull(outcome.error)
+        assertEquals("Manual Installation (picked) (arm)", installer.installedServerInfo)
+    }
+
+    @Test
+    fun installManualChannel_rejectsUnsupportedArchitecture() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a"))
+        val installer = FridaInstaller(platform)
+        val picked = File(tempFolder.root, "picked").apply { writeBytes(elfHeader(EM_X86_64) + Random(4).nextBytes(1024)) }
+
+        val outcome = await { installer.installFromManualChannel("picked", FileInputStream(picked).channel, it) }
+
+        assertEquals("Binary is built for x86_64, but this device supports arm64", outcome.error)
+        assertFalse(installer.isServerAlreadyInstalled)
+    }
+
+    @Test
+    fun installManualChannel_rejectsUnknownFormat() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell, arrayOf("arm64-v8a"))
+        val installer = FridaInstaller(platform)
+        val picked = File(tempFolder.root, "notes.txt").apply { writeText("not a server") }
+
+        val outcome = await { installer.installFromManualChannel("notes.txt", FileInputStream(picked).channel, it) }
+
+        assertEquals("Selected file is neither an XZ archive nor an ELF binary", outcome.error)
+        assertFalse(installer.isServerAlreadyInstalled)
+    }
+
+    /**
+     * A "server" that is a copy of the host's sh with [name] appended, so every version has its
+     * own content. Given frida-server's `-l host:port`, sh runs the script of that name in the
+     * working directory, which starts [FakeFridaServer]; readiness is only reached once the new
+     * process listens.
+     */
+    private fun hostServer(name: String, executable: File = File("/bin/sh")): File =
+        File(tempFolder.root, name).apply { writeBytes(executable.readBytes() + "\n# $name\n".toByteArray()) }
+
+    private fun installPicked(installer: FridaInstaller, picked: File): Outcome =
+        await { installer.installFromManualChannel(picked.name, FileInputStream(picked).channel, it) }
+
+    private fun runningInstaller(platform: JvmPlatform): FridaInstaller {
+        val installer = FridaInstaller(platform)
+        val address = "127.0.0.1:" + ServerSocket(0).use { it.localPort }
+        val java = File(System.getProperty("java.home"), "bin/java").absolutePath
+        val classpath = System.getProperty("java.class.path")
+        File(platform.serverWorkingDir, address)
+            .writeText("exec '$java' -cp '$classpath' ${FakeFridaServer::class.java.name} -l $address\n")
+        installer.setListenAddress("127.0.0.1", address.substringAfter(':').toInt())
+        installer.setReadinessTimeout(10_000)
+        installer.setStopGracePeriod(1000)
+        assertNull(installPicked(installer, hostServer("v1")).error)
+        assertNull(await { installer.startFridaServer(it) }.error)
+        return installer
+    }
+
+    @Test
+    fun stagedUpgrade_switchesRunningServer() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell)
+        val installer = runningInstaller(platform)
+        try {
+            val outcome = installPicked(installer, hostServer("v2"))
+
+            assertNull(outcome.error)
+            assertTrue(File(platform.filesDir, "frida/frida-server").readText().contains("# v2"))
+            assertEquals(ServerSupervisor.State.RUNNING, installer.serverStatus.state)
+            val switchSpan = installer.installTraces.last().spans.single { it.name == "switch" }
+            assertEquals(InstallTrace.Outcome.OK, switchSpan.outcome)
+        } finally {
+            installer.stopFridaServer()
+        }
+    }
+
+    @Test
+    fun stagedUpgrade_rollsBackWhenNewServerNeverBecomesReady() {
+        val platform = JvmPlatform(tempFolder.newFolder("device"), shell)
+        val installer = runningInstaller(platform)
+        try {
+            val outcome = installPicked(installer, hostServer("broken", File("/bin/false")))
+
+            assertTrue(outcome.error!!.startsWith("Upgrade rolled back"))
+            assertTrue(File(platform.filesDir, "frida/frida-server").readText().contains("# v1"))
+            assertEquals(ServerSupervisor.State.RUNNING, installer.serverStatus.state)
+        } finally {
+            installer.stopFridaServer()
+        }
+    }
+
+    @Test
+    fun startServer_terminatesServerThatNeverBecomesReady() {
+        val forkingShell = RootShell(fakeRootShell(exec = false).absolutePath)
+        val platform = JvmPlatform(tempFolder.newFolder("device"), forkingShell)
+        val installer = FridaInstaller(platform)
+        val port = ServerSocket(0).use { it.localPort }
+        val pidFile = File(tempFolder.root, "server.pid")
+        // Runs but never listens
+        File(platform.serverWorkingDir, "127.0.0.1:$port").writeText("echo $$ > '$pidFile'\nexec sleep 30\n")
+        installer.setListenAddress("127.0.0.1", port)
+        installer.setReadinessTimeout(500)
+        installer.setStopGracePeriod(1000)
+        try {
+            assertNull(installPicked(installer, hostServer("v1")).error)
+
+            val outcome = await { installer.startFridaServer(it) }
+
+            assertTrue(outcome.error!!.startsWith("❌ Failed to start Frida server"))
+            val pid = pidFile.readText().trim()
+            assertNotEquals(0, ProcessBuilder("kill", "-0", pid).start().waitFor())
+        } finally {
+            installer.stopFridaServer()
+            forkingShell.close()
+        }
+    }
+
+    @Test
+    fun jvmPlatform_mapsOsArchToAbi() {
+        assertEquals("x86_64", JvmPlatform.abiOf("amd64"))
+        assertEquals("arm64-v8a", JvmPlatform.abiOf("aarch64"))
+        assertEquals("armeabi-v7a", JvmPlatform.abiOf("arm"))
+    }
+}
+
+/**
+ * Stand-in for frida-server: listens on the `-l host:port` address until killed.
+ */
+object FakeFridaServer {
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val (host, port) = args[args.indexOf("-l") + 1].split(":")
+        ServerSocket(port.toInt(), 50, InetAddress.getByName(host)).use { socket ->
+            while (true) {
+                socket.accept().close()
+            }
+        }
+    }
+}
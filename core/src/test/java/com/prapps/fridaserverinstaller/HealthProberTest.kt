@@ -0,0 +1,104 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.After
+import org.junit.Test
+import java.net.ServerSocket
+import kotlin.concurrent.thread
+
+import org.junit.Assert.*
+
+class HealthProberTest {
+    private val prober = HealthProber().apply { setTimeoutMs(500) }
+    private val sockets = mutableListOf<ServerSocket>()
+
+    @After
+    fun tearDown() {
+        prober.stop()
+        sockets.forEach { it.close() }
+    }
+
+    /** Answers every connection with a WebSocket upgrade, like frida-server. */
+    private fun fakeServer(): Int {
+        val server = ServerSocket(0).also { sockets.add(it) }
+        thread(isDaemon = true) {
+            while (!server.isClosed) {
+                val client = try {
+                    server.accept()
+                } catch (e: Exception) {
+                    break
+                }
+                client.use {
+                    it.getInputStream().bufferedReader().let { reader ->
+                        while (!reader.readLine().isNullOrEmpty()) {
+                        }
+                    }
+                    it.getOutputStream().write("HTTP/1.1 101 Switching Protocols\r\n\r\n".toByteArray())
+                }
+            }
+        }
+        return server.localPort
+    }
+
+    private fun unusedPort(): Int = ServerSocket(0).use { it.localPort }
+
+    @Test
+    fun answeringServer_isHealthyWithLatencies() {
+        prober.start("0.0.0.0", fakeServer(), 60_000) { true }
+
+        var snapshot = prober.probe()
+        repeat(4) { snapshot = prober.probe() }
+
+        assertEquals(HealthProber.Health.HEALTHY, snapshot.health)
+        assertEquals(0, snapshot.failures)
+        assertNull(snapshot.lastError)
+        assertTrue(snapshot.connectPercentilesNanos[0] > 0)
+        assertTrue(snapshot.handshakePercentilesNanos[2] >= snapshot.handshakePercentilesNanos[0])
+    }
+
+    @Test
+    fun aliveProcessRefusingConnections_becomesDegradedAfterRepeatedFailures() {
+        prober.start("127.0.0.1", unusedPort(), 60_000) { true }
+
+        val first = prober.probe()
+        prober.probe()
+        val third = prober.probe()
+
+        assertNotEquals(HealthProber.Health.DEGRADED, first.health)
+        assertEquals(HealthProber.Health.DEGRADED, third.health)
+        assertEquals(3, third.consecutiveFailures)
+        assertNotNull(third.lastError)
+    }
+
+    @Test
+    fun deadProcess_isDown() {
+        prober.start("127.0.0.1", unusedPort(), 60_000) { false }
+
+        assertEquals(HealthProber.Health.DOWN, prober.probe().health)
+    }
+
+    @Test
+    fun silentListener_failsHandshake() {
+        val server = ServerSocket(0).also { sockets.add(it) }
+        prober.start("127.0.0.1", server.localPort, 60_000) { true }
+
+        val snapshot = prober.probe()
+
+        assertEquals(1, snapshot.failures)
+        assertEquals(0, snapshot.handshakePercentilesNanos[0])
+        assertTrue(snapshot.connectPercentilesNanos[0] > 0)
+    }
+
+    @Test
+    fun stop_clearsLastSnapshot() {
+        prober.start("127.0.0.1", fakeServer(), 60_000) { true }
+        assertEquals(HealthProber.Health.HEALTHY, prober.probe().health)
+        val published = mutableListOf<HealthProber.Snapshot>()
+        prober.addListener { published.add(it) }
+
+        prober.stop()
+
+        assertSame(HealthProber.Snapshot.UNKNOWN, prober.snapshot)
+        assertEquals(listOf(HealthProber.Snapshot.UNKNOWN), published)
+        assertSame(HealthProber.Snapshot.UNKNOWN, prober.probe())
+    }
+}
@@ -0,0 +1,103 @@
+package com.prapps.fridaserverinstaller
+
+import com.google.gson.JsonParser
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.junit.Assert.*
+
+class InstallTracerTest {
+    private val tracer = InstallTracer(3)
+
+    @Test
+    fun spans_recordOutcomeBytesAndDuration() {
+        val trace = tracer.begin("Install 16.0.0")
+        trace.span("download").use { span ->
+            Thread.sleep(20)
+            span.bytes(1234).ok()
+        }
+        try {
+            trace.span("decode").use { throw IOException("corrupt") }
+        } catch (e: IOException) {
+            // expected
+        }
+        trace.span("chmod").use { it.fail("chmod failed") }
+        tracer.finish(trace, InstallTrace.Outcome.FAILED, "Failed to set executable permissions")
+
+        val spans = trace.spans
+        assertEquals(listOf("download", "decode", "chmod"), spans.map { it.name })
+        assertEquals(InstallTrace.Outcome.OK, spans[0].outcome)
+        assertEquals(1234, spans[0].bytes)
+        assertTrue(spans[0].durationMs >= 20)
+        assertEquals(InstallTrace.Outcome.FAILED, spans[1].outcome)
+        assertEquals(-1, spans[1].bytes)
+        assertEquals("chmod failed", spans[2].error)
+        assertTrue(spans[2].startOffsetMs >= spans[0].durationMs)
+        assertEquals(InstallTrace.Outcome.FAILED, trace.outcome)
+    }
+
+    @Test
+    fun firstReportedOutcome_wins() {
+        val trace = tracer.begin("Install latest")
+        tracer.finish(trace, InstallTrace.Outcome.OK, "installed")
+        tracer.finish(trace, InstallTrace.Outcome.FAILED, null)
+
+        assertEquals(InstallTrace.Outcome.OK, trace.outcome)
+        assertEquals("installed", trace.message)
+        assertEquals(1, tracer.traces.size)
+    }
+
+    @Test
+    fun onlyLastTracesAreKept() {
+        for (i in 1..5) {
+            tracer.finish(tracer.begin("Install $i"), InstallTrace.Outcome.OK, null)
+        }
+
+        assertEquals(listOf("Install 3", "Install 4", "Install 5"), tracer.traces.map { it.name })
+    }
+
+    @Test
+    fun spanInCancelledOperation_isCancelled() {
+        val trace = tracer.begin("Install latest")
+        val inside = CountDownLatch(1)
+        val operation = InstallerOperation.launch {
+            trace.span("download").use {
+                inside.countDown()
+                try {
+                    Thread.sleep(60_000)
+                } catch (e: InterruptedException) {
+                    // cancelled
+                }
+            }
+        }
+        assertTrue(inside.await(5, TimeUnit.SECONDS))
+        operation.cancel()
+        val done = CountDownLatch(1)
+        operation.whenFinished { done.countDown() }
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+
+        assertEquals(InstallTrace.Outcome.CANCELLED, trace.spans[0].outcome)
+    }
+
+    @Test
+    fun json_containsTracesAndSpans() {
+        val trace = tracer.begin("Install manual file frida-server.xz")
+        trace.span("copy").use { it.bytes(10).ok() }
+        trace.span("root-check").use { it.ok() }
+        tracer.finish(trace, InstallTrace.Outcome.OK, "done")
+
+        val json = JsonParser.parseString(tracer.toJson()).asJsonArray
+
+        assertEquals(1, json.size())
+        val exported = json[0].asJsonObject
+        assertEquals("Install manual file frida-server.xz", exported["name"].asString)
+        assertEquals("OK", exported["outcome"].asString)
+        val spans = exported["spans"].asJsonArray
+        assertEquals("copy", spans[0].asJsonObject["name"].asString)
+        assertEquals(10, spans[0].asJsonObject["bytes"].asLong)
+        assertFalse(spans[1].asJsonObject.has("bytes"))
+        assertTrue(spans[1].asJsonObject["durationMs"].asLong >= 0)
+    }
+}
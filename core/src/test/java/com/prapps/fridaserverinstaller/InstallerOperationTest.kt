@@ -0,0 +1,175 @@
+package com.prapps.fridaserverinstaller
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+
+import org.junit.Assert.*
+
+class InstallerOperationTest {
+    private lateinit var server: MockWebServer
+    private val client = OkHttpClient.Builder()
+        .addInterceptor(InstallerOperation.callInterceptor())
+        .build()
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun cancel_interruptsBlockedWorker() {
+        val started = CountDownLatch(1)
+        val interrupted = CountDownLatch(1)
+        val operation = InstallerOperation.launch {
+            started.countDown()
+            try {
+                Thread.sleep(60_000)
+            } catch (e: InterruptedException) {
+                interrupted.countDown()
+            }
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS))
+        operation.cancel()
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS))
+        assertTrue(operation.isCancelled)
+    }
+
+    @Test
+    fun cancel_abortsInFlightHttpCall() {
+        // Headers arrive, then the body trickles far slower than the test waits
+        server.enqueue(
+            MockResponse()
+                .setBody("x".repeat(64 * 1024))
+                .throttleBody(1, 100, TimeUnit.MILLISECONDS)
+        )
+        val failure = AtomicReference<Throwable>()
+        val reading = CountDownLatch(1)
+        val operation = InstallerOperation.launch {
+            try {
+                client.newCall(Request.Builder().url(server.url("/asset")).build()).execute().use { response ->
+                    reading.countDown()
+                    response.body!!.bytes()
+                }
+            } catch (e: IOException) {
+                failure.set(e)
+            }
+        }
+
+        assertTrue(reading.await(5, TimeUnit.SECONDS))
+        val cancelledAt = System.nanoTime()
+        operation.cancel()
+        val done = CountDownLatch(1)
+        operation.whenFinished { done.countDown() }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cancelledAt) < 2000)
+        assertNotNull(failure.get())
+    }
+
+    @Test
+    fun stageDeadline_cancelsWithReason() {
+        val failure = AtomicReference<Throwable>()
+        val operation = InstallerOperation.launch {
+            InstallerOperation.current().stage("Extraction", 50).use {
+                try {
+                    while (true) {
+                        InstallerOperation.checkCancelled()
+                        Thread.sleep(5)
+                    }
+                } catch (e: InterruptedIOException) {
+                    failure.set(e)
+                } catch (e: InterruptedException) {
+                    failure.set(e)
+                }
+            }
+        }
+        val done = CountDownLatch(1)
+        operation.whenFinished { done.countDown() }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertNotNull(failure.get())
+        assertEquals("Extraction exceeded its 50ms deadline", operation.cancelReason)
+    }
+
+    @Test
+    fun closedStage_doesNotCancel() {
+        val operation = InstallerOperation.launch {
+            InstallerOperation.current().stage("Download", 50).use { }
+            Thread.sleep(150)
+        }
+        val done = CountDownLatch(1)
+        operation.whenFinished { done.countDown() }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertFalse(operation.isCancelled)
+    }
+
+    @Test
+    fun cancelledBeforeStart_skipsBody() {
+        val blockers = CountDownLatch(1)
+        val occupied = (1..InstallerOperation.MAX_CONCURRENT_OPERATIONS).map {
+            InstallerOperation.launch { blockers.await() }
+        }
+        val ran = CountDownLatch(1)
+        val queued = InstallerOperation.launch { ran.countDown() }
+        queued.cancel()
+        blockers.countDown()
+
+        val done = CountDownLatch(1)
+        queued.whenFinished { done.countDown() }
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertEquals(1, ran.count)
+        assertTrue(occupied.none { it.isCancelled })
+    }
+
+    @Test
+    fun whenFinished_runsImmediatelyAfterCompletion() {
+        val operation = InstallerOperation.launch { }
+        val first = CountDownLatch(1)
+        operation.whenFinished { first.countDown() }
+        assertTrue(first.await(5, TimeUnit.SECONDS))
+
+        var ranInline = false
+        operation.whenFinished { ranInline = true }
+        assertTrue(ranInline)
+        assertTrue(operation.isFinished)
+    }
+
+    @Test
+    fun current_isOnlySeenByWorkersThatAreHandedTheOperation() {
+        val seen = AtomicReference<List<InstallerOperation?>>()
+        val done = CountDownLatch(1)
+        val operation = InstallerOperation.launch {
+            val owner = InstallerOperation.current()
+            var spawned: InstallerOperation? = owner
+            var handed: InstallerOperation? = null
+            val worker = Thread {
+                spawned = InstallerOperation.current()
+                handed = InstallerOperation.callAs(owner) { InstallerOperation.current() }
+            }
+            worker.start()
+            worker.join()
+            seen.set(listOf(owner, spawned, handed))
+            done.countDown()
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf(operation, null, operation), seen.get())
+    }
+}
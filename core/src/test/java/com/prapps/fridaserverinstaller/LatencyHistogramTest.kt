@@ -0,0 +1,53 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+class LatencyHistogramTest {
+    @Test
+    fun percentiles_areWithinBucketPrecision() {
+        val histogram = LatencyHistogram()
+        for (micros in 1..1000L) {
+            histogram.recordNanos(micros * 1000)
+        }
+
+        assertEquals(1000, histogram.count)
+        assertNear(500_000, histogram.percentileNanos(50.0))
+        assertNear(950_000, histogram.percentileNanos(95.0))
+        assertNear(990_000, histogram.percentileNanos(99.0))
+        assertEquals(1_000_000, histogram.percentileNanos(100.0))
+    }
+
+    @Test
+    fun everyValue_landsInABucketThatContainsIt() {
+        var value = 1L
+        while (value in 1..Long.MAX_VALUE / 3) {
+            for (candidate in listOf(value - 1, value, value + 1, value * 3 / 2)) {
+                val bucket = LatencyHistogram.bucketOf(candidate)
+                assertTrue(LatencyHistogram.upperBoundOf(bucket) >= candidate)
+                if (bucket > 0) {
+                    assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < candidate)
+                }
+            }
+            value *= 2
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)))
+    }
+
+    @Test
+    fun memory_doesNotGrowWithSamples() {
+        val histogram = LatencyHistogram()
+        repeat(100_000) { histogram.recordNanos((it % 5000) * 1000L) }
+
+        assertEquals(100_000, histogram.count)
+        assertEquals(4_999_000, histogram.maxNanos)
+        histogram.reset()
+        assertEquals(0, histogram.percentileNanos(99.0))
+    }
+
+    private fun assertNear(expected: Long, actual: Long) {
+        val tolerance = expected / LatencyHistogram.SUB_BUCKETS
+        assertTrue("$actual not within $tolerance of $expected", Math.abs(actual - expected) <= tolerance)
+    }
+}
@@ -0,0 +1,106 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+
+import org.junit.Assert.*
+
+class LogStoreTest {
+    @Test
+    fun snapshot_keepsNewestLinesUpToCapacity() {
+        val store = LogStore(4)
+        (0 until 10).forEach { store.append("line $it") }
+
+        val snapshot = store.snapshot()
+
+        assertEquals(4, snapshot.size())
+        assertEquals(6L, snapshot.firstSequence)
+        assertEquals(listOf("line 6", "line 7", "line 8", "line 9"), (0 until 4).map { snapshot.get(it).text })
+        assertEquals(6L, store.droppedCount)
+    }
+
+    @Test
+    fun snapshot_isNotAffectedByLaterAppendsWithinCapacity() {
+        val store = LogStore(8)
+        store.append("a")
+        store.append("b")
+        val snapshot = store.snapshot()
+
+        store.append("c")
+
+        assertEquals(2, snapshot.size())
+        assertEquals("b", snapshot.get(1).text)
+        assertEquals(3, store.snapshot().size())
+    }
+
+    @Test
+    fun snapshot_readsOverwrittenLinesAsNull() {
+        val store = LogStore(2)
+        store.append("a")
+        store.append("b")
+        val snapshot = store.snapshot()
+
+        store.append("c")
+
+        assertNull(snapshot.get(0))
+        assertEquals("b", snapshot.get(1).text)
+    }
+
+    @Test
+    fun window_startsAtRequestedSequence() {
+        val store = LogStore(100)
+        (0 until 50).forEach { store.append("line $it") }
+
+        val window = store.window(20, 5)
+
+        assertEquals((20L until 25L).toList(), window.map { it.sequence })
+        assertEquals("line 20", window.first().text)
+        // A sequence already overwritten starts from the oldest retained line
+        val small = LogStore(10)
+        (0 until 50).forEach { small.append("line $it") }
+        assertEquals(40L, small.window(0, 3).first().sequence)
+    }
+
+    @Test
+    fun clear_hidesExistingLines() {
+        val store = LogStore(10)
+        store.append("old")
+        store.clear()
+        store.append("new")
+
+        val snapshot = store.snapshot()
+        assertEquals(1, snapshot.size())
+        assertEquals("new", snapshot.get(0).text)
+    }
+
+    @Test
+    fun append_truncatesLongLines() {
+        val store = LogStore(2)
+        store.append("x".repeat(LogStore.MAX_LINE_LENGTH * 3))
+
+        assertEquals(LogStore.MAX_LINE_LENGTH + 1, store.snapshot().get(0).text.length)
+    }
+
+    @Test
+    fun append_fromManyThreadsLosesNothing() {
+        val store = LogStore(100_000)
+        val start = CountDownLatch(1)
+        val writers = (0 until 4).map { writer ->
+            thread {
+                start.await()
+                repeat(20_000) { store.append("$writer:$it") }
+            }
+        }
+        start.countDown()
+        writers.forEach { it.join() }
+
+        val snapshot = store.snapshot()
+        assertEquals(80_000, snapshot.size())
+        val perWriter = (0 until snapshot.size()).map { snapshot.get(it).text }.groupBy { it.substringBefore(':') }
+        for ((_, lines) in perWriter) {
+            // Each writer's own lines stay in order
+            assertEquals(lines.map { it.substringAfter(':').toInt() }.sorted(), lines.map { it.substringAfter(':').toInt() })
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.tukaani.xz.LZMA2Options
+import org.tukaani.xz.XZOutputStream
+import java.io.File
+import java.io.FileInputStream
+import kotlin.random.Random
+
+import org.junit.Assert.*
+
+class ParallelXzDecoderTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    /**
+     * Semi-compressible data, roughly like an executable: random words from a small vocabulary.
+     */
+    private fun sampleData(size: Int): ByteArray {
+        val random = Random(99)
+        val words = List(256) { random.nextBytes(random.nextInt(4, 24)) }
+        val data = ByteArray(size)
+        var offset = 0
+        while (offset < size) {
+            val word = words[random.nextInt(words.size)]
+            val n = minOf(word.size, size - offset)
+            System.arraycopy(word, 0, data, offset, n)
+            offset += n
+        }
+        return data
+    }
+
+    private fun compress(data: ByteArray, blockSize: Int): File {
+        val file = tempFolder.newFile()
+        XZOutputStream(file.outputStream(), LZMA2Options(1)).use { out ->
+            var offset = 0
+            while (offset < data.size) {
+                val n = minOf(blockSize, data.size - offset)
+                out.write(data, offset, n)
+                offset += n
+                if (offset < data.size) {
+                    out.endBlock()
+                }
+            }
+        }
+        return file
+    }
+
+    @Test
+    fun decode_multiBlockMatchesInput() {
+        val data = sampleData(3 * 1024 * 1024 + 17)
+        val xz = compress(data, 512 * 1024)
+        val output = File(tempFolder.root, "out")
+
+        val written = ParallelXzDecoder.decode(xz, output, 4)
+
+        assertEquals(data.size.toLong(), written)
+        assertArrayEquals(data, output.readBytes())
+    }
+
+    @Test
+    fun decode_multiBlockDigestsWholeOutput() {
+        val data = sampleData(3 * 1024 * 1024 + 17)
+        val xz = compress(data, 512 * 1024)
+        val output = File(tempFolder.root, "out")
+        val digest = Sha256()
+
+        ParallelXzDecoder.decode(xz, output, 4, digest, null)
+
+        assertEquals(data.size.toLong(), digest.length)
+        assertEquals(Sha256.of(output), digest.hex())
+    }
+
+    @Test
+    fun decode_singleBlockFallsBackToSequential() {
+        val data = sampleData(256 * 1024)
+        val xz = compress(data, data.size)
+        val output = File(tempFolder.root, "out")
+
+        ParallelXzDecoder.decode(xz, output, 4)
+
+        assertArrayEquals(data, output.readBytes())
+    }
+
+    @Test
+    fun decodeChannel_decodesFromCurrentPosition() {
+        val data = sampleData(512 * 1024)
+        val xz = compress(data, 128 * 1024)
+        // Leading bytes before the archive, as if the channel had been partly consumed
+        val padded = File(tempFolder.root, "padded").apply { writeBytes(ByteArray(10) + xz.readBytes()) }
+        val output = File(tempFolder.root, "out")
+        var lastReport = 0L
+
+        val written = FileInputStream(padded).channel.use { channel ->
+            channel.position(10)
+            ParallelXzDecoder.decodeChannel(channel, output, 8192) { bytes, total ->
+                assertEquals(xz.length(), total)
+                lastReport = bytes
+            }
+        }
+
+        assertEquals(data.size.toLong(), written)
+        assertArrayEquals(data, output.readBytes())
+        assertEquals(xz.length(), lastReport)
+    }
+}
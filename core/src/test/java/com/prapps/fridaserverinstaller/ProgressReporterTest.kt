@@ -0,0 +1,84 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+class ProgressReporterTest {
+    private var now = 0L
+    private val updates = mutableListOf<ProgressReporter.Progress>()
+
+    private fun reporter() = ProgressReporter(ProgressReporter.Phase.DOWNLOAD, { updates.add(it) }, 100, 1) { now }
+
+    @Test
+    fun onProgress_coalescesPerReadUpdates() {
+        val reporter = reporter()
+        val total = 40L * 1024 * 1024
+        var bytes = 0L
+        var calls = 0
+        // 4 KB reads at ~8 MB/s: one call every 0.5 ms
+        while (bytes < total) {
+            bytes += 4096
+            now += if (calls % 2 == 0) 1 else 0
+            reporter.onProgress(bytes, total)
+            calls++
+        }
+
+        assertEquals(10240, calls)
+        assertTrue("got ${updates.size} updates", updates.size in 100..160)
+        assertEquals(100, updates.last().percent)
+        assertEquals(total, updates.last().bytes)
+    }
+
+    @Test
+    fun onProgress_emitsOnIntervalWithoutPercentChange() {
+        val reporter = reporter()
+        val total = 1000L * 1024 * 1024
+        for (i in 1..50) {
+            now += 20
+            reporter.onProgress(i * 1024L, total)
+        }
+
+        // 1 s of sub-percent progress: first report plus one every 100 ms
+        assertEquals(10, updates.size)
+        assertTrue(updates.all { it.percent == 0 })
+    }
+
+    @Test
+    fun onProgress_computesSmoothedThroughputAndEta() {
+        val reporter = reporter()
+        val total = 10L * 1024 * 1024
+        val rate = 1024L * 1024 // 1 MB/s
+        for (step in 0..40) {
+            reporter.onProgress(step * rate / 10, total)
+            now += 100
+        }
+
+        val last = updates.last()
+        assertEquals(rate.toDouble(), last.bytesPerSecond.toDouble(), rate * 0.01)
+        val remainingMs = (total - last.bytes) * 1000 / rate
+        assertEquals(remainingMs.toDouble(), last.etaMs.toDouble(), remainingMs * 0.02 + 1)
+    }
+
+    @Test
+    fun onProgress_baselinesAtResumedOffset() {
+        val reporter = reporter()
+        val total = 10L * 1024 * 1024
+        reporter.onProgress(8L * 1024 * 1024, total)
+        now += 1000
+        reporter.onProgress(8L * 1024 * 1024 + 100 * 1024, total)
+
+        assertEquals(100L * 1024, updates.last().bytesPerSecond)
+    }
+
+    @Test
+    fun onProgress_ignoresStaleConcurrentReports() {
+        val reporter = reporter()
+        reporter.onProgress(500, 1000)
+        now += 200
+        reporter.onProgress(400, 1000)
+
+        assertEquals(1, updates.size)
+        assertEquals(500, updates.single().bytes)
+    }
+}
@@ -0,0 +1,87 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.After
+import org.junit.Test
+import java.net.ServerSocket
+import kotlin.concurrent.thread
+
+import org.junit.Assert.*
+
+class ReadinessProbeTest {
+    private val process: Process = ProcessBuilder("sh", "-c", "sleep 30").start()
+
+    @After
+    fun tearDown() {
+        process.destroyForcibly()
+    }
+
+    private fun unusedPort(): Int = ServerSocket(0).use { it.localPort }
+
+    @Test
+    fun listeningServer_isReadyImmediately() {
+        ServerSocket(0).use { server ->
+            val result = ReadinessProbe("0.0.0.0", server.localPort).await(process, 5000)
+
+            assertTrue(result.ready)
+            assertNull(result.failure)
+            assertTrue(result.elapsedMs < 1000)
+        }
+    }
+
+    @Test
+    fun lateListener_isDetectedWithinBackoff() {
+        val port = unusedPort()
+        val server = thread {
+            Thread.sleep(300)
+            ServerSocket(port).use { Thread.sleep(2000) }
+        }
+
+        val result = ReadinessProbe("127.0.0.1", port).await(process, 5000)
+        server.join()
+
+        assertTrue(result.ready)
+        assertTrue(result.elapsedMs >= 300)
+        assertTrue(result.elapsedMs < 300 + 2 * ReadinessProbe.MAX_BACKOFF_MS + 500)
+    }
+
+    @Test
+    fun fatalStderr_failsWithoutWaitingForTimeout() {
+        val probe = ReadinessProbe("127.0.0.1", unusedPort())
+        thread {
+            Thread.sleep(100)
+            probe.onStderr("Unable to start server: Error binding to address 0.0.0.0:27042: Address already in use")
+        }
+
+        val result = probe.await(process, 10_000)
+
+        assertFalse(result.ready)
+        assertTrue(result.failure!!.contains("Address already in use"))
+        assertTrue(result.elapsedMs < 2000)
+    }
+
+    @Test
+    fun exitedProcess_failsWithExitCode() {
+        val dead = ProcessBuilder("sh", "-c", "exit 3").start()
+        dead.waitFor()
+
+        val result = ReadinessProbe("127.0.0.1", unusedPort()).await(dead, 10_000)
+
+        assertFalse(result.ready)
+        assertEquals("Server exited with exit code 3", result.failure)
+    }
+
+    @Test
+    fun nothingListening_timesOut() {
+        val result = ReadinessProbe("127.0.0.1", unusedPort()).await(process, 300)
+
+        assertFalse(result.ready)
+        assertTrue(result.elapsedMs >= 300)
+        assertTrue(result.failure!!.startsWith("Server not listening"))
+    }
+
+    @Test
+    fun ordinaryOutput_isNotFatal() {
+        assertFalse(ReadinessProbe.isFatal("Frida 16.5.9 listening"))
+        assertTrue(ReadinessProbe.isFatal("CANNOT LINK EXECUTABLE \"frida-server\": library not found"))
+    }
+}
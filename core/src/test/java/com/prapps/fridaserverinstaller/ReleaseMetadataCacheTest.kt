@@ -0,0 +1,89 @@
+package com.prapps.fridaserverinstaller
+
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import org.junit.Assert.*
+
+class ReleaseMetadataCacheTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private val server = MockWebServer()
+    private val client = OkHttpClient()
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun freshEntry_isServedWithoutNetwork() {
+        server.enqueue(MockResponse().setBody("[1]").setHeader("ETag", "\"a\""))
+        val cache = ReleaseMetadataCache(client, tempFolder.root)
+        val url = server.url("/releases").toString()
+
+        assertEquals("[1]", cache.getOrRevalidate(url).bodyFile.readText())
+        assertEquals("[1]", cache.getOrRevalidate(url).bodyFile.readText())
+
+        assertEquals(1, server.requestCount)
+        assertEquals(1, cache.missCount)
+        assertEquals(1, cache.hitCount)
+    }
+
+    @Test
+    fun staleEntry_isRevalidatedWithETag() {
+        server.enqueue(MockResponse().setBody("[1]").setHeader("ETag", "\"a\""))
+        server.enqueue(MockResponse().setResponseCode(304))
+        server.enqueue(MockResponse().setBody("[1,2]").setHeader("ETag", "\"b\""))
+        val url = server.url("/releases").toString()
+
+        // Cache survives across instances, like across app launches
+        ReleaseMetadataCache(client, tempFolder.root).fetch(url)
+        val cache = ReleaseMetadataCache(client, tempFolder.root)
+        cache.setTtlMs(0)
+
+        assertNull(cache.revalidate(url, cache.get(url)!!))
+        server.takeRequest()
+        assertEquals("\"a\"", server.takeRequest().getHeader("If-None-Match"))
+
+        assertEquals("[1,2]", cache.revalidate(url, cache.get(url)!!)!!.bodyFile.readText())
+        assertEquals("\"a\"", server.takeRequest().getHeader("If-None-Match"))
+        assertEquals("[1,2]", cache.get(url)!!.bodyFile.readText())
+
+        assertEquals(1, cache.notModifiedCount)
+        assertEquals(1, cache.updateCount)
+    }
+
+    @Test
+    fun staleEntry_isUsedWhenRevalidationFails() {
+        server.enqueue(MockResponse().setBody("[1]").setHeader("ETag", "\"a\""))
+        server.enqueue(MockResponse().setResponseCode(500))
+        val cache = ReleaseMetadataCache(client, tempFolder.root)
+        cache.setTtlMs(0)
+        val url = server.url("/releases").toString()
+
+        cache.fetch(url)
+        assertEquals("[1]", cache.getOrRevalidate(url).bodyFile.readText())
+    }
+
+    @Test
+    fun linkHeader_nextPageIsStored() {
+        val next = "https://api.github.com/repositories/1/releases?per_page=20&page=2"
+        server.enqueue(MockResponse().setBody("[]")
+            .setHeader("Link", "<$next>; rel=\"next\", <https://api.github.com/repositories/1/releases?per_page=20&page=9>; rel=\"last\""))
+        val cache = ReleaseMetadataCache(client, tempFolder.root)
+        val url = server.url("/releases").toString()
+
+        cache.fetch(url)
+
+        assertEquals(next, cache.get(url)!!.nextPageUrl)
+        assertNull(ReleaseMetadataCache.nextLink("<https://x/?page=1>; rel=\"prev\""))
+        assertNull(ReleaseMetadataCache.nextLink(null))
+    }
+}
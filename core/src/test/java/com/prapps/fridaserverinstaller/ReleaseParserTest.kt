@@ -0,0 +1,76 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Test
+import java.io.StringReader
+
+import org.junit.Assert.*
+
+class ReleaseParserTest {
+    private val archs = listOf("arm", "arm64", "x86", "x86_64")
+
+    @Test
+    fun parseReleases_keepsOnlyAndroidServerAssets() {
+        val releases = ReleaseParser.parseReleases(StringReader(releasesPayload(3)))
+
+        assertEquals(3, releases.size)
+        val release = releases[0]
+        assertEquals("17.2.0", release.tagName)
+        assertEquals(archs.toSet(), release.serverAssets.keys)
+
+        val asset = release.getServerAsset("arm64")
+        assertEquals("frida-server-17.2.0-android-arm64.xz", asset.name)
+        assertEquals("https://example.invalid/17.2.0/frida-server-17.2.0-android-arm64.xz", asset.downloadUrl)
+        assertEquals(123456L, asset.size)
+        assertEquals("sha256:abc", asset.digest)
+        assertNull(release.getServerAsset("mips"))
+    }
+
+    @Test
+    fun parseReleases_dropsReleasesWithoutAndroidServer() {
+        val payload = """[{"tag_name":"1.0","name":null,"published_at":"2020-01-01T00:00:00Z","prerelease":false,
+            "assets":[{"name":"frida-gadget-1.0-android-arm64.so.xz","browser_download_url":"x","size":1}]}]"""
+
+        assertTrue(ReleaseParser.parseReleases(StringReader(payload)).isEmpty())
+    }
+
+    @Test
+    fun serverAssetArch_parsesOnlyServerArchives() {
+        assertEquals("x86_64", ReleaseParser.serverAssetArch("frida-server-16.1.4-android-x86_64.xz"))
+        assertNull(ReleaseParser.serverAssetArch("frida-server-16.1.4-linux-x86_64.xz"))
+        assertNull(ReleaseParser.serverAssetArch("frida-inject-16.1.4-android-arm64.xz"))
+        assertNull(ReleaseParser.serverAssetArch("frida-server-16.1.4-android-arm64.sig"))
+    }
+
+    /**
+     * Builds a GitHub-shaped `/releases` payload with the full Frida asset matrix, so most
+     * assets are for platforms the installer never uses.
+     */
+    private fun releasesPayload(count: Int): String {
+        val platforms = listOf("android", "linux", "macos", "windows", "ios", "freebsd", "qnx")
+        val kinds = listOf("frida-server", "frida-gadget", "frida-inject", "frida-portal", "frida-core-devkit", "frida-gum-devkit")
+        return buildString {
+            append('[')
+            for (r in 0 until count) {
+                val version = "17.${2 - r / 20}.${r % 20}".let { if (r == 0) "17.2.0" else it }
+                if (r > 0) append(',')
+                append("""{"url":"https://api.example.invalid/releases/$r","id":$r,"tag_name":"$version",""")
+                append(""""name":"Frida $version","draft":false,"prerelease":${r % 7 == 3},""")
+                append(""""published_at":"2025-0${1 + r % 9}-01T00:00:00Z","body":"${"Release notes ".repeat(40)}",""")
+                append(""""author":{"login":"oleavr","id":1,"type":"User","site_admin":false},"assets":[""")
+                var first = true
+                for (kind in kinds) for (platform in platforms) for (arch in archs) {
+                    if (!first) append(',')
+                    first = false
+                    val name = "$kind-$version-$platform-$arch.xz"
+                    append("""{"url":"https://api.example.invalid/assets/$name","id":1,"name":"$name","label":"",""")
+                    append(""""uploader":{"login":"frida-ci","id":2,"type":"Bot","site_admin":false},""")
+                    append(""""content_type":"application/x-xz","state":"uploaded","size":123456,"digest":"sha256:abc",""")
+                    append(""""download_count":42,"created_at":"2025-01-01T00:00:00Z","updated_at":"2025-01-01T00:00:00Z",""")
+                    append(""""browser_download_url":"https://example.invalid/$version/$name"}""")
+                }
+                append("]}")
+            }
+            append(']')
+        }
+    }
+}
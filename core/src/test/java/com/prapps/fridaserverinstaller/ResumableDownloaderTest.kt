@@ -0,0 +1,196 @@
+package com.prapps.fridaserverinstaller
+
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okhttp3.mockwebserver.SocketPolicy
+import okio.Buffer
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import kotlin.random.Random
+
+import org.junit.Assert.*
+
+class ResumableDownloaderTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private val payload = Random(42).nextBytes(2 * 1024 * 1024)
+    private val server = MockWebServer()
+    private val client = OkHttpClient()
+    private lateinit var target: File
+
+    @Before
+    fun setUp() {
+        target = File(tempFolder.root, "frida-server.xz")
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun download_survivesRandomConnectionCuts() {
+        val cuts = FlakyRangeDispatcher(payload, Random(7), maxCuts = 8)
+        server.dispatcher = cuts
+        server.start()
+
+        val progress = mutableListOf<Long>()
+        ResumableDownloader(client)
+            .setMaxAttempts(20)
+            .setBackoff(1, 5)
+            .download(server.url("/asset.xz").toString(), target) { downloaded, _ -> progress.add(downloaded) }
+
+        assertArrayEquals(payload, target.readBytes())
+        assertEquals(8, cuts.cutsMade)
+        assertTrue(cuts.rangeRequests >= 8)
+        assertEquals(progress.sorted(), progress)
+        assertFalse(ResumableDownloader.partFileFor(target).exists())
+    }
+
+    @Test
+    fun download_resumesJournalFromEarlierRun() {
+        val cuts = FlakyRangeDispatcher(payload, Random(3), maxCuts = 1)
+        server.dispatcher = cuts
+        server.start()
+        val url = server.url("/asset.xz").toString()
+
+        // First run gives up after the first cut, leaving the journal behind
+        try {
+            ResumableDownloader(client).setMaxAttempts(1).download(url, target, null)
+            fail("Expected the first attempt to fail")
+        } catch (expected: java.io.IOException) {
+        }
+        val journaled = ResumableDownloader.partFileFor(target).length()
+        assertTrue(journaled > 0)
+
+        ResumableDownloader(client).open(url, target).use { stream ->
+            assertEquals(journaled, stream.resumedFrom)
+            assertArrayEquals(payload, stream.readBytes())
+            stream.commit()
+        }
+        assertArrayEquals(payload, target.readBytes())
+    }
+
+    @Test
+    fun download_restartsWhenRemoteFileChanged() {
+        server.dispatcher = FlakyRangeDispatcher(payload, Random(5), maxCuts = 0)
+        server.start()
+        val stale = Random(1).nextBytes(payload.size)
+        ResumableDownloader.partFileFor(target).writeBytes(stale.copyOf(1000))
+        File(target.parentFile, target.name + ".part.meta").writeText(
+            "url=${server.url("/asset.xz")}\nvalidator=\"old\"\nlength=${payload.size}\n"
+        )
+
+        ResumableDownloader(client).download(server.url("/asset.xz").toString(), target, null)
+
+        assertArrayEquals(payload, target.readBytes())
+    }
+
+    @Test
+    fun download_failsWhenRangeIsRejectedMidStream() {
+        val served = java.util.concurrent.atomic.AtomicInteger()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (served.getAndIncrement() > 0) {
+                    return MockResponse().setResponseCode(416)
+                }
+                return MockResponse()
+                    .setBody(Buffer().write(payload, 0, 1000))
+                    .setHeader("Content-Length", payload.size)
+                    .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END)
+            }
+        }
+        server.start()
+
+        try {
+            ResumableDownloader(client).setBackoff(1, 5)
+                .download(server.url("/asset.xz").toString(), target, null)
+            fail("Expected the download to fail instead of restarting from byte zero")
+        } catch (expected: java.io.IOException) {
+        }
+        assertEquals(2, served.get())
+        assertFalse(target.exists())
+    }
+
+    @Test
+    fun download_failsOnMisplacedContentRangeMidStream() {
+        val served = java.util.concurrent.atomic.AtomicInteger()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (served.getAndIncrement() > 0) {
+                    // Ignores the requested offset and starts from the beginning
+                    return MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Content-Range", "bytes 0-${payload.size - 1}/${payload.size}")
+                        .setBody(Buffer().write(payload))
+                }
+                return MockResponse()
+                    .setBody(Buffer().write(payload, 0, 1000))
+                    .setHeader("Content-Length", payload.size)
+                    .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END)
+            }
+        }
+        server.start()
+
+        try {
+            ResumableDownloader(client).setBackoff(1, 5)
+                .download(server.url("/asset.xz").toString(), target, null)
+            fail("Expected the misplaced range to be rejected")
+        } catch (expected: java.io.IOException) {
+        }
+        assertEquals(2, served.get())
+    }
+
+    /**
+     * Serves [body] with ETag and Range support, cutting the connection at random offsets
+     * for the first [maxCuts] responses.
+     */
+    private class FlakyRangeDispatcher(
+        private val body: ByteArray,
+        private val random: Random,
+        private val maxCuts: Int
+    ) : Dispatcher() {
+        private val etag = "\"v1\""
+        var cutsMade = 0
+        var rangeRequests = 0
+
+        override fun dispatch(request: RecordedRequest): MockResponse {
+            val range = request.getHeader("Range")
+            val ifRange = request.getHeader("If-Range")
+            var start = 0
+            var partial = false
+            if (range != null && (ifRange == null || ifRange == etag)) {
+                start = range.removePrefix("bytes=").substringBefore('-').toInt()
+                partial = true
+                rangeRequests++
+            }
+
+            val remaining = body.size - start
+            val response = MockResponse()
+                .setResponseCode(if (partial) 206 else 200)
+                .setHeader("ETag", etag)
+                .setHeader("Accept-Ranges", "bytes")
+            if (partial) {
+                response.setHeader("Content-Range", "bytes $start-${body.size - 1}/${body.size}")
+            }
+
+            if (cutsMade < maxCuts && remaining > 1) {
+                cutsMade++
+                val sent = random.nextInt(1, remaining)
+                return response
+                    .setBody(Buffer().write(body, start, sent))
+                    .setHeader("Content-Length", remaining)
+                    .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END)
+            }
+            return response.setBody(Buffer().write(body, start, remaining))
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.After
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/**
+ * Runs [RootShell] against a plain `sh` so it works on any host.
+ */
+class RootShellTest {
+    private val shell = RootShell("sh")
+
+    @After
+    fun tearDown() {
+        shell.close()
+    }
+
+    @Test
+    fun commands_areSeparatedWithExitCodes() {
+        val first = shell.run("echo one; echo two")
+        val second = shell.run("echo oops >&2; exit_code() { return 3; }; exit_code")
+
+        assertEquals(listOf("one", "two"), first.stdout)
+        assertEquals(0, first.exitCode)
+        assertEquals(3, second.exitCode)
+        assertEquals(listOf("oops"), second.stderr)
+        assertTrue(second.stdout.isEmpty())
+        assertEquals(1, shell.spawnCount)
+    }
+
+    @Test
+    fun outputWithoutTrailingNewline_isKept() {
+        val result = shell.run("printf partial")
+        assertEquals(listOf("partial"), result.stdout)
+        assertEquals(0, result.exitCode)
+    }
+
+    @Test
+    fun timeout_respawnsShell() {
+        val slow = shell.run("sleep 5", 200)
+        assertTrue(slow.timedOut)
+        assertFalse(slow.shellExited)
+
+        val next = shell.run("echo ok")
+        assertEquals(listOf("ok"), next.stdout)
+        assertEquals(2, shell.spawnCount)
+    }
+
+    @Test
+    fun deadShell_isRespawned() {
+        val dead = shell.run("exit 7", 5_000)
+        assertTrue(dead.shellExited)
+        assertFalse(dead.timedOut)
+        assertEquals(7, dead.exitCode)
+        assertFalse(dead.isSuccess)
+
+        val next = shell.run("echo back")
+        assertEquals(listOf("back"), next.stdout)
+        assertEquals(2, shell.spawnCount)
+    }
+}
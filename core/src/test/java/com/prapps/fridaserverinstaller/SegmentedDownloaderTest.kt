@@ -0,0 +1,159 @@
+package com.prapps.fridaserverinstaller
+
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.EOFException
+import java.io.File
+import java.io.IOException
+import kotlin.random.Random
+
+import org.junit.Assert.*
+
+class SegmentedDownloaderTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private val payload = Random(11).nextBytes(1024 * 1024)
+    private val server = MockWebServer()
+    private val client = OkHttpClient()
+    private val downloader = SegmentedDownloader(client, ResumableDownloader(client))
+    private val fastDownloader = SegmentedDownloader(client, ResumableDownloader(client).setBackoff(1, 5))
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun download_assemblesSegmentsInOrder() {
+        server.dispatcher = RangeDispatcher(payload, acceptRanges = true)
+        val target = File(tempFolder.root, "asset.xz")
+        val progress = mutableListOf<Long>()
+
+        downloader.download(server.url("/asset.xz").toString(), target, 4) { downloaded, _ -> progress.add(downloaded) }
+
+        assertArrayEquals(payload, target.readBytes())
+        assertEquals(payload.size.toLong(), progress.last())
+        assertEquals(5, server.requestCount) // HEAD probe + 4 segments
+    }
+
+    @Test
+    fun download_digestsSegmentsInOrder() {
+        server.dispatcher = RangeDispatcher(payload, acceptRanges = true)
+        val target = File(tempFolder.root, "asset.xz")
+        val digest = Sha256()
+
+        downloader.download(server.url("/asset.xz").toString(), target, 4, digest, null)
+
+        assertEquals(payload.size.toLong(), digest.length)
+        assertEquals(Sha256.of(target), digest.hex())
+    }
+
+    @Test
+    fun download_fallsBackWithoutAcceptRanges() {
+        server.dispatcher = RangeDispatcher(payload, acceptRanges = false)
+        val target = File(tempFolder.root, "asset.xz")
+
+        downloader.download(server.url("/asset.xz").toString(), target, 4, null)
+
+        assertArrayEquals(payload, target.readBytes())
+        assertEquals(2, server.requestCount) // HEAD probe + one full GET
+    }
+
+    @Test
+    fun download_resumesSegmentsAfterShortBodies() {
+        // Every range response stops halfway; segments must pick up where each one ended
+        server.dispatcher = RangeDispatcher(payload, acceptRanges = true, truncate = true)
+        val target = File(tempFolder.root, "asset.xz")
+
+        fastDownloader.download(server.url("/asset.xz").toString(), target, 4, null)
+
+        assertArrayEquals(payload, target.readBytes())
+    }
+
+    @Test
+    fun download_givesUpOnEmptyRangeResponses() {
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val response = MockResponse().setHeader("Accept-Ranges", "bytes")
+                if (request.method == "HEAD") {
+                    return response.setHeader("Content-Length", payload.size)
+                }
+                val (first, last) = request.getHeader("Range")!!.removePrefix("bytes=").split('-')
+                return response.setResponseCode(206).setHeader("Content-Range", "bytes $first-$last/${payload.size}")
+            }
+        }
+        val target = File(tempFolder.root, "asset.xz")
+
+        try {
+            fastDownloader.download(server.url("/asset.xz").toString(), target, 4, null)
+            fail("Expected the download to fail")
+        } catch (e: EOFException) {
+            // expected
+        }
+        assertFalse(target.exists())
+        assertTrue(server.requestCount <= 1 + 4 * 5) // HEAD probe + at most 5 attempts per segment
+    }
+
+    @Test
+    fun download_rejectsMismatchedContentRange() {
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val response = MockResponse().setHeader("Accept-Ranges", "bytes")
+                if (request.method == "HEAD") {
+                    return response.setHeader("Content-Length", payload.size)
+                }
+                // Ignores the requested offset and always sends the start of the file
+                return response.setResponseCode(206)
+                    .setHeader("Content-Range", "bytes 0-${payload.size / 4 - 1}/${payload.size}")
+                    .setBody(Buffer().write(payload, 0, payload.size / 4))
+            }
+        }
+        val target = File(tempFolder.root, "asset.xz")
+
+        try {
+            fastDownloader.download(server.url("/asset.xz").toString(), target, 4, null)
+            fail("Expected the download to fail")
+        } catch (e: IOException) {
+            assertTrue(e.message!!.startsWith("Unexpected Content-Range"))
+        }
+        assertFalse(target.exists())
+    }
+
+    private class RangeDispatcher(
+        private val body: ByteArray,
+        private val acceptRanges: Boolean,
+        private val truncate: Boolean = false
+    ) : Dispatcher() {
+        override fun dispatch(request: RecordedRequest): MockResponse {
+            val response = MockResponse().setHeader("ETag", "\"v1\"")
+            if (acceptRanges) {
+                response.setHeader("Accept-Ranges", "bytes")
+            }
+            if (request.method == "HEAD") {
+                return response.setHeader("Content-Length", body.size)
+            }
+
+            val range = request.getHeader("Range")
+            if (!acceptRanges || range == null) {
+                return response.setBody(Buffer().write(body))
+            }
+            val (first, last) = range.removePrefix("bytes=").split('-')
+            val start = first.toInt()
+            val end = if (last.isEmpty()) body.size - 1 else last.toInt()
+            val length = end - start + 1
+            return response
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes $start-$end/${body.size}")
+                .setBody(Buffer().write(body, start, if (truncate && length > 1) length / 2 else length))
+        }
+    }
+}
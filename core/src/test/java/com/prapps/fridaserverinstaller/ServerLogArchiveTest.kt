@@ -0,0 +1,115 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+import org.junit.Assert.*
+
+class ServerLogArchiveTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private fun line(i: Int) = "[STDOUT] line $i " + "x".repeat(40)
+
+    private fun fill(archive: ServerLogArchive, count: Int) {
+        repeat(count) { archive.append(line(it)) }
+        archive.awaitBackgroundWork(10_000)
+    }
+
+    @Test
+    fun append_rotatesAndCompressesFinishedSegments() {
+        val dir = tempFolder.newFolder()
+        val archive = ServerLogArchive(dir, 16 * 1024)
+        fill(archive, 2000)
+
+        val segments = archive.listSegments()
+        assertTrue(segments.size > 3)
+        assertTrue(segments.dropLast(1).all { it.compressed })
+        assertFalse(segments.last().compressed)
+        assertEquals(0L, segments.first().firstLine)
+        assertTrue(dir.list()!!.none { it.endsWith(".tmp") })
+    }
+
+    @Test
+    fun readLines_acrossCompressedAndActiveSegments() {
+        val archive = ServerLogArchive(tempFolder.newFolder(), 16 * 1024)
+        fill(archive, 2000)
+
+        val page = archive.readLines(1234, 600)
+
+        assertEquals((1234L until 1834L).toList(), page.map { it.lineNumber })
+        assertEquals(line(1234), page.first().text)
+        assertEquals(line(1833), page.last().text)
+    }
+
+    @Test
+    fun readPageBefore_pagesBackThroughHistory() {
+        val archive = ServerLogArchive(tempFolder.newFolder(), 16 * 1024)
+        fill(archive, 500)
+
+        val newest = archive.readPageBefore(archive.nextLine, 100)
+        val older = archive.readPageBefore(newest.first().lineNumber, 100)
+
+        assertEquals(400L, newest.first().lineNumber)
+        assertEquals(line(499), newest.last().text)
+        assertEquals((300L until 400L).toList(), older.map { it.lineNumber })
+    }
+
+    @Test
+    fun search_returnsNewestMatches() {
+        val archive = ServerLogArchive(tempFolder.newFolder(), 16 * 1024)
+        repeat(3000) {
+            archive.append(if (it % 500 == 7) "[STDERR] Unable to load SELinux policy ($it)" else line(it))
+        }
+        archive.awaitBackgroundWork(10_000)
+
+        val matches = archive.search("selinux", 0, Long.MAX_VALUE, 3)
+
+        assertEquals(listOf(1507L, 2007L, 2507L), matches.map { it.lineNumber })
+        assertTrue(matches.all { it.text.contains("SELinux") })
+    }
+
+    @Test
+    fun findByTime_usesTimestamps() {
+        val archive = ServerLogArchive(tempFolder.newFolder(), 16 * 1024)
+        fill(archive, 300)
+        val start = System.currentTimeMillis()
+        Thread.sleep(5)
+        archive.append("[STDOUT] after marker")
+
+        val found = archive.findByTime(start + 1, Long.MAX_VALUE, 10)
+
+        assertEquals(listOf("[STDOUT] after marker"), found.map { it.text })
+    }
+
+    @Test
+    fun reopen_continuesLineNumbersAndCompressesLeftoverSegment() {
+        val dir = tempFolder.newFolder()
+        val first = ServerLogArchive(dir, 16 * 1024)
+        fill(first, 450)
+        first.close()
+
+        val reopened = ServerLogArchive(dir, 16 * 1024)
+        assertEquals(450L, reopened.nextLine)
+        reopened.append("[STDOUT] after restart")
+        reopened.awaitBackgroundWork(10_000)
+
+        assertTrue(reopened.listSegments().dropLast(1).all { it.compressed })
+        assertEquals("[STDOUT] after restart", reopened.readLines(450, 1).single().text)
+        assertEquals(line(449), reopened.readLines(449, 1).single().text)
+    }
+
+    @Test
+    fun retention_dropsOldestSegmentsBeyondBudget() {
+        val archive = ServerLogArchive(tempFolder.newFolder(), 16 * 1024)
+        archive.setRetention(8 * 1024, ServerLogArchive.DEFAULT_MAX_AGE_MS)
+        fill(archive, 5000)
+
+        val segments = archive.listSegments()
+        assertTrue(archive.firstLine > 0)
+        assertTrue(segments.size <= 3)
+        assertEquals(line(4999), archive.readLines(4999, 1).single().text)
+    }
+}
@@ -0,0 +1,114 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.After
+import org.junit.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Assert.*
+
+/**
+ * Supervises plain `sh` processes standing in for frida-server.
+ */
+class ServerSupervisorTest {
+    private val supervisor = ServerSupervisor(20, 80, 3, 10_000, 10_000)
+    private val statuses = CopyOnWriteArrayList<ServerSupervisor.Status>()
+    private val launches = AtomicInteger()
+
+    init {
+        supervisor.addStatusListener { statuses.add(it) }
+    }
+
+    @After
+    fun tearDown() {
+        supervisor.stop()?.destroyForcibly()
+    }
+
+    private fun launcher(script: String) = ServerSupervisor.Launcher {
+        launches.incrementAndGet()
+        ProcessBuilder("sh", "-c", script).start()
+    }
+
+    private fun awaitState(state: ServerSupervisor.State): ServerSupervisor.Status {
+        val deadline = System.currentTimeMillis() + 5000
+        while (System.currentTimeMillis() < deadline) {
+            val status = supervisor.status
+            if (status.state == state) {
+                return status
+            }
+            Thread.sleep(5)
+        }
+        fail("Never reached $state, last status ${supervisor.status.state}")
+        throw AssertionError()
+    }
+
+    @Test
+    fun crash_recordsExitCodeAndStderrThenRestarts() {
+        val firstRun = CountDownLatch(1)
+        supervisor.start(launcher("echo 'fatal: boom' >&2; exit 7")) { _, _ -> firstRun.countDown() }
+
+        assertTrue(firstRun.await(5, TimeUnit.SECONDS))
+        val deadline = System.currentTimeMillis() + 5000
+        while (statuses.none { it.state == ServerSupervisor.State.RUNNING && it.restartCount == 1 }) {
+            assertTrue(System.currentTimeMillis() < deadline)
+            Thread.sleep(5)
+        }
+        val backingOff = statuses.first { it.state == ServerSupervisor.State.BACKING_OFF }
+        assertEquals(7, backingOff.lastExitCode)
+        assertEquals(listOf("fatal: boom"), backingOff.lastStderr)
+        assertTrue(backingOff.nextRestartAtMs > 0)
+    }
+
+    @Test
+    fun crashLoop_opensCircuit() {
+        supervisor.start(launcher("exit 1")) { _, _ -> }
+
+        val status = awaitState(ServerSupervisor.State.CRASH_LOOP)
+        assertEquals(3, launches.get())
+        assertEquals(2, status.restartCount)
+        assertEquals(1, status.lastExitCode)
+        Thread.sleep(200)
+        assertEquals(3, launches.get())
+    }
+
+    @Test
+    fun start_closesCircuitAndResetsCount() {
+        supervisor.start(launcher("exit 1")) { _, _ -> }
+        awaitState(ServerSupervisor.State.CRASH_LOOP)
+
+        supervisor.start(launcher("sleep 30")) { _, _ -> }
+        val status = awaitState(ServerSupervisor.State.RUNNING)
+        assertEquals(0, status.restartCount)
+        assertNull(status.lastExitCode)
+    }
+
+    @Test
+    fun stop_preventsRestart() {
+        supervisor.start(launcher("sleep 30")) { _, _ -> }
+        val process = supervisor.stop()
+
+        assertNotNull(process)
+        process!!.destroy()
+        process.waitFor(5, TimeUnit.SECONDS)
+        Thread.sleep(200)
+        assertEquals(1, launches.get())
+        assertEquals(ServerSupervisor.State.STOPPED, supervisor.status.state)
+    }
+
+    @Test
+    fun backoff_isExponentialAndCapped() {
+        assertEquals(20, supervisor.backoffMs(1))
+        assertEquals(40, supervisor.backoffMs(2))
+        assertEquals(80, supervisor.backoffMs(3))
+        assertEquals(80, supervisor.backoffMs(10))
+        assertEquals(80, supervisor.backoffMs(100))
+    }
+
+    @Test
+    fun describeExitCode_namesSignals() {
+        assertEquals("exit code 1", ServerSupervisor.describeExitCode(1))
+        assertEquals("exit code 139 (signal 11)", ServerSupervisor.describeExitCode(139))
+    }
+}
@@ -0,0 +1,76 @@
+package com.prapps.fridaserverinstaller
+
+import org.junit.After
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+import org.junit.Assert.*
+
+/**
+ * Signals `sh` processes through a [RootShell] running plain `sh`.
+ */
+class ServerTerminatorTest {
+    private val shell = RootShell("sh")
+    private val processes = mutableListOf<Process>()
+
+    @After
+    fun tearDown() {
+        processes.forEach { it.destroyForcibly() }
+        shell.close()
+    }
+
+    private fun spawn(script: String): Process =
+        ProcessBuilder("sh", "-c", script).start().also { processes.add(it) }
+
+    @Test
+    fun cooperativeServer_stopsOnSigtermWithoutWaitingOutGrace() {
+        val process = spawn("exec sleep 30")
+
+        val result = ServerTerminator.terminate(shell, process.pid().toInt(), process, 5000)
+
+        assertEquals(ServerTerminator.Outcome.TERMINATED, result.outcome)
+        assertTrue("took ${result.elapsedMs} ms", result.elapsedMs < 1000)
+        assertFalse(process.isAlive)
+    }
+
+    @Test
+    fun serverIgnoringSigterm_isKilledAfterGrace() {
+        val process = spawn("trap '' TERM; exec sleep 30")
+
+        val result = ServerTerminator.terminate(shell, process.pid().toInt(), process, 200)
+
+        assertEquals(ServerTerminator.Outcome.KILLED, result.outcome)
+        assertTrue(result.elapsedMs >= 200)
+        assertTrue(process.waitFor(1, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun withoutProcessHandle_pollsPid() {
+        val process = spawn("exec sleep 30")
+
+        val result = ServerTerminator.terminate(shell, process.pid().toInt(), null, 5000)
+
+        assertEquals(ServerTerminator.Outcome.TERMINATED, result.outcome)
+        assertTrue(process.waitFor(1, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun unknownPid_signalsLaunchingProcess() {
+        val process = spawn("exec sleep 30")
+
+        val result = ServerTerminator.terminate(shell, 0, process, 5000)
+
+        assertEquals(ServerTerminator.Outcome.TERMINATED, result.outcome)
+        assertFalse(process.isAlive)
+    }
+
+    @Test
+    fun exitedServer_isNotRunning() {
+        val process = spawn("exit 0")
+        process.waitFor()
+
+        val result = ServerTerminator.terminate(shell, process.pid().toInt(), process, 5000)
+
+        assertEquals(ServerTerminator.Outcome.NOT_RUNNING, result.outcome)
+    }
+}